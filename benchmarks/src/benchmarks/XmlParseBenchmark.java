@@ -22,19 +22,24 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import libcore.internal.KXmlParserPool;
+import org.kxml2.io.KXmlParser;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
 
 public class XmlParseBenchmark {
 
@@ -47,10 +52,21 @@ public class XmlParseBenchmark {
             "/etc/permissions/features.xml"
     );
 
+    /** A configuration-style document, many of which are often parsed in a row. */
+    private static final byte[] SMALL_DOCUMENT = ("<?xml version='1.0' encoding='UTF-8'?>"
+            + "<config>"
+            + "<entry key='timeout' value='30'/>"
+            + "<entry key='retries' value='3'/>"
+            + "<entry key='host' value='example.com'/>"
+            + "</config>").getBytes(StandardCharsets.UTF_8);
+
+    private static final int SMALL_DOCUMENTS_PER_REP = 100;
+
     private SAXParser saxParser;
     private DocumentBuilder documentBuilder;
     private Constructor<? extends XmlPullParser> kxmlConstructor;
     private Constructor<? extends XmlPullParser> expatConstructor;
+    private XmlPullParserFactory pullParserFactory;
 
     @SuppressWarnings("unchecked")
     @BeforeExperiment
@@ -68,6 +84,7 @@ public class XmlParseBenchmark {
         kxmlConstructor = (Constructor) Class.forName("org.kxml2.io.KXmlParser").getConstructor();
         expatConstructor = (Constructor) Class.forName("org.apache.harmony.xml.ExpatPullParser")
                 .getConstructor();
+        pullParserFactory = XmlPullParserFactory.newInstance();
     }
 
     private byte[] getXmlBytes() throws IOException {
@@ -126,10 +143,35 @@ public class XmlParseBenchmark {
         return testXmlPull(expatConstructor, reps);
     }
 
+    /**
+     * Parses with the parser's own UTF-8 decoding. Each rep reads the whole
+     * file, so the file's size divided by the time per rep gives MB/s; compare
+     * with {@link #timeKxmlInputStreamReader}.
+     */
     public int timeKxml(int reps) throws Exception {
         return testXmlPull(kxmlConstructor, reps);
     }
 
+    /**
+     * Parses the same bytes as {@link #timeKxml}, decoded by an {@link
+     * InputStreamReader} instead.
+     */
+    public int timeKxmlInputStreamReader(int reps) throws Exception {
+        int elementCount = 0;
+        for (int i = 0; i < reps; i++) {
+            inputStream.reset();
+            XmlPullParser xmlPullParser = kxmlConstructor.newInstance();
+            xmlPullParser.setInput(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            int type;
+            while ((type = xmlPullParser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type == XmlPullParser.START_TAG) {
+                    elementCount++;
+                }
+            }
+        }
+        return elementCount;
+    }
+
     private int testXmlPull(Constructor<? extends XmlPullParser> constructor, int reps)
             throws Exception {
         int elementCount = 0;
@@ -146,4 +188,40 @@ public class XmlParseBenchmark {
         }
         return elementCount;
     }
+
+    public int timeKxmlSmallDocuments(int reps) throws Exception {
+        int elementCount = 0;
+        for (int i = 0; i < reps; i++) {
+            for (int j = 0; j < SMALL_DOCUMENTS_PER_REP; j++) {
+                XmlPullParser xmlPullParser = pullParserFactory.newPullParser();
+                elementCount += countElements(xmlPullParser, SMALL_DOCUMENT);
+            }
+        }
+        return elementCount;
+    }
+
+    public int timeKxmlSmallDocumentsRecycled(int reps) throws Exception {
+        int elementCount = 0;
+        for (int i = 0; i < reps; i++) {
+            for (int j = 0; j < SMALL_DOCUMENTS_PER_REP; j++) {
+                KXmlParser xmlPullParser = KXmlParserPool.obtain();
+                elementCount += countElements(xmlPullParser, SMALL_DOCUMENT);
+                KXmlParserPool.recycle(xmlPullParser);
+            }
+        }
+        return elementCount;
+    }
+
+    private static int countElements(XmlPullParser xmlPullParser, byte[] document)
+            throws Exception {
+        int elementCount = 0;
+        xmlPullParser.setInput(new ByteArrayInputStream(document), "UTF-8");
+        int type;
+        while ((type = xmlPullParser.next()) != XmlPullParser.END_DOCUMENT) {
+            if (type == XmlPullParser.START_TAG) {
+                elementCount++;
+            }
+        }
+        return elementCount;
+    }
 }
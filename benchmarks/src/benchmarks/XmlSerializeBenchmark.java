@@ -18,8 +18,11 @@ package benchmarks;
 
 import com.google.caliper.BeforeExperiment;
 import com.google.caliper.Param;
+import java.io.ByteArrayOutputStream;
 import java.io.CharArrayWriter;
+import java.io.OutputStreamWriter;
 import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
 import java.util.Random;
 import org.xmlpull.v1.XmlSerializer;
 
@@ -39,6 +42,12 @@ public class XmlSerializeBenchmark {
 
     private void serializeRandomXml(Constructor<? extends XmlSerializer> ctor, long seed)
             throws Exception {
+        XmlSerializer serializer = (XmlSerializer) ctor.newInstance();
+        serializer.setOutput(new CharArrayWriter());
+        serializeRandomXml(serializer, seed);
+    }
+
+    private void serializeRandomXml(XmlSerializer serializer, long seed) throws Exception {
         double contChance = dataset[0];
         double levelUpChance = dataset[1];
         double levelDownChance = dataset[2];
@@ -46,10 +55,6 @@ public class XmlSerializeBenchmark {
         double writeChance1 = dataset[4];
         double writeChance2 = dataset[5];
 
-        XmlSerializer serializer = (XmlSerializer) ctor.newInstance();
-
-        CharArrayWriter w = new CharArrayWriter();
-        serializer.setOutput(w);
         int level = 0;
         Random r = new Random(seed);
         char[] toWrite = {'a','b','c','d','s','z'};
@@ -106,4 +111,25 @@ public class XmlSerializeBenchmark {
     public void timeFast(int reps) throws Exception {
         internalTimeSerializer(fastConstructor, reps);
     }
+
+    /**
+     * Serializes to bytes with KXmlSerializer's own UTF-8 encoder. Compare
+     * with {@link #timeKxmlOutputStreamWriter}, which produces the same bytes.
+     */
+    public void timeKxmlUtf8Stream(int reps) throws Exception {
+        for (int i = 0; i < reps; i++) {
+            XmlSerializer serializer = kxmlConstructor.newInstance();
+            serializer.setOutput(new ByteArrayOutputStream(), "UTF-8");
+            serializeRandomXml(serializer, seed);
+        }
+    }
+
+    public void timeKxmlOutputStreamWriter(int reps) throws Exception {
+        for (int i = 0; i < reps; i++) {
+            XmlSerializer serializer = kxmlConstructor.newInstance();
+            serializer.setOutput(
+                    new OutputStreamWriter(new ByteArrayOutputStream(), StandardCharsets.UTF_8));
+            serializeRandomXml(serializer, seed);
+        }
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.harness;
+
+import dalvik.system.VMDebug;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Counts the bytes allocated by the current thread, and garbage collections
+ * by all threads. On Android this uses {@link VMDebug}'s allocation
+ * counters; on a host VM it uses the management beans.
+ */
+abstract class AllocationCounter {
+
+    /**
+     * Returns a counter for this VM, or null if it can't count allocations.
+     */
+    static AllocationCounter create() {
+        try {
+            if ("Dalvik".equals(System.getProperty("java.vm.name"))) {
+                return new VmDebugCounter();
+            }
+            return new ManagementCounter();
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if counting slows allocation, so that allocations must be
+     * counted separately from timed runs.
+     */
+    abstract boolean perturbsTiming();
+
+    /** Starts counting the current thread's allocations from zero. */
+    abstract void reset();
+
+    /**
+     * Returns the bytes allocated by the current thread since {@link #reset},
+     * and may stop counting until the next call to {@link #reset}.
+     */
+    abstract long allocatedBytes();
+
+    /** Returns the number of collections since the VM started. */
+    abstract long gcCount();
+
+    private static final class VmDebugCounter extends AllocationCounter {
+        VmDebugCounter() {
+            gcCount(); // Fail now if the runtime doesn't have this stat.
+        }
+
+        @Override boolean perturbsTiming() {
+            // Counting switches the runtime to instrumented allocation paths.
+            return true;
+        }
+
+        @Override void reset() {
+            VMDebug.resetAllocCount(VMDebug.KIND_THREAD_ALLOCATED_BYTES);
+            VMDebug.startAllocCounting();
+        }
+
+        @Override long allocatedBytes() {
+            // The count is a 32-bit int; read it as unsigned to reach 4 GiB.
+            long result = VMDebug.getAllocCount(VMDebug.KIND_THREAD_ALLOCATED_BYTES) & 0xffffffffL;
+            // Go back to the uninstrumented allocation paths, so that timed
+            // runs aren't slowed.
+            VMDebug.stopAllocCounting();
+            return result;
+        }
+
+        @Override long gcCount() {
+            return Long.parseLong(VMDebug.getRuntimeStat("art.gc.gc-count"));
+        }
+    }
+
+    /**
+     * Uses {@code com.sun.management.ThreadMXBean} and the garbage collector
+     * beans. These aren't part of Android's API, so they're called
+     * reflectively.
+     */
+    private static final class ManagementCounter extends AllocationCounter {
+        private final Object threadBean;
+        private final Method getThreadAllocatedBytes;
+        private final List<?> gcBeans;
+        private final Method getCollectionCount;
+        private long start;
+
+        ManagementCounter() throws Exception {
+            Class<?> factory = Class.forName("java.lang.management.ManagementFactory");
+            threadBean = factory.getMethod("getThreadMXBean").invoke(null);
+            Class<?> threadBeanClass = Class.forName("com.sun.management.ThreadMXBean");
+            threadBeanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class)
+                    .invoke(threadBean, true);
+            getThreadAllocatedBytes = threadBeanClass.getMethod("getThreadAllocatedBytes", long.class);
+            gcBeans = (List<?>) factory.getMethod("getGarbageCollectorMXBeans").invoke(null);
+            getCollectionCount = Class.forName("java.lang.management.GarbageCollectorMXBean")
+                    .getMethod("getCollectionCount");
+            reset();
+        }
+
+        @Override boolean perturbsTiming() {
+            return false;
+        }
+
+        @Override void reset() {
+            start = threadAllocatedBytes();
+        }
+
+        @Override long allocatedBytes() {
+            return threadAllocatedBytes() - start;
+        }
+
+        private long threadAllocatedBytes() {
+            try {
+                return (Long) getThreadAllocatedBytes.invoke(
+                        threadBean, Thread.currentThread().getId());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override long gcCount() {
+            try {
+                long result = 0;
+                for (Object gcBean : gcBeans) {
+                    // -1 means that this collector doesn't count.
+                    result += Math.max(0, (Long) getCollectionCount.invoke(gcBean));
+                }
+                return result;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.harness;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Caliper-style benchmark class: {@code @Param} fields, {@code
+ * @BeforeExperiment} and {@code @AfterExperiment} methods, and public {@code
+ * timeXxx(int reps)} or {@code timeXxx(long reps)} methods.
+ */
+final class BenchmarkClass {
+    private final Class<?> type;
+    private final Map<String, Field> params = new LinkedHashMap<String, Field>();
+    private final List<Method> beforeMethods = new ArrayList<Method>();
+    private final List<Method> afterMethods = new ArrayList<Method>();
+    private final List<Method> timeMethods = new ArrayList<Method>();
+
+    BenchmarkClass(Class<?> type) {
+        this.type = type;
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Param.class)) {
+                    field.setAccessible(true);
+                    params.put(field.getName(), field);
+                }
+            }
+            int superclassBefore = 0; // Superclass methods run first.
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(BeforeExperiment.class)) {
+                    method.setAccessible(true);
+                    beforeMethods.add(superclassBefore++, method);
+                }
+                if (method.isAnnotationPresent(AfterExperiment.class)) {
+                    method.setAccessible(true);
+                    afterMethods.add(method);
+                }
+            }
+        }
+        for (Method method : type.getMethods()) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (method.getName().startsWith("time")
+                    && !Modifier.isStatic(method.getModifiers())
+                    && parameterTypes.length == 1
+                    && (parameterTypes[0] == int.class || parameterTypes[0] == long.class)) {
+                timeMethods.add(method);
+            }
+        }
+        // getMethods() order is unspecified; report in a stable order.
+        Collections.sort(timeMethods, new Comparator<Method>() {
+            @Override public int compare(Method a, Method b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+    }
+
+    Class<?> type() {
+        return type;
+    }
+
+    List<Method> timeMethods() {
+        return timeMethods;
+    }
+
+    /**
+     * Returns the JMH-style name of a time method: the class name, a dot and
+     * the method name without its "time" prefix.
+     */
+    String benchmarkName(Method timeMethod) {
+        String name = timeMethod.getName().substring("time".length());
+        return type.getName() + "." + Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Returns every combination of parameter values, each mapping parameter
+     * names to values in declaration order. Values in {@code overrides}
+     * replace a parameter's declared values.
+     */
+    List<Map<String, String>> scenarios(Map<String, List<String>> overrides) {
+        List<Map<String, String>> result = new ArrayList<Map<String, String>>();
+        result.add(new LinkedHashMap<String, String>());
+        for (Map.Entry<String, Field> entry : params.entrySet()) {
+            List<String> values = overrides.get(entry.getKey());
+            if (values == null) {
+                values = defaultValues(entry.getValue());
+            }
+            List<Map<String, String>> product = new ArrayList<Map<String, String>>();
+            for (Map<String, String> scenario : result) {
+                for (String value : values) {
+                    Map<String, String> extended = new LinkedHashMap<String, String>(scenario);
+                    extended.put(entry.getKey(), value);
+                    product.add(extended);
+                }
+            }
+            result = product;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of a parameter as Caliper finds them: from the
+     * annotation, from a static field named like the parameter plus "Values",
+     * or all values of an enum or boolean.
+     */
+    private List<String> defaultValues(Field field) {
+        String[] declared = field.getAnnotation(Param.class).value();
+        if (declared.length > 0) {
+            return Arrays.asList(declared);
+        }
+
+        List<String> result = new ArrayList<String>();
+        try {
+            Field valuesField = field.getDeclaringClass().getDeclaredField(field.getName() + "Values");
+            valuesField.setAccessible(true);
+            Object values = valuesField.get(null);
+            if (values instanceof Iterable) {
+                for (Object value : (Iterable<?>) values) {
+                    result.add(String.valueOf(value));
+                }
+            } else {
+                for (int i = 0; i < Array.getLength(values); i++) {
+                    result.add(String.valueOf(Array.get(values, i)));
+                }
+            }
+            return result;
+        } catch (NoSuchFieldException ignored) {
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        Class<?> fieldType = field.getType();
+        if (fieldType.isEnum()) {
+            for (Object constant : fieldType.getEnumConstants()) {
+                result.add(((Enum<?>) constant).name());
+            }
+        } else if (fieldType == boolean.class || fieldType == Boolean.class) {
+            result.add("true");
+            result.add("false");
+        } else {
+            throw new IllegalArgumentException("No values for parameter " + field);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new instance with its parameters set from {@code scenario},
+     * and its {@code @BeforeExperiment} methods run.
+     */
+    Object setUp(Map<String, String> scenario) throws Exception {
+        Constructor<?> constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        Object instance = constructor.newInstance();
+        for (Map.Entry<String, String> entry : scenario.entrySet()) {
+            Field field = params.get(entry.getKey());
+            field.set(instance, convert(field.getType(), entry.getValue()));
+        }
+        for (Method method : beforeMethods) {
+            invoke(method, instance);
+        }
+        return instance;
+    }
+
+    void tearDown(Object instance) throws Exception {
+        for (Method method : afterMethods) {
+            invoke(method, instance);
+        }
+    }
+
+    /** Calls {@code timeMethod} with {@code reps}, returning the elapsed nanoseconds. */
+    static long time(Method timeMethod, Object instance, long reps) throws Exception {
+        Object repsArgument = timeMethod.getParameterTypes()[0] == int.class
+                ? (Object) Integer.valueOf((int) reps)
+                : (Object) Long.valueOf(reps);
+        long start = System.nanoTime();
+        invoke(timeMethod, instance, repsArgument);
+        return System.nanoTime() - start;
+    }
+
+    private static Object invoke(Method method, Object instance, Object... args) throws Exception {
+        try {
+            return method.invoke(instance, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Object convert(Class<?> type, String value) throws Exception {
+        if (type == String.class) {
+            return value;
+        } else if (type == int.class || type == Integer.class) {
+            return Integer.valueOf(value);
+        } else if (type == long.class || type == Long.class) {
+            return Long.valueOf(value);
+        } else if (type == boolean.class || type == Boolean.class) {
+            return Boolean.valueOf(value);
+        } else if (type == float.class || type == Float.class) {
+            return Float.valueOf(value);
+        } else if (type == double.class || type == Double.class) {
+            return Double.valueOf(value);
+        } else if (type == short.class || type == Short.class) {
+            return Short.valueOf(value);
+        } else if (type == byte.class || type == Byte.class) {
+            return Byte.valueOf(value);
+        } else if (type == char.class || type == Character.class) {
+            return value.charAt(0);
+        } else if (type.isEnum()) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Object result = Enum.valueOf((Class<? extends Enum>) type, value);
+            return result;
+        }
+        // Like Caliper, fall back to valueOf(String), then a String constructor.
+        try {
+            Method valueOf = type.getMethod("valueOf", String.class);
+            if (Modifier.isStatic(valueOf.getModifiers())) {
+                return valueOf.invoke(null, value);
+            }
+        } catch (NoSuchMethodException ignored) {
+        }
+        return type.getConstructor(String.class).newInstance(value);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.harness;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Compares results against a baseline. A result regresses if its time or its
+ * allocations per operation grew by more than a threshold, and Welch's t-test
+ * says that the growth is significant. Larger scores are worse for both.
+ * Allocations have their own threshold, because they vary much less than
+ * time does.
+ */
+final class Comparison {
+    enum Verdict {
+        /** Significantly better than the baseline. */
+        IMPROVED,
+        /** No significant change beyond the threshold. */
+        UNCHANGED,
+        /** Significantly worse than the baseline. */
+        REGRESSED,
+        /** Too few measurements to test; only the change is reported. */
+        UNKNOWN,
+        /** Not in the baseline. */
+        NEW,
+    }
+
+    private final double threshold;
+    private final double allocationThreshold;
+    private final double alpha;
+    private final List<Row> rows = new ArrayList<Row>();
+
+    /**
+     * @param threshold the smallest relative change in time to flag, such as
+     *     0.05.
+     * @param allocationThreshold the smallest relative change in allocations
+     *     to flag.
+     * @param alpha the significance level of the t-test, such as 0.01.
+     */
+    Comparison(double threshold, double allocationThreshold, double alpha) {
+        this.threshold = threshold;
+        this.allocationThreshold = allocationThreshold;
+        this.alpha = alpha;
+    }
+
+    void compare(Map<String, Result> baseline, Iterable<Result> results) {
+        for (Result result : results) {
+            Result base = baseline.get(result.key());
+            compare(result, "", base != null ? base.primaryMetric : null, result.primaryMetric,
+                    threshold, 0);
+
+            // GC counts aren't compared: they scale with the calibrated rep count.
+            Result.Metric allocations = result.secondaryMetrics.get(Result.ALLOCATED_BYTES_PER_OP);
+            if (allocations != null) {
+                Result.Metric baseAllocations = base != null
+                        ? base.secondaryMetrics.get(Result.ALLOCATED_BYTES_PER_OP)
+                        : null;
+                // Less than a byte per op is the harness's own overhead, spread over the reps.
+                compare(result, Result.ALLOCATED_BYTES_PER_OP, baseAllocations, allocations,
+                        allocationThreshold, 1);
+            }
+        }
+    }
+
+    /**
+     * Compares one metric of {@code result}. {@code metricName} is empty for
+     * the primary metric. Changes no larger than {@code minimumChange}, in
+     * the metric's unit, are never flagged.
+     */
+    private void compare(Result result, String metricName, Result.Metric base,
+            Result.Metric current, double threshold, double minimumChange) {
+        Row row = new Row(result, metricName, current);
+        rows.add(row);
+        if (base == null) {
+            row.verdict = Verdict.NEW;
+            return;
+        }
+
+        row.baseline = base.score();
+        row.change = row.baseline == 0
+                ? (row.score == 0 ? 0 : Double.POSITIVE_INFINITY)
+                : (row.score - row.baseline) / row.baseline;
+        row.pValue = Statistics.welchTTest(base.rawData, current.rawData);
+        if (Math.abs(row.change) <= threshold
+                || Math.abs(row.score - row.baseline) <= minimumChange) {
+            row.verdict = Verdict.UNCHANGED;
+        } else if (Double.isNaN(row.pValue)) {
+            row.verdict = Verdict.UNKNOWN;
+        } else if (row.pValue >= alpha) {
+            row.verdict = Verdict.UNCHANGED;
+        } else {
+            row.verdict = row.change > 0 ? Verdict.REGRESSED : Verdict.IMPROVED;
+        }
+    }
+
+    boolean hasRegressions() {
+        for (Row row : rows) {
+            if (row.verdict == Verdict.REGRESSED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void print(PrintStream out) {
+        for (Row row : rows) {
+            // Drop the middle dot of JMH's metric names, which consoles may not show.
+            String name = row.metricName.isEmpty()
+                    ? row.result.key()
+                    : row.result.key() + " " + row.metricName.replace("\u00b7", "");
+            if (row.verdict == Verdict.NEW) {
+                out.printf("%-9s %s: %.3f %s%n", row.verdict, name, row.score, row.unit);
+            } else {
+                out.printf("%-9s %s: %.3f -> %.3f %s (%+.1f%%, p=%.4f)%n", row.verdict, name,
+                        row.baseline, row.score, row.unit, row.change * 100, row.pValue);
+            }
+        }
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONArray rowsJson = new JSONArray();
+        for (Row row : rows) {
+            JSONObject rowJson = new JSONObject();
+            rowJson.put("benchmark", row.result.benchmark);
+            if (!row.result.params.isEmpty()) {
+                rowJson.put("params", new JSONObject(row.result.params));
+            }
+            if (!row.metricName.isEmpty()) {
+                rowJson.put("metric", row.metricName);
+            }
+            rowJson.put("unit", row.unit);
+            rowJson.put("score", row.score);
+            if (row.verdict != Verdict.NEW) {
+                rowJson.put("baseline", row.baseline);
+                rowJson.put("change", Double.isInfinite(row.change) ? "Infinity" : row.change);
+                rowJson.put("pValue", Double.isNaN(row.pValue) ? "NaN" : row.pValue);
+            }
+            rowJson.put("verdict", row.verdict.name());
+            rowsJson.put(rowJson);
+        }
+        JSONObject result = new JSONObject();
+        result.put("threshold", threshold);
+        result.put("allocationThreshold", allocationThreshold);
+        result.put("alpha", alpha);
+        result.put("regressed", hasRegressions());
+        result.put("comparisons", rowsJson);
+        return result;
+    }
+
+    private static final class Row {
+        final Result result;
+        final String metricName;
+        final String unit;
+        final double score;
+        double baseline;
+        double change;
+        double pValue = Double.NaN;
+        Verdict verdict;
+
+        Row(Result result, String metricName, Result.Metric metric) {
+            this.result = result;
+            this.metricName = metricName;
+            this.unit = metric.unit;
+            this.score = metric.score();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.harness;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The measurements of one benchmark method with one set of parameter values.
+ * Results are written in the format of JMH's {@code -rf json} output, so
+ * tools that read JMH results can read these too.
+ */
+final class Result {
+    /** JMH's confidence level for {@code scoreError} and {@code scoreConfidence}. */
+    private static final double CONFIDENCE = 0.999;
+
+    /** The bytes allocated per operation, named like JMH's GC profiler's. */
+    static final String ALLOCATED_BYTES_PER_OP = "\u00b7gc.alloc.rate.norm";
+
+    /** The collections in each measurement iteration, named like JMH's GC profiler's. */
+    static final String GC_COUNT = "\u00b7gc.count";
+
+    private static final double[] PERCENTILES = { 0.0, 50.0, 90.0, 95.0, 99.0, 100.0 };
+
+    final String benchmark;
+    final Map<String, String> params;
+    final Metric primaryMetric;
+
+    /** Other metrics by name, such as {@link #ALLOCATED_BYTES_PER_OP}. */
+    final Map<String, Metric> secondaryMetrics = new LinkedHashMap<String, Metric>();
+
+    /** The settings this was measured with; only informational. */
+    int warmupIterations;
+    int measurementIterations;
+    long iterationTimeMillis;
+
+    Result(String benchmark, Map<String, String> params, Metric primaryMetric) {
+        this.benchmark = benchmark;
+        this.params = params;
+        this.primaryMetric = primaryMetric;
+    }
+
+    /** Returns a key identifying the benchmark and parameters measured. */
+    String key() {
+        return params.isEmpty() ? benchmark : benchmark + " " + params;
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("benchmark", benchmark);
+        result.put("mode", "avgt");
+        result.put("threads", 1);
+        result.put("forks", 1);
+        result.put("jdkVersion", System.getProperty("java.version"));
+        result.put("vmName", System.getProperty("java.vm.name"));
+        result.put("vmVersion", System.getProperty("java.vm.version"));
+        result.put("warmupIterations", warmupIterations);
+        result.put("warmupTime", iterationTimeMillis + " ms");
+        result.put("warmupBatchSize", 1);
+        result.put("measurementIterations", measurementIterations);
+        result.put("measurementTime", iterationTimeMillis + " ms");
+        result.put("measurementBatchSize", 1);
+        if (!params.isEmpty()) {
+            result.put("params", new JSONObject(params));
+        }
+        result.put("primaryMetric", primaryMetric.toJson());
+        JSONObject secondaryMetricsJson = new JSONObject();
+        for (Map.Entry<String, Metric> entry : secondaryMetrics.entrySet()) {
+            secondaryMetricsJson.put(entry.getKey(), entry.getValue().toJson());
+        }
+        result.put("secondaryMetrics", secondaryMetricsJson);
+        return result;
+    }
+
+    static Result fromJson(JSONObject json) throws JSONException {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        JSONObject paramsJson = json.optJSONObject("params");
+        if (paramsJson != null) {
+            for (Iterator<String> i = paramsJson.keys(); i.hasNext(); ) {
+                String name = i.next();
+                params.put(name, paramsJson.getString(name));
+            }
+        }
+        Result result = new Result(json.getString("benchmark"), params,
+                Metric.fromJson(json.getJSONObject("primaryMetric")));
+        JSONObject secondaryMetricsJson = json.optJSONObject("secondaryMetrics");
+        if (secondaryMetricsJson != null) {
+            for (Iterator<String> i = secondaryMetricsJson.keys(); i.hasNext(); ) {
+                String name = i.next();
+                result.secondaryMetrics.put(name,
+                        Metric.fromJson(secondaryMetricsJson.getJSONObject(name)));
+            }
+        }
+        result.warmupIterations = json.optInt("warmupIterations");
+        result.measurementIterations = json.optInt("measurementIterations");
+        return result;
+    }
+
+    static JSONArray toJson(Iterable<Result> results) throws JSONException {
+        JSONArray result = new JSONArray();
+        for (Result r : results) {
+            result.put(r.toJson());
+        }
+        return result;
+    }
+
+    static Map<String, Result> fromJson(JSONArray json) throws JSONException {
+        Map<String, Result> result = new LinkedHashMap<String, Result>();
+        for (int i = 0; i < json.length(); i++) {
+            Result r = fromJson(json.getJSONObject(i));
+            result.put(r.key(), r);
+        }
+        return result;
+    }
+
+    /** One measured quantity, such as the time per operation. */
+    static final class Metric {
+        final String unit;
+
+        /** One value per measurement iteration. */
+        final double[] rawData;
+
+        Metric(String unit, double[] rawData) {
+            this.unit = unit;
+            this.rawData = rawData;
+        }
+
+        double score() {
+            return Statistics.mean(rawData);
+        }
+
+        JSONObject toJson() throws JSONException {
+            double score = score();
+            double error = Statistics.confidenceHalfWidth(rawData, CONFIDENCE);
+            JSONObject result = new JSONObject();
+            result.put("score", number(score));
+            result.put("scoreError", number(error));
+            result.put("scoreConfidence", new JSONArray()
+                    .put(number(score - error))
+                    .put(number(score + error)));
+
+            double[] sorted = rawData.clone();
+            Arrays.sort(sorted);
+            JSONObject percentiles = new JSONObject();
+            for (double percentile : PERCENTILES) {
+                int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+                percentiles.put(Double.toString(percentile), sorted[Math.max(index, 0)]);
+            }
+            result.put("scorePercentiles", percentiles);
+            result.put("scoreUnit", unit);
+
+            // JMH nests raw data by fork; this harness always runs one.
+            JSONArray fork = new JSONArray();
+            for (double value : rawData) {
+                fork.put(value);
+            }
+            result.put("rawData", new JSONArray().put(fork));
+            return result;
+        }
+
+        static Metric fromJson(JSONObject json) throws JSONException {
+            JSONArray forks = json.getJSONArray("rawData");
+            int count = 0;
+            for (int i = 0; i < forks.length(); i++) {
+                count += forks.getJSONArray(i).length();
+            }
+            double[] rawData = new double[count];
+            int index = 0;
+            for (int i = 0; i < forks.length(); i++) {
+                JSONArray fork = forks.getJSONArray(i);
+                for (int j = 0; j < fork.length(); j++) {
+                    rawData[index++] = fork.getDouble(j);
+                }
+            }
+            return new Metric(json.getString("scoreUnit"), rawData);
+        }
+
+        /** JSON has no NaN, so JMH writes it as a string. */
+        private static Object number(double value) {
+            return Double.isNaN(value) || Double.isInfinite(value)
+                    ? (Object) Double.toString(value)
+                    : (Object) value;
+        }
+    }
+}
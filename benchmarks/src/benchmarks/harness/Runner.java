@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.harness;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+/**
+ * Runs Caliper-style benchmark classes without Caliper, and writes results
+ * in JMH's JSON format. The options follow JMH's where they overlap:
+ *
+ * <pre>
+ *   Runner [options] class...
+ *     -wi N              warmup iterations (default 3)
+ *     -i N               measurement iterations (default 10)
+ *     -r TIME            time per iteration, such as 500ms or 2s (default 1s)
+ *     -p name=v1,v2      run only these values of a parameter
+ *     -b REGEX           run only benchmarks whose names contain a match
+ *     -rf json           the result format; only JSON is supported
+ *     -rff FILE          write results to FILE
+ *     --baseline FILE    compare results against FILE
+ *     --threshold PCT    the smallest change in time to flag (default 5)
+ *     --alloc-threshold PCT
+ *                        the smallest change in allocations to flag (default 1)
+ *     --alpha P          the significance level of the comparison (default 0.01)
+ *     --report FILE      write the comparison to FILE as JSON
+ *
+ *   Runner --compare BASELINE RESULTS [--threshold PCT] [--alloc-threshold PCT]
+ *       [--alpha P] [--report FILE]
+ * </pre>
+ *
+ * <p>Each benchmark is measured by calibrating a rep count that runs for the
+ * iteration time, running the warmup iterations, then recording the time
+ * per rep of each measurement iteration. Everything runs in this VM; unlike
+ * JMH, there are no forks.
+ *
+ * <p>Where the VM can count them, the bytes allocated per rep and the number
+ * of collections are recorded too, as the secondary metrics that JMH's GC
+ * profiler reports. The comparison flags growth in allocations per rep as a
+ * regression, just like growth in time.
+ *
+ * <p>The exit status is 1 if a benchmark failed or regressed, and 2 for
+ * usage errors.
+ */
+public final class Runner {
+    private int warmupIterations = 3;
+    private int measurementIterations = 10;
+    private long iterationTimeNanos = 1000000000L;
+    private final Map<String, List<String>> paramOverrides = new HashMap<String, List<String>>();
+    private Pattern filter;
+    private String resultFile;
+    private String baselineFile;
+    private String compareResultsFile;
+    private double threshold = 0.05;
+    private double allocationThreshold = 0.01;
+    private double alpha = 0.01;
+    private String reportFile;
+    private final List<String> classNames = new ArrayList<String>();
+
+    private boolean failed;
+
+    /** Counts allocations and collections, or null if this VM can't. */
+    private AllocationCounter allocationCounter;
+
+    public static void main(String[] args) throws Exception {
+        Runner runner = new Runner();
+        try {
+            runner.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: Runner [-wi N] [-i N] [-r TIME] [-p name=v1,v2] [-b REGEX]"
+                    + " [-rff FILE] [--baseline FILE] [--threshold PCT]"
+                    + " [--alloc-threshold PCT] [--alpha P] [--report FILE] class...");
+            System.err.println("       Runner --compare BASELINE RESULTS [--threshold PCT]"
+                    + " [--alloc-threshold PCT] [--alpha P] [--report FILE]");
+            System.exit(2);
+        }
+        System.exit(runner.run() ? 0 : 1);
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("-")) {
+                classNames.add(arg);
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if (arg.equals("-wi")) {
+                warmupIterations = parseInt(arg, value, 0);
+            } else if (arg.equals("-i")) {
+                measurementIterations = parseInt(arg, value, 1);
+            } else if (arg.equals("-r")) {
+                iterationTimeNanos = parseTime(value);
+            } else if (arg.equals("-p")) {
+                int equals = value.indexOf('=');
+                if (equals < 1) {
+                    throw new IllegalArgumentException("Expected name=values: " + value);
+                }
+                paramOverrides.put(value.substring(0, equals),
+                        Arrays.asList(value.substring(equals + 1).split(",")));
+            } else if (arg.equals("-b")) {
+                filter = Pattern.compile(value);
+            } else if (arg.equals("-rf")) {
+                if (!value.equalsIgnoreCase("json")) {
+                    throw new IllegalArgumentException("Unsupported result format: " + value);
+                }
+            } else if (arg.equals("-rff")) {
+                resultFile = value;
+            } else if (arg.equals("--baseline")) {
+                baselineFile = value;
+            } else if (arg.equals("--compare")) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing results for --compare");
+                }
+                baselineFile = value;
+                compareResultsFile = args[++i];
+            } else if (arg.equals("--threshold")) {
+                threshold = parseDouble(arg, value) / 100;
+            } else if (arg.equals("--alloc-threshold")) {
+                allocationThreshold = parseDouble(arg, value) / 100;
+            } else if (arg.equals("--alpha")) {
+                alpha = parseDouble(arg, value);
+            } else if (arg.equals("--report")) {
+                reportFile = value;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (compareResultsFile != null ? !classNames.isEmpty() : classNames.isEmpty()) {
+            throw new IllegalArgumentException(compareResultsFile != null
+                    ? "--compare doesn't run benchmarks"
+                    : "No benchmark classes");
+        }
+    }
+
+    private static int parseInt(String option, String value, int min) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= min) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Bad value for " + option + ": " + value);
+    }
+
+    private static double parseDouble(String option, String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad value for " + option + ": " + value);
+        }
+    }
+
+    /** Parses a time like "1s", "500ms" or "100us" into nanoseconds. */
+    static long parseTime(String value) {
+        // "s" comes last, because the other units end with it too.
+        String[] units = { "ns", "us", "ms", "s" };
+        long[] nanos = { 1L, 1000L, 1000000L, 1000000000L };
+        for (int i = 0; i < units.length; i++) {
+            if (!value.endsWith(units[i])) {
+                continue;
+            }
+            try {
+                long count = Long.parseLong(value.substring(0, value.length() - units[i].length()));
+                if (count > 0) {
+                    return count * nanos[i];
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            break;
+        }
+        throw new IllegalArgumentException("Bad time: " + value);
+    }
+
+    /** Returns false if a benchmark failed or regressed. */
+    private boolean run() throws IOException, JSONException {
+        List<Result> results;
+        if (compareResultsFile != null) {
+            results = new ArrayList<Result>(Result.fromJson(readJson(compareResultsFile)).values());
+        } else {
+            results = new ArrayList<Result>();
+            allocationCounter = AllocationCounter.create();
+            if (allocationCounter == null) {
+                System.err.println("This VM can't count allocations; only time is measured");
+            }
+            for (String className : classNames) {
+                runClass(className, results);
+            }
+            if (resultFile != null) {
+                writeFile(resultFile, Result.toJson(results).toString(2));
+            }
+        }
+
+        if (baselineFile == null) {
+            return !failed;
+        }
+        Comparison comparison = new Comparison(threshold, allocationThreshold, alpha);
+        comparison.compare(Result.fromJson(readJson(baselineFile)), results);
+        comparison.print(System.out);
+        if (reportFile != null) {
+            writeFile(reportFile, comparison.toJson().toString(2));
+        }
+        return !failed && !comparison.hasRegressions();
+    }
+
+    private void runClass(String className, List<Result> results) {
+        BenchmarkClass benchmarkClass;
+        List<Map<String, String>> scenarios;
+        try {
+            benchmarkClass = new BenchmarkClass(Class.forName(className));
+            scenarios = benchmarkClass.scenarios(paramOverrides);
+        } catch (Exception e) {
+            fail(className, e);
+            return;
+        }
+
+        for (Map<String, String> scenario : scenarios) {
+            List<Method> timeMethods = new ArrayList<Method>();
+            for (Method timeMethod : benchmarkClass.timeMethods()) {
+                if (filter == null || filter.matcher(benchmarkClass.benchmarkName(timeMethod)).find()) {
+                    timeMethods.add(timeMethod);
+                }
+            }
+            if (timeMethods.isEmpty()) {
+                continue;
+            }
+
+            Object instance;
+            try {
+                instance = benchmarkClass.setUp(scenario);
+            } catch (Exception e) {
+                fail(className + " " + scenario, e);
+                continue;
+            }
+            for (Method timeMethod : timeMethods) {
+                String name = benchmarkClass.benchmarkName(timeMethod);
+                Result result;
+                try {
+                    result = measure(timeMethod, instance, name, scenario);
+                } catch (Exception e) {
+                    fail(name + " " + scenario, e);
+                    continue;
+                }
+                results.add(result);
+                double error = Statistics.confidenceHalfWidth(result.primaryMetric.rawData, 0.999);
+                Result.Metric allocations = result.secondaryMetrics.get(Result.ALLOCATED_BYTES_PER_OP);
+                Result.Metric gcCounts = result.secondaryMetrics.get(Result.GC_COUNT);
+                if (allocations != null) {
+                    System.out.printf("%s: %.3f +- %.3f %s, %.1f B/op, %.1f GCs/iteration%n",
+                            result.key(), result.primaryMetric.score(), error,
+                            result.primaryMetric.unit, allocations.score(), gcCounts.score());
+                } else {
+                    System.out.printf("%s: %.3f +- %.3f %s%n", result.key(),
+                            result.primaryMetric.score(), error, result.primaryMetric.unit);
+                }
+            }
+            try {
+                benchmarkClass.tearDown(instance);
+            } catch (Exception e) {
+                fail(className + " " + scenario, e);
+            }
+        }
+    }
+
+    private Result measure(Method timeMethod, Object instance, String name,
+            Map<String, String> scenario) throws Exception {
+        long reps = calibrate(timeMethod, instance);
+        for (int i = 0; i < warmupIterations; i++) {
+            BenchmarkClass.time(timeMethod, instance, reps);
+        }
+
+        boolean countWhileTiming = allocationCounter != null && !allocationCounter.perturbsTiming();
+        double[] nanosPerRep = new double[measurementIterations];
+        double[] bytesPerRep = new double[measurementIterations];
+        double[] gcCounts = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            if (countWhileTiming) {
+                long gcCountBefore = allocationCounter.gcCount();
+                allocationCounter.reset();
+                nanosPerRep[i] = (double) BenchmarkClass.time(timeMethod, instance, reps) / reps;
+                bytesPerRep[i] = (double) allocationCounter.allocatedBytes() / reps;
+                gcCounts[i] = allocationCounter.gcCount() - gcCountBefore;
+            } else {
+                nanosPerRep[i] = (double) BenchmarkClass.time(timeMethod, instance, reps) / reps;
+            }
+        }
+        if (allocationCounter != null && !countWhileTiming) {
+            // Count in separate runs, so that counting doesn't slow the timed runs.
+            for (int i = 0; i < measurementIterations; i++) {
+                long gcCountBefore = allocationCounter.gcCount();
+                allocationCounter.reset();
+                BenchmarkClass.time(timeMethod, instance, reps);
+                bytesPerRep[i] = (double) allocationCounter.allocatedBytes() / reps;
+                gcCounts[i] = allocationCounter.gcCount() - gcCountBefore;
+            }
+        }
+
+        Result result = new Result(name, scenario, new Result.Metric("ns/op", nanosPerRep));
+        if (allocationCounter != null) {
+            result.secondaryMetrics.put(Result.ALLOCATED_BYTES_PER_OP,
+                    new Result.Metric("B/op", bytesPerRep));
+            result.secondaryMetrics.put(Result.GC_COUNT, new Result.Metric("counts", gcCounts));
+        }
+        result.warmupIterations = warmupIterations;
+        result.measurementIterations = measurementIterations;
+        result.iterationTimeMillis = iterationTimeNanos / 1000000L;
+        return result;
+    }
+
+    /**
+     * Returns the rep count that runs for about the iteration time, found by
+     * doubling the reps until a run takes a tenth of it.
+     */
+    private long calibrate(Method timeMethod, Object instance) throws Exception {
+        long maxReps = timeMethod.getParameterTypes()[0] == int.class
+                ? Integer.MAX_VALUE
+                : Long.MAX_VALUE / 2;
+        long reps = 1;
+        long elapsed = BenchmarkClass.time(timeMethod, instance, reps);
+        while (elapsed < iterationTimeNanos / 10 && reps < maxReps / 2) {
+            reps *= 2;
+            elapsed = BenchmarkClass.time(timeMethod, instance, reps);
+        }
+        double scaled = (double) reps * iterationTimeNanos / Math.max(elapsed, 1);
+        return Math.max(1, Math.min(maxReps, (long) scaled));
+    }
+
+    private void fail(String what, Exception e) {
+        failed = true;
+        System.err.println("FAILED " + what + ": " + e);
+        e.printStackTrace();
+    }
+
+    private static JSONArray readJson(String path) throws IOException, JSONException {
+        InputStream in = new FileInputStream(path);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+            String json = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            return new JSONArray(new JSONTokener(json));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeFile(String path, String contents) throws IOException {
+        OutputStream out = new FileOutputStream(path);
+        try {
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.harness;
+
+/**
+ * The few statistics the harness needs: sample moments, Student's t
+ * distribution and Welch's t-test.
+ */
+final class Statistics {
+    private Statistics() {
+    }
+
+    static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /** Returns the unbiased sample variance, or NaN for fewer than two values. */
+    static double variance(double[] values) {
+        if (values.length < 2) {
+            return Double.NaN;
+        }
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return sum / (values.length - 1);
+    }
+
+    static double min(double[] values) {
+        double result = Double.POSITIVE_INFINITY;
+        for (double value : values) {
+            result = Math.min(result, value);
+        }
+        return result;
+    }
+
+    static double max(double[] values) {
+        double result = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            result = Math.max(result, value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the half-width of the two-sided confidence interval for the
+     * mean of {@code values} at {@code confidence}, such as 0.999. Returns NaN
+     * for fewer than two values.
+     */
+    static double confidenceHalfWidth(double[] values, double confidence) {
+        if (values.length < 2) {
+            return Double.NaN;
+        }
+        double t = studentTQuantile(1 - (1 - confidence) / 2, values.length - 1);
+        return t * Math.sqrt(variance(values) / values.length);
+    }
+
+    /**
+     * Returns the two-sided p-value of Welch's t-test for the hypothesis
+     * that {@code a} and {@code b} have the same mean, or NaN if either has
+     * fewer than two values.
+     */
+    static double welchTTest(double[] a, double[] b) {
+        if (a.length < 2 || b.length < 2) {
+            return Double.NaN;
+        }
+        double varianceA = variance(a) / a.length;
+        double varianceB = variance(b) / b.length;
+        double standardError = Math.sqrt(varianceA + varianceB);
+        double difference = mean(a) - mean(b);
+        if (standardError == 0) {
+            return difference == 0 ? 1 : 0;
+        }
+        double t = difference / standardError;
+        double degreesOfFreedom = (varianceA + varianceB) * (varianceA + varianceB)
+                / (varianceA * varianceA / (a.length - 1) + varianceB * varianceB / (b.length - 1));
+        return 2 * (1 - studentTCdf(Math.abs(t), degreesOfFreedom));
+    }
+
+    /** Returns P(T <= t) for Student's t distribution. */
+    static double studentTCdf(double t, double degreesOfFreedom) {
+        double x = degreesOfFreedom / (degreesOfFreedom + t * t);
+        double tail = 0.5 * regularizedIncompleteBeta(x, degreesOfFreedom / 2, 0.5);
+        return t > 0 ? 1 - tail : tail;
+    }
+
+    /** Returns the t such that {@code studentTCdf(t, degreesOfFreedom) == p}. */
+    static double studentTQuantile(double p, double degreesOfFreedom) {
+        if (p < 0.5) {
+            return -studentTQuantile(1 - p, degreesOfFreedom);
+        }
+        double low = 0;
+        double high = 1;
+        while (studentTCdf(high, degreesOfFreedom) < p) {
+            low = high;
+            high *= 2;
+        }
+        for (int i = 0; i < 100; i++) {
+            double middle = (low + high) / 2;
+            if (studentTCdf(middle, degreesOfFreedom) < p) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Returns I_x(a, b), evaluated with the continued fraction from Numerical
+     * Recipes, section 6.4.
+     */
+    private static double regularizedIncompleteBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        } else if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b)
+                + a * Math.log(x) + b * Math.log(1 - x));
+        // The continued fraction converges quickly only below this point.
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        } else {
+            return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+        }
+    }
+
+    private static double betaContinuedFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double result = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double even = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1 + even * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + even / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            result *= d * c;
+
+            double odd = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1 + odd * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + odd / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = d * c;
+            result *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Returns ln(Gamma(x)) for x > 0, using the Lanczos approximation. */
+    private static double logGamma(double x) {
+        final double[] coefficients = {
+            76.18009172947146, -86.50532032941677, 24.01409824083091,
+            -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5,
+        };
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.io.File;
+import java.io.FileOutputStream;
+import libcore.io.BufferIterator;
+import libcore.io.MemoryMappedFile;
+
+/**
+ * Compares per-element reads with the bulk array reads of a {@link BufferIterator} over a
+ * memory-mapped file.
+ */
+public class BufferIteratorBenchmark {
+    @Param({"16", "1024", "65536"})
+    private int byteCount;
+
+    @Param({"true", "false"})
+    private boolean bigEndian;
+
+    private File file;
+    private MemoryMappedFile mappedFile;
+    private short[] shorts;
+    private int[] ints;
+    private long[] longs;
+    private float[] floats;
+    private double[] doubles;
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        file = File.createTempFile("BufferIteratorBenchmark", null);
+        FileOutputStream out = new FileOutputStream(file);
+        byte[] bytes = new byte[byteCount];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) i;
+        }
+        out.write(bytes);
+        out.close();
+        mappedFile = MemoryMappedFile.mmapRO(file.getPath());
+
+        shorts = new short[byteCount / 2];
+        ints = new int[byteCount / 4];
+        longs = new long[byteCount / 8];
+        floats = new float[byteCount / 4];
+        doubles = new double[byteCount / 8];
+    }
+
+    @AfterExperiment
+    protected void tearDown() throws Exception {
+        mappedFile.close();
+        file.delete();
+    }
+
+    private BufferIterator iterator() {
+        return bigEndian ? mappedFile.bigEndianIterator() : mappedFile.littleEndianIterator();
+    }
+
+    public void timeReadShort(int reps) {
+        BufferIterator it = iterator();
+        for (int rep = 0; rep < reps; ++rep) {
+            it.seek(0);
+            for (int i = 0; i < shorts.length; ++i) {
+                shorts[i] = it.readShort();
+            }
+        }
+    }
+
+    public void timeReadShortArray(int reps) {
+        BufferIterator it = iterator();
+        for (int rep = 0; rep < reps; ++rep) {
+            it.seek(0);
+            it.readShortArray(shorts, 0, shorts.length);
+        }
+    }
+
+    public void timeReadInt(int reps) {
+        BufferIterator it = iterator();
+        for (int rep = 0; rep < reps; ++rep) {
+            it.seek(0);
+            for (int i = 0; i < ints.length; ++i) {
+                ints[i] = it.readInt();
+            }
+        }
+    }
+
+    public void timeReadIntArray(int reps) {
+        BufferIterator it = iterator();
+        for (int rep = 0; rep < reps; ++rep) {
+            it.seek(0);
+            it.readIntArray(ints, 0, ints.length);
+        }
+    }
+
+    public void timeReadLongArray(int reps) {
+        BufferIterator it = iterator();
+        for (int rep = 0; rep < reps; ++rep) {
+            it.seek(0);
+            it.readLongArray(longs, 0, longs.length);
+        }
+    }
+
+    public void timeReadFloatArray(int reps) {
+        BufferIterator it = iterator();
+        for (int rep = 0; rep < reps; ++rep) {
+            it.seek(0);
+            it.readFloatArray(floats, 0, floats.length);
+        }
+    }
+
+    public void timeReadDoubleArray(int reps) {
+        BufferIterator it = iterator();
+        for (int rep = 0; rep < reps; ++rep) {
+            it.seek(0);
+            it.readDoubleArray(doubles, 0, doubles.length);
+        }
+    }
+}
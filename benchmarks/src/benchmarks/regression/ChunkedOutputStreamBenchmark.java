@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import sun.net.www.http.ChunkedOutputStream;
+
+/**
+ * Measures chunked upload throughput to a server on the loopback interface that discards
+ * everything it receives.
+ */
+public class ChunkedOutputStreamBenchmark {
+    private static final int BYTES_PER_REP = 1024 * 1024;
+
+    // The size of each write() made by the caller.
+    @Param({"512", "4096", "65536"})
+    private int writeSize;
+
+    private ServerSocket serverSocket;
+    private Thread drainThread;
+    private Socket socket;
+    private PrintStream socketOut;
+    private byte[] data;
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        drainThread = new Thread(new Runnable() {
+            @Override public void run() {
+                try (Socket peer = serverSocket.accept()) {
+                    InputStream in = peer.getInputStream();
+                    byte[] buffer = new byte[65536];
+                    while (in.read(buffer) != -1) {
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+        });
+        drainThread.start();
+
+        socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        socketOut = new PrintStream(new BufferedOutputStream(socket.getOutputStream()));
+        data = new byte[writeSize];
+    }
+
+    @AfterExperiment
+    protected void tearDown() throws Exception {
+        socket.close();
+        serverSocket.close();
+        drainThread.join();
+    }
+
+    public void timeUpload(int reps) throws Exception {
+        for (int rep = 0; rep < reps; ++rep) {
+            ChunkedOutputStream out = new ChunkedOutputStream(socketOut);
+            for (int written = 0; written < BYTES_PER_REP; written += writeSize) {
+                out.write(data, 0, writeSize);
+            }
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.android.dex.ClassData;
+import com.android.dex.ClassDef;
+import com.android.dex.Code;
+import com.android.dex.Dex;
+import com.android.dex.DexVisitor;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+/**
+ * Loads every dex file, and archive containing one, in a directory and reads
+ * its type names. Compares copying each onto the heap with {@link
+ * Dex#mmap}, looking up types with and without a {@link
+ * Dex#buildSymbolIndex symbol index}, walking all code with the readers and
+ * with a {@link DexVisitor}, and computing hashes.
+ *
+ * <p>Peak RSS is a property of the whole process, so it can't be measured
+ * per rep. To compare it, run each mode in a fresh VM:
+ * <pre>
+ *   dalvikvm -cp ... benchmarks.regression.DexBenchmark load /system/framework
+ *   dalvikvm -cp ... benchmarks.regression.DexBenchmark mmap /system/framework
+ * </pre>
+ */
+public class DexBenchmark {
+    @Param({"/system/framework"})
+    private String directory;
+
+    private List<File> files;
+    private Dex dex;
+    private Dex indexedDex;
+    private Dex writableDex;
+    private List<String> typeNames;
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        files = findDexFiles(new File(directory));
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No dex files in " + directory);
+        }
+
+        // Look up every type of the largest file, as when resolving symbols across dex files.
+        File largest = files.get(0);
+        for (File file : files) {
+            if (file.length() > largest.length()) {
+                largest = file;
+            }
+        }
+        dex = new Dex(largest);
+        indexedDex = new Dex(largest);
+        indexedDex.buildSymbolIndex();
+        writableDex = new Dex(dex.getBytes());
+        typeNames = new ArrayList<String>(dex.typeNames());
+    }
+
+    public int timeLoad(int reps) throws IOException {
+        return run(reps, files, false);
+    }
+
+    public int timeMmap(int reps) throws IOException {
+        return run(reps, files, true);
+    }
+
+    public int timeFindTypeIndex(int reps) {
+        return findTypeIndices(reps, dex);
+    }
+
+    public int timeFindTypeIndexIndexed(int reps) {
+        return findTypeIndices(reps, indexedDex);
+    }
+
+    private int findTypeIndices(int reps, Dex dex) {
+        int result = 0;
+        for (int i = 0; i < reps; ++i) {
+            for (String typeName : typeNames) {
+                result += dex.findTypeIndex(typeName);
+            }
+        }
+        return result;
+    }
+
+    public void timeWriteHashes(int reps) throws IOException {
+        for (int i = 0; i < reps; ++i) {
+            writableDex.writeHashes();
+        }
+    }
+
+    public int timeComputeChecksum(int reps) throws IOException {
+        int result = 0;
+        for (int i = 0; i < reps; ++i) {
+            result += dex.computeChecksum();
+        }
+        return result;
+    }
+
+    public int timeWalkWithReaders(int reps) {
+        int result = 0;
+        for (int i = 0; i < reps; ++i) {
+            for (ClassDef classDef : dex.classDefs()) {
+                if (classDef.getClassDataOffset() == 0) {
+                    continue;
+                }
+                for (ClassData.Method method : dex.readClassData(classDef).allMethods()) {
+                    if (method.getCodeOffset() != 0) {
+                        Code code = dex.readCode(method);
+                        result += code.getInstructions().length + code.getTries().length;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public int timeWalkWithVisitor(int reps) {
+        CountingVisitor visitor = new CountingVisitor();
+        for (int i = 0; i < reps; ++i) {
+            dex.accept(visitor);
+        }
+        return visitor.count;
+    }
+
+    private static final class CountingVisitor extends DexVisitor {
+        int count;
+
+        @Override public void visitInsns(short[] insns, int count) {
+            this.count += count;
+        }
+
+        @Override public void visitTry(int startAddress, int instructionCount) {
+            count++;
+        }
+    }
+
+    private static int run(int reps, List<File> files, boolean mmap) throws IOException {
+        int result = 0;
+        for (int i = 0; i < reps; ++i) {
+            for (File file : files) {
+                Dex dex = mmap ? Dex.mmap(file) : new Dex(file);
+                result += dex.typeNames().size();
+            }
+        }
+        return result;
+    }
+
+    private static List<File> findDexFiles(File directory) {
+        List<File> result = new ArrayList<File>();
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return result;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            if (child.isDirectory()) {
+                result.addAll(findDexFiles(child));
+            } else if (name.endsWith(".dex") || name.endsWith(".jar") || name.endsWith(".apk")) {
+                if (name.endsWith(".dex") || containsDex(child)) {
+                    result.add(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsDex(File archive) {
+        try {
+            ZipFile zipFile = new ZipFile(archive);
+            try {
+                return zipFile.getEntry("classes.dex") != null;
+            } finally {
+                zipFile.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Returns the process's peak resident set size, from /proc. */
+    private static String peakRss() throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader("/proc/self/status"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("VmHWM:")) {
+                    return line.substring("VmHWM:".length()).trim();
+                }
+            }
+            return "unknown";
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !(args[0].equals("load") || args[0].equals("mmap"))) {
+            System.err.println("usage: DexBenchmark load|mmap DIRECTORY");
+            System.exit(2);
+        }
+        List<File> files = findDexFiles(new File(args[1]));
+        long start = System.nanoTime();
+        int types = run(1, files, args[0].equals("mmap"));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        System.out.printf("%s: %d files, %d types, %d ms, peak RSS %s%n",
+                args[0], files.size(), types, elapsedMillis, peakRss());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolves the same small set of hosts from several threads at once, as
+ * happens when many connections to the same servers are opened together.
+ * After the first rep nearly every lookup is an address cache hit, so this
+ * measures contention on the cache.
+ */
+public class DnsConcurrentBenchmark {
+    private static final String[] HOSTS = new String[] {
+        "www.amazon.com",
+        "ad.doubleclick.com",
+        "www.google.com",
+        "www.cnn.com",
+        "bad.host.mtv.corp.google.com",
+    };
+
+    @Param({"1", "4", "16"})
+    private int threads;
+
+    private Workers workers;
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        workers = new Workers(threads, new Workers.Task() {
+            @Override public void run(int thread, int reps) {
+                for (int i = 0; i < reps; ++i) {
+                    try {
+                        InetAddress.getByName(HOSTS[(i + thread) % HOSTS.length]);
+                    } catch (UnknownHostException ex) {
+                    }
+                }
+            }
+        });
+    }
+
+    @AfterExperiment
+    protected void tearDown() throws Exception {
+        workers.stop();
+    }
+
+    public void timeGetByName(int reps) throws Exception {
+        workers.run(reps);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Builds and walks a large generated document with the platform DOM. Run
+ * with Caliper's allocation instrument to measure the memory used by {@link
+ * #timeBuild}.
+ */
+public class DomBenchmark {
+    @Param({"1", "50"})
+    private int megabytes;
+
+    private byte[] xml;
+    private DocumentBuilder builder;
+    private Document document;
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        StringBuilder out = new StringBuilder();
+        out.append("<?xml version='1.0' encoding='UTF-8'?>\n<records>\n");
+        for (int i = 0; out.length() < megabytes * 1024 * 1024; i++) {
+            out.append("  <record id='").append(i).append("' kind='k").append(i % 7).append("'>")
+                    .append("<name>record ").append(i).append("</name>")
+                    .append("<value>").append(i * 0.25).append("</value>")
+                    .append("<note>some text &amp; an entity</note>")
+                    .append("</record>\n");
+        }
+        out.append("</records>\n");
+        xml = out.toString().getBytes(StandardCharsets.UTF_8);
+
+        builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        document = builder.parse(new ByteArrayInputStream(xml));
+    }
+
+    public int timeBuild(int reps) throws Exception {
+        int result = 0;
+        for (int i = 0; i < reps; i++) {
+            Document document = builder.parse(new ByteArrayInputStream(xml));
+            result += document.getDocumentElement().getChildNodes().getLength();
+        }
+        return result;
+    }
+
+    /**
+     * Visits every node by sibling links, which creates the nodes of any
+     * text that hasn't been visited yet.
+     */
+    public int timeWalk(int reps) {
+        int result = 0;
+        for (int i = 0; i < reps; i++) {
+            result += walk(document.getDocumentElement());
+        }
+        return result;
+    }
+
+    public int timeTextContent(int reps) {
+        int result = 0;
+        for (int i = 0; i < reps; i++) {
+            result += document.getDocumentElement().getTextContent().length();
+        }
+        return result;
+    }
+
+    public int timeGetElementsByTagName(int reps) {
+        int result = 0;
+        for (int i = 0; i < reps; i++) {
+            result += document.getElementsByTagName("value").getLength();
+        }
+        return result;
+    }
+
+    private static int walk(Node node) {
+        int result = 1;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            result += walk(child);
+        }
+        return result;
+    }
+}
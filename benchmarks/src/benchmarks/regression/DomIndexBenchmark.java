@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Looks up elements by tag name and ID in a generated document, with and
+ * without the platform DOM's element index.
+ */
+public class DomIndexBenchmark {
+    @Param({"1", "10"})
+    private int megabytes;
+
+    @Param({"false", "true"})
+    private boolean indexed;
+
+    private Document document;
+    private Element root;
+    private String lastId;
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        StringBuilder out = new StringBuilder();
+        out.append("<?xml version='1.0' encoding='UTF-8'?>\n<records>\n");
+        int i = 0;
+        for (; out.length() < megabytes * 1024 * 1024; i++) {
+            out.append("  <record id='").append(i).append("' kind='k").append(i % 7).append("'>")
+                    .append("<name>record ").append(i).append("</name>")
+                    .append("<value>").append(i * 0.25).append("</value>")
+                    .append("</record>\n");
+        }
+        out.append("</records>\n");
+        lastId = Integer.toString(i - 1);
+
+        document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+                new ByteArrayInputStream(out.toString().getBytes(StandardCharsets.UTF_8)));
+        document.getDomConfig().setParameter("http://android.com/dom/element-index", indexed);
+        root = document.getDocumentElement();
+    }
+
+    public int timeGetElementsByTagName(int reps) {
+        int result = 0;
+        for (int i = 0; i < reps; i++) {
+            result += document.getElementsByTagName("value").getLength();
+        }
+        return result;
+    }
+
+    /** Looks up the last record, which a walk of the tree finds last. */
+    public int timeGetElementById(int reps) {
+        int result = 0;
+        for (int i = 0; i < reps; i++) {
+            result += document.getElementById(lastId).getChildNodes().getLength();
+        }
+        return result;
+    }
+
+    /**
+     * Adds a record, looks up elements, and removes the record again. Every
+     * query follows a mutation, so the index never helps, and must not cost
+     * more than the tree walk it replaces.
+     */
+    public int timeMutateThenGetElementsByTagName(int reps) {
+        int result = 0;
+        for (int i = 0; i < reps; i++) {
+            Element record = document.createElement("record");
+            record.appendChild(document.createElement("value"));
+            root.appendChild(record);
+            result += document.getElementsByTagName("value").getLength();
+            root.removeChild(record);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Compares encoding a document with {@link JSONObject#toString} against streaming it to a
+ * writer with {@link JSONObject#write}.
+ */
+public class JsonSerializeBenchmark {
+    @Param({"10", "1000", "100000"})
+    private int elementCount;
+
+    private JSONObject document;
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        JSONArray elements = new JSONArray();
+        for (int i = 0; i < elementCount; i++) {
+            JSONObject element = new JSONObject();
+            element.put("id", 1000000L + i);
+            element.put("name", "element " + i);
+            element.put("score", i * 0.25);
+            element.put("enabled", (i & 1) == 0);
+            elements.put(element);
+        }
+        document = new JSONObject();
+        document.put("elements", elements);
+    }
+
+    public void timeToString(int reps) throws Exception {
+        for (int i = 0; i < reps; i++) {
+            Writer writer = newWriter();
+            writer.write(document.toString());
+            writer.flush();
+        }
+    }
+
+    public void timeWrite(int reps) throws Exception {
+        for (int i = 0; i < reps; i++) {
+            document.write(newWriter());
+        }
+    }
+
+    private static Writer newWriter() {
+        return new BufferedWriter(
+                new OutputStreamWriter(new NullOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        @Override public void write(int b) {
+        }
+
+        @Override public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import libcore.util.BasicLruCache;
+import libcore.util.ConcurrentLruCache;
+
+/**
+ * Compares {@link BasicLruCache} with {@link ConcurrentLruCache} when the
+ * same cache is read from several threads at once.
+ */
+public class LruCacheBenchmark {
+    private static final int CACHE_SIZE = 64;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int threads;
+
+    // The number of distinct keys looked up. Above CACHE_SIZE some lookups miss.
+    @Param({"32", "128"})
+    private int keys;
+
+    @Param({"BASIC", "CONCURRENT"})
+    private Implementation implementation;
+
+    private Integer[] keyObjects;
+
+    private BasicLruCache<Integer, Integer> basicCache;
+    private ConcurrentLruCache<Integer, Integer> concurrentCache;
+    private Workers workers;
+
+    enum Implementation { BASIC, CONCURRENT }
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        keyObjects = new Integer[keys];
+        for (int i = 0; i < keys; ++i) {
+            keyObjects[i] = i;
+        }
+        basicCache = new BasicLruCache<Integer, Integer>(CACHE_SIZE) {
+            @Override protected Integer create(Integer key) {
+                return key;
+            }
+        };
+        concurrentCache = new ConcurrentLruCache<Integer, Integer>(CACHE_SIZE) {
+            @Override protected Integer create(Integer key) {
+                return key;
+            }
+        };
+        workers = new Workers(threads, new Workers.Task() {
+            @Override public void run(int thread, int reps) {
+                Integer[] keyObjects = LruCacheBenchmark.this.keyObjects;
+                int offset = thread * 7;
+                if (implementation == Implementation.BASIC) {
+                    for (int rep = 0; rep < reps; ++rep) {
+                        basicCache.get(keyObjects[(rep + offset) % keyObjects.length]);
+                    }
+                } else {
+                    for (int rep = 0; rep < reps; ++rep) {
+                        concurrentCache.get(keyObjects[(rep + offset) % keyObjects.length]);
+                    }
+                }
+            }
+        });
+    }
+
+    @AfterExperiment
+    protected void tearDown() throws Exception {
+        workers.stop();
+    }
+
+    public void timeGet(int reps) throws Exception {
+        workers.run(reps);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.android.dex.Dex;
+import com.android.dex.Mutf8;
+import com.android.dex.SizeOf;
+import com.android.dex.TableOfContents;
+import com.android.dex.util.ByteInput;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import java.io.File;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes and encodes the string table of a real dex file, comparing the
+ * byte-at-a-time {@link ByteInput} decoder with the bulk ones.
+ */
+public class Mutf8Benchmark {
+    @Param({"/system/framework/core-libart.jar"})
+    private String file;
+
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private ByteBuffer directBuffer;
+    /** The offset of each string's characters, after its length. */
+    private int[] offsets;
+    private int[] lengths;
+    private String[] strings;
+
+    @BeforeExperiment
+    protected void setUp() throws Exception {
+        Dex dex = new Dex(new File(file));
+        bytes = dex.getBytes();
+        buffer = ByteBuffer.wrap(bytes);
+        directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes);
+
+        TableOfContents.Section stringIds = dex.getTableOfContents().stringIds;
+        offsets = new int[stringIds.size];
+        lengths = new int[stringIds.size];
+        List<String> stringList = new ArrayList<String>(stringIds.size);
+        for (int i = 0; i < stringIds.size; i++) {
+            Dex.Section in = dex.open(dex.open(stringIds.off + i * SizeOf.STRING_ID_ITEM).readInt());
+            lengths[i] = in.readUleb128();
+            offsets[i] = in.getPosition();
+            stringList.add(dex.strings().get(i));
+        }
+        strings = stringList.toArray(new String[stringList.size()]);
+    }
+
+    public int timeDecodeByteInput(int reps) throws UTFDataFormatException {
+        int result = 0;
+        PositionedByteInput in = new PositionedByteInput(bytes);
+        for (int i = 0; i < reps; ++i) {
+            for (int j = 0; j < offsets.length; j++) {
+                in.position = offsets[j];
+                result += Mutf8.decode(in, new char[lengths[j]]).length();
+            }
+        }
+        return result;
+    }
+
+    public int timeDecodeArray(int reps) throws UTFDataFormatException {
+        int result = 0;
+        for (int i = 0; i < reps; ++i) {
+            for (int j = 0; j < offsets.length; j++) {
+                result += Mutf8.decode(buffer, offsets[j], lengths[j]).length();
+            }
+        }
+        return result;
+    }
+
+    public int timeDecodeDirectBuffer(int reps) throws UTFDataFormatException {
+        int result = 0;
+        for (int i = 0; i < reps; ++i) {
+            for (int j = 0; j < offsets.length; j++) {
+                result += Mutf8.decode(directBuffer, offsets[j], lengths[j]).length();
+            }
+        }
+        return result;
+    }
+
+    public int timeEncode(int reps) throws UTFDataFormatException {
+        int result = 0;
+        for (int i = 0; i < reps; ++i) {
+            for (String s : strings) {
+                result += Mutf8.encode(s).length;
+            }
+        }
+        return result;
+    }
+
+    private static final class PositionedByteInput implements ByteInput {
+        private final byte[] bytes;
+        int position;
+
+        PositionedByteInput(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override public byte readByte() {
+            return bytes[position++];
+        }
+    }
+}
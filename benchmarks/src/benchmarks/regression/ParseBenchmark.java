@@ -27,7 +27,9 @@ import java.io.StringWriter;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.SAXParserFactory;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONReader;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xmlpull.v1.XmlPullParser;
@@ -61,6 +63,11 @@ public final class ParseBenchmark {
                 return new OrgJsonParser();
             }
         },
+        ORG_JSON_STREAM("json") {
+            @Override Parser newParser() {
+                return new OrgJsonStreamParser();
+            }
+        },
         XML_PULL("xml") {
             @Override Parser newParser() {
                 return new GeneralXmlPullParser();
@@ -185,6 +192,56 @@ public final class ParseBenchmark {
         }
     }
 
+    private static class OrgJsonStreamParser implements Parser {
+        @Override public void parse(String data) throws Exception {
+            JSONReader jsonReader = new JSONReader(new StringReader(data));
+            readToken(jsonReader);
+            jsonReader.close();
+        }
+
+        public void readObject(JSONReader reader) throws JSONException {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.nextName();
+                readToken(reader);
+            }
+            reader.endObject();
+        }
+
+        public void readArray(JSONReader reader) throws JSONException {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readToken(reader);
+            }
+            reader.endArray();
+        }
+
+        private void readToken(JSONReader reader) throws JSONException {
+            switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                readArray(reader);
+                break;
+            case BEGIN_OBJECT:
+                readObject(reader);
+                break;
+            case BOOLEAN:
+                reader.nextBoolean();
+                break;
+            case NULL:
+                reader.nextNull();
+                break;
+            case NUMBER:
+                reader.nextLong();
+                break;
+            case STRING:
+                reader.nextString();
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected token" + reader.peek());
+            }
+        }
+    }
+
     private static class GeneralXmlPullParser implements Parser {
         @Override public void parse(String data) throws Exception {
             XmlPullParser xmlParser = android.util.Xml.newPullParser();
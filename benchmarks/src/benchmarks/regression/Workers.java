@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Threads that are started once, in a benchmark's {@code @BeforeExperiment}
+ * method, and then share out each timed run's reps. Timed runs therefore
+ * measure the work rather than starting and stopping threads.
+ */
+final class Workers {
+
+    /** The work each thread does in a timed run. */
+    interface Task {
+        /**
+         * Does {@code reps} reps of work on the thread numbered {@code
+         * thread}, from zero.
+         */
+        void run(int thread, int reps) throws Exception;
+    }
+
+    private final Task task;
+    private final Thread[] threads;
+    private final CyclicBarrier start;
+    private final CyclicBarrier end;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    // Written before 'start' is reached, and so visible to the workers after it.
+    private int reps;
+    private boolean stopped;
+
+    Workers(int threadCount, Task task) {
+        this.task = task;
+        this.threads = new Thread[threadCount];
+        this.start = new CyclicBarrier(threadCount + 1);
+        this.end = new CyclicBarrier(threadCount + 1);
+        for (int t = 0; t < threadCount; ++t) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override public void run() {
+                    work(thread);
+                }
+            }, "Workers-" + t);
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+    }
+
+    /**
+     * Runs {@code reps} reps of the task, shared between the threads, and
+     * returns when all of them have finished.
+     */
+    void run(int reps) throws Exception {
+        this.reps = reps;
+        start.await();
+        end.await();
+        Throwable t = failure.getAndSet(null);
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        } else if (t != null) {
+            throw (Error) t;
+        }
+    }
+
+    /** Stops the threads. This must be called from {@code @AfterExperiment}. */
+    void stop() throws Exception {
+        stopped = true;
+        start.await();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void work(int thread) {
+        try {
+            while (true) {
+                start.await();
+                if (stopped) {
+                    return;
+                }
+                // Share the reps out exactly, so that every thread count does the same work.
+                int threadReps = reps / threads.length + (thread < reps % threads.length ? 1 : 0);
+                try {
+                    task.run(thread, threadReps);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+                end.await();
+            }
+        } catch (InterruptedException e) {
+            // Only the VM shutting down interrupts these threads.
+        } catch (BrokenBarrierException e) {
+        }
+    }
+}
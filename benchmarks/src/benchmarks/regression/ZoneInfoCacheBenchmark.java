@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import java.util.TimeZone;
+import libcore.util.ZoneInfo;
+import libcore.util.ZoneInfoDB;
+
+/**
+ * Looks up a varying number of distinct time zones, to show when the
+ * ZoneInfoDB cache stops holding them all.
+ */
+public class ZoneInfoCacheBenchmark {
+    private static final String[] ZONES = {
+        "America/Los_Angeles", "America/New_York", "Europe/London", "Europe/Paris",
+        "Asia/Tokyo", "Asia/Kolkata", "Australia/Sydney", "America/Sao_Paulo",
+        "Africa/Cairo", "Asia/Shanghai", "Europe/Moscow", "America/Santiago",
+        "Pacific/Auckland", "Asia/Dubai", "America/Chicago", "Europe/Berlin",
+    };
+
+    // The number of distinct zones each benchmark switches between.
+    @Param({"1", "2", "4", "8", "16"})
+    private int zoneCount;
+
+    public void timeTimeZone_getTimeZone_cycle(int reps) throws Exception {
+        for (int rep = 0; rep < reps; ++rep) {
+            TimeZone.getTimeZone(ZONES[rep % zoneCount]);
+        }
+    }
+
+    // Decodes a zone from tzdata, bypassing the ZoneInfoDB cache.
+    public void timeZoneInfo_makeTimeZone(int reps) throws Exception {
+        ZoneInfoDB.TzData tzData = ZoneInfoDB.getInstance();
+        for (int rep = 0; rep < reps; ++rep) {
+            String id = ZONES[rep % zoneCount];
+            ZoneInfo.makeTimeZone(id, tzData.getBufferIterator(id));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.dex;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.Adler32;
+
+/**
+ * Adler-32 checksums of buffer ranges, computed in parallel chunks and
+ * combined like zlib's {@code adler32_combine()}.
+ */
+final class Adler32s {
+    private Adler32s() {}
+
+    /** The largest prime smaller than 65536. */
+    private static final int BASE = 65521;
+
+    /** The bytes copied at a time from buffers without an accessible array. */
+    static final int COPY_SIZE = 64 * 1024;
+
+    /** The bytes summed by each task of a parallel checksum. */
+    private static final int PARALLEL_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Returns the Adler-32 of the bytes of {@code data} from {@code start}
+     * to {@code end}. Ranges of several chunks are summed by a fork/join
+     * task per chunk.
+     */
+    static int adler32(ByteBuffer data, int start, int end) {
+        if (end - start < 2 * PARALLEL_CHUNK_SIZE) {
+            return sequential(data, start, end);
+        }
+        return ForkJoinPool.commonPool().invoke(new Task(data, start, end));
+    }
+
+    /** Returns the Adler-32 of the bytes from {@code start} to {@code end} on this thread. */
+    static int sequential(ByteBuffer data, int start, int end) {
+        Adler32 adler32 = new Adler32();
+        if (data.hasArray()) {
+            adler32.update(data.array(), data.arrayOffset() + start, end - start);
+        } else {
+            ByteBuffer in = data.duplicate(); // positioned ByteBuffers aren't thread safe
+            in.limit(end);
+            in.position(start);
+            byte[] buffer = new byte[Math.min(COPY_SIZE, end - start)];
+            while (in.hasRemaining()) {
+                int count = Math.min(buffer.length, in.remaining());
+                in.get(buffer, 0, count);
+                adler32.update(buffer, 0, count);
+            }
+        }
+        return (int) adler32.getValue();
+    }
+
+    /**
+     * Returns the Adler-32 of the concatenation of two byte sequences, given
+     * the Adler-32 of each and the length of the second.
+     */
+    static int combine(int adler1, int adler2, long length2) {
+        long remainder = length2 % BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % BASE;
+        sum1 += (adler2 & 0xffff) + BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + BASE - remainder;
+        if (sum1 >= BASE) {
+            sum1 -= BASE;
+        }
+        if (sum1 >= BASE) {
+            sum1 -= BASE;
+        }
+        if (sum2 >= (BASE << 1)) {
+            sum2 -= (BASE << 1);
+        }
+        if (sum2 >= BASE) {
+            sum2 -= BASE;
+        }
+        return (int) (sum1 | (sum2 << 16));
+    }
+
+    /** Returns the Adler-32 of {@code length} zero bytes. */
+    static int zeros(long length) {
+        return (int) (1 | ((length % BASE) << 16));
+    }
+
+    /**
+     * Returns {@code adler}, the Adler-32 of {@code length} bytes, updated for
+     * a change to the bytes at {@code offset}. The change is given as the
+     * Adler-32 of the old and of the new bytes, both {@code changeLength}
+     * long.
+     *
+     * <p>This works because both sums are linear in the bytes: a byte's
+     * contribution to the low sum is its value, and to the high sum is its
+     * value times the number of bytes from it to the end.
+     */
+    static int replace(int adler, long length, long offset, int oldAdler, int newAdler,
+            long changeLength) {
+        // The initial 1 of the low sums, and the length added to the high
+        // sums, cancel out in the deltas.
+        long deltaLow = (newAdler & 0xffff) - (oldAdler & 0xffff);
+        long deltaHigh = ((newAdler >>> 16) & 0xffff) - ((oldAdler >>> 16) & 0xffff);
+        // The high sums above weight bytes by their distance to the end of
+        // the change; weight them by the distance to the end of the whole.
+        long bytesAfter = (length - offset - changeLength) % BASE;
+        long low = (adler & 0xffff) + deltaLow;
+        long high = ((adler >>> 16) & 0xffff) + deltaHigh + bytesAfter * deltaLow;
+        low %= BASE;
+        high %= BASE;
+        if (low < 0) {
+            low += BASE;
+        }
+        if (high < 0) {
+            high += BASE;
+        }
+        return (int) (low | (high << 16));
+    }
+
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private static final class Task extends RecursiveTask<Integer> {
+        private final ByteBuffer data;
+        private final int start;
+        private final int end;
+
+        Task(ByteBuffer data, int start, int end) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override protected Integer compute() {
+            if (end - start <= PARALLEL_CHUNK_SIZE) {
+                return sequential(data, start, end);
+            }
+            // Split on a chunk boundary so the halves are balanced.
+            int chunks = (end - start + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+            int middle = start + (chunks / 2) * PARALLEL_CHUNK_SIZE;
+            Task right = new Task(data, middle, end);
+            right.fork();
+            int left = new Task(data, start, middle).compute();
+            return combine(left, right.join(), end - middle);
+        }
+    }
+}
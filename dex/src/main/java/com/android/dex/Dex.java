@@ -29,12 +29,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -66,6 +70,8 @@ public final class Dex {
     private final ProtoIdTable protoIds = new ProtoIdTable();
     private final FieldIdTable fieldIds = new FieldIdTable();
     private final MethodIdTable methodIds = new MethodIdTable();
+    private volatile SymbolIndex symbolIndex;
+    private volatile ChecksumCheckpoint checksumCheckpoint;
 
     /**
      * Creates a new dex that reads from {@code data}. It is an error to modify
@@ -141,6 +147,109 @@ public final class Dex {
         return new Dex(data);
     }
 
+    /**
+     * Returns a read-only dex backed by a memory mapping of {@code file}: a
+     * {@code .dex} or {@code .odex} file, or an archive containing {@code
+     * classes.dex}. The file isn't copied onto the heap; like any dex, its
+     * sections are decoded only when they're read. A dex that is stored
+     * uncompressed in an archive is mapped in place. A compressed one must
+     * be inflated, so it is loaded like {@link #Dex(File)} does.
+     *
+     * <p>The returned dex can't be written to, for example by {@link
+     * #writeHashes}.
+     */
+    public static Dex mmap(File file) throws IOException {
+        ByteBuffer mapped;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new DexException(file + ": file too long");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            randomAccessFile.close(); // The mapping stays valid.
+        }
+
+        if (!FileUtils.hasArchiveSuffix(file.getName())) {
+            return create(mapped);
+        }
+        ByteBuffer entry = findStoredEntry(mapped, DexFormat.DEX_IN_JAR_NAME);
+        return entry != null ? create(entry) : new Dex(file);
+    }
+
+    /**
+     * Returns the data of the uncompressed entry {@code name} in the zip
+     * archive {@code zip}. Returns null if the entry is absent or compressed,
+     * or if the archive can't be read without Zip64 support.
+     */
+    private static ByteBuffer findStoredEntry(ByteBuffer zip, String name) {
+        zip.order(ByteOrder.LITTLE_ENDIAN);
+        int length = zip.capacity();
+
+        // The end of central directory record is last, followed by a comment of up to 64 KiB.
+        int end = -1;
+        for (int i = length - 22; i >= 0 && i >= length - 22 - 0xffff; i--) {
+            if (zip.getInt(i) == 0x06054b50) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            return null;
+        }
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int entryCount = zip.getShort(end + 10) & 0xffff;
+        int position = zip.getInt(end + 16);
+        for (int i = 0; i < entryCount; i++) {
+            if (position < 0 || position > length - 46 || zip.getInt(position) != 0x02014b50) {
+                return null;
+            }
+            int method = zip.getShort(position + 10) & 0xffff;
+            int compressedSize = zip.getInt(position + 20);
+            int size = zip.getInt(position + 24);
+            int nameLength = zip.getShort(position + 28) & 0xffff;
+            int extraLength = zip.getShort(position + 30) & 0xffff;
+            int commentLength = zip.getShort(position + 32) & 0xffff;
+            int localHeaderOffset = zip.getInt(position + 42);
+            if (hasName(zip, position + 46, nameLength, nameBytes)) {
+                // Negative sizes and offsets are too large, or defer to Zip64.
+                if (method != ZipEntry.STORED || size < 0 || compressedSize != size
+                        || localHeaderOffset < 0 || localHeaderOffset > length - 30
+                        || zip.getInt(localHeaderOffset) != 0x04034b50) {
+                    return null;
+                }
+                // The local header's name and extra field can differ from the central directory's.
+                int start = localHeaderOffset + 30
+                        + (zip.getShort(localHeaderOffset + 26) & 0xffff)
+                        + (zip.getShort(localHeaderOffset + 28) & 0xffff);
+                if (start > length - size) {
+                    return null;
+                }
+                ByteBuffer result = zip.duplicate();
+                result.limit(start + size);
+                result.position(start);
+                return result.slice();
+            }
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return null;
+    }
+
+    private static boolean hasName(ByteBuffer zip, int position, int length, byte[] name) {
+        if (length != name.length || position > zip.capacity() - length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (zip.get(position + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void loadFrom(InputStream in) throws IOException {
         ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
         byte[] buffer = new byte[8192];
@@ -279,54 +388,139 @@ public final class Dex {
         return open(offset).readCode();
     }
 
+    /**
+     * Walks every class of this dex, calling {@code visitor} for each of its
+     * items. A walk allocates a few objects up front, and an instruction
+     * buffer that grows to fit the largest method; nothing per item.
+     */
+    public void accept(DexVisitor visitor) {
+        new Walker(visitor).walk();
+    }
+
     /**
      * Returns the signature of all but the first 32 bytes of this dex. The
      * first 32 bytes of dex files are not specified to be included in the
      * signature.
      */
     public byte[] computeSignature() throws IOException {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new AssertionError();
-        }
-        byte[] buffer = new byte[8192];
+        MessageDigest digest = newSignatureDigest();
         ByteBuffer data = this.data.duplicate(); // positioned ByteBuffers aren't thread safe
         data.limit(data.capacity());
         data.position(SIGNATURE_OFFSET + SIGNATURE_SIZE);
-        while (data.hasRemaining()) {
-            int count = Math.min(buffer.length, data.remaining());
-            data.get(buffer, 0, count);
-            digest.update(buffer, 0, count);
-        }
+        digest.update(data);
         return digest.digest();
     }
 
     /**
-     * Returns the checksum of all but the first 12 bytes of {@code dex}.
+     * Returns the checksum of all but the first 12 bytes of {@code dex}. Large
+     * dex files are summed in parallel chunks.
      */
     public int computeChecksum() throws IOException {
-        Adler32 adler32 = new Adler32();
-        byte[] buffer = new byte[8192];
-        ByteBuffer data = this.data.duplicate(); // positioned ByteBuffers aren't thread safe
-        data.limit(data.capacity());
-        data.position(CHECKSUM_OFFSET + CHECKSUM_SIZE);
-        while (data.hasRemaining()) {
-            int count = Math.min(buffer.length, data.remaining());
-            data.get(buffer, 0, count);
-            adler32.update(buffer, 0, count);
-        }
-        return (int) adler32.getValue();
+        int checksum = Adler32s.adler32(data, CHECKSUM_OFFSET + CHECKSUM_SIZE, data.capacity());
+        checksumCheckpoint = new ChecksumCheckpoint(checksum);
+        return checksum;
+    }
+
+    /**
+     * Returns the checksum of all but the first 12 bytes of {@code dex},
+     * updated from the last one computed by {@link #computeChecksum} or
+     * {@link #writeHashes}. Only the header and the sections appended since
+     * are read, so the result is only correct if nothing else was written
+     * since, and the appended sections were all zeros before: that is, if
+     * this dex was created with {@link #Dex(int)} and is being written with
+     * {@link #appendSection}. If there is no checksum to update, this
+     * computes one.
+     *
+     * <p>The signature can't be updated like this, as it must be computed
+     * from the start of the header, which changes whenever a section is
+     * appended. Callers that need it must use {@link #writeHashes}.
+     */
+    public int updateChecksum() throws IOException {
+        ChecksumCheckpoint checkpoint = checksumCheckpoint;
+        if (checkpoint == null || nextSectionStart < checkpoint.sectionsEnd) {
+            return computeChecksum();
+        }
+        int start = CHECKSUM_OFFSET + CHECKSUM_SIZE;
+        long length = data.capacity() - start;
+        byte[] oldHeader = checkpoint.header;
+        byte[] newHeader = checksummedHeader();
+        int checksum = Adler32s.replace(checkpoint.checksum, length, 0,
+                Adler32s.sequential(ByteBuffer.wrap(oldHeader), 0, oldHeader.length),
+                Adler32s.sequential(ByteBuffer.wrap(newHeader), 0, newHeader.length),
+                newHeader.length);
+        int appendedStart = Math.max(checkpoint.sectionsEnd, start + newHeader.length);
+        int appendedEnd = Math.min(nextSectionStart, data.capacity());
+        if (appendedStart < appendedEnd) {
+            int appendedLength = appendedEnd - appendedStart;
+            checksum = Adler32s.replace(checksum, length, appendedStart - start,
+                    Adler32s.zeros(appendedLength),
+                    Adler32s.adler32(data, appendedStart, appendedEnd), appendedLength);
+        }
+        checksumCheckpoint = new ChecksumCheckpoint(checksum);
+        return checksum;
     }
 
     /**
      * Generates the signature and checksum of the dex file {@code out} and
-     * writes them to the file.
+     * writes them to the file. Both are computed in one pass over the dex.
      */
     public void writeHashes() throws IOException {
-        open(SIGNATURE_OFFSET).write(computeSignature());
-        open(CHECKSUM_OFFSET).writeInt(computeChecksum());
+        MessageDigest digest = newSignatureDigest();
+        Adler32 adler32 = new Adler32();
+        int start = SIGNATURE_OFFSET + SIGNATURE_SIZE;
+        int end = data.capacity();
+        byte[] buffer;
+        int offset;
+        if (data.hasArray()) {
+            buffer = data.array();
+            offset = data.arrayOffset();
+        } else {
+            buffer = new byte[Adler32s.COPY_SIZE];
+            offset = 0;
+        }
+        ByteBuffer data = this.data.duplicate(); // positioned ByteBuffers aren't thread safe
+        for (int position = start; position < end; position += Adler32s.COPY_SIZE) {
+            // Hash each chunk twice while it is still in the cache.
+            int count = Math.min(Adler32s.COPY_SIZE, end - position);
+            int chunkOffset = offset + position;
+            if (!data.hasArray()) {
+                data.limit(position + count);
+                data.position(position);
+                data.get(buffer, 0, count);
+                chunkOffset = 0;
+            }
+            digest.update(buffer, chunkOffset, count);
+            adler32.update(buffer, chunkOffset, count);
+        }
+
+        // The checksum covers the signature, which is only known now.
+        byte[] signature = digest.digest();
+        Adler32 signatureAdler32 = new Adler32();
+        signatureAdler32.update(signature);
+        int checksum = Adler32s.combine((int) signatureAdler32.getValue(),
+                (int) adler32.getValue(), end - start);
+
+        open(SIGNATURE_OFFSET).write(signature);
+        open(CHECKSUM_OFFSET).writeInt(checksum);
+        checksumCheckpoint = new ChecksumCheckpoint(checksum);
+    }
+
+    private static MessageDigest newSignatureDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError();
+        }
+    }
+
+    /** Returns a copy of the checksummed bytes of the header. */
+    private byte[] checksummedHeader() {
+        int start = CHECKSUM_OFFSET + CHECKSUM_SIZE;
+        byte[] result = new byte[Math.min(SizeOf.HEADER_ITEM, data.capacity()) - start];
+        ByteBuffer data = this.data.duplicate(); // positioned ByteBuffers aren't thread safe
+        data.position(start);
+        data.get(result);
+        return result;
     }
 
     /**
@@ -341,19 +535,68 @@ public final class Dex {
         return data.getInt(position);  // nameIndex
     }
 
+    /**
+     * Builds a hash index of this dex's strings, types, fields and methods,
+     * so that {@link #findStringIndex}, {@link #findTypeIndex}, {@link
+     * #findFieldIndex} and {@link #findMethodIndex} take constant time
+     * rather than decoding strings in a binary search. The index costs about
+     * 20 bytes per string, and 8 per type, field and method. It is built in
+     * one pass over each table, and only once: call this after the dex is
+     * complete, as later writes aren't reflected.
+     */
+    public void buildSymbolIndex() {
+        if (symbolIndex == null) {
+            symbolIndex = new SymbolIndex();
+        }
+    }
+
+    /**
+     * Returns the index of {@code s}, or a negative value if this dex
+     * doesn't contain it. Without a {@link #buildSymbolIndex symbol index}
+     * that value is the one returned by {@link Collections#binarySearch};
+     * with one it is -1.
+     */
     public int findStringIndex(String s) {
+        SymbolIndex index = symbolIndex;
+        if (index != null) {
+            return index.findString(s);
+        }
         return Collections.binarySearch(strings, s);
     }
 
+    /**
+     * Returns the index of the type {@code descriptor}, or a negative value
+     * as {@link #findStringIndex} does.
+     */
     public int findTypeIndex(String descriptor) {
+        SymbolIndex index = symbolIndex;
+        if (index != null) {
+            return index.findType(descriptor);
+        }
         return Collections.binarySearch(typeNames, descriptor);
     }
 
+    /**
+     * Returns the index of {@code fieldId}, whose indices are in this dex,
+     * or a negative value as {@link #findStringIndex} does.
+     */
     public int findFieldIndex(FieldId fieldId) {
+        SymbolIndex index = symbolIndex;
+        if (index != null) {
+            return index.findField(fieldId);
+        }
         return Collections.binarySearch(fieldIds, fieldId);
     }
 
+    /**
+     * Returns the index of {@code methodId}, whose indices are in this dex,
+     * or a negative value as {@link #findStringIndex} does.
+     */
     public int findMethodIndex(MethodId methodId) {
+        SymbolIndex index = symbolIndex;
+        if (index != null) {
+            return index.findMethod(methodId);
+        }
         return Collections.binarySearch(methodIds, methodId);
     }
 
@@ -589,12 +832,7 @@ public final class Dex {
             data.limit(data.capacity());
             try {
                 int expectedLength = readUleb128();
-                String result = Mutf8.decode(this, new char[expectedLength]);
-                if (result.length() != expectedLength) {
-                    throw new DexException("Declared length " + expectedLength
-                            + " doesn't match decoded length of " + result.length());
-                }
-                return result;
+                return Mutf8.decode(data, data.position(), expectedLength);
             } catch (UTFDataFormatException e) {
                 throw new DexException(e);
             } finally {
@@ -951,6 +1189,428 @@ public final class Dex {
         }
     }
 
+    /**
+     * Open-addressed hash tables from symbols to their indices. Strings are
+     * hashed and compared as the raw MUTF-8 bytes in the string data, so
+     * neither building nor lookups decode them. Field and method IDs are
+     * hashed by the three indices of their items.
+     */
+    private final class SymbolIndex {
+        /** The MUTF-8 hash, data offset, and data length of each string. */
+        private final int[] stringHashes;
+        private final int[] stringStarts;
+        private final int[] stringLengths;
+        /** Slots holding string indices plus one, or 0 if empty. */
+        private final int[] stringTable;
+
+        /** The type with each descriptor string, or -1 if none. */
+        private final int[] stringToType;
+
+        /** Slots holding field or method indices plus one, or 0 if empty. */
+        private final int[] fieldTable;
+        private final int[] methodTable;
+
+        SymbolIndex() {
+            ByteBuffer data = Dex.this.data;
+            int stringCount = tableOfContents.stringIds.size;
+            stringHashes = new int[stringCount];
+            stringStarts = new int[stringCount];
+            stringLengths = new int[stringCount];
+            stringTable = new int[tableSize(stringCount)];
+            for (int i = 0; i < stringCount; i++) {
+                int position = data.getInt(tableOfContents.stringIds.off + i * SizeOf.STRING_ID_ITEM);
+                while (data.get(position++) < 0) {
+                    // Skip the ULEB128 UTF-16 length; the terminator delimits the bytes.
+                }
+                int start = position;
+                int hash = 0;
+                byte b;
+                while ((b = data.get(position)) != 0) {
+                    hash = 31 * hash + b;
+                    position++;
+                }
+                stringHashes[i] = hash;
+                stringStarts[i] = start;
+                stringLengths[i] = position - start;
+                insert(stringTable, hash, i);
+            }
+
+            stringToType = new int[stringCount];
+            Arrays.fill(stringToType, -1);
+            for (int i = 0; i < tableOfContents.typeIds.size; i++) {
+                int descriptorIndex = descriptorIndexFromTypeIndex(i);
+                checkBounds(descriptorIndex, stringCount);
+                stringToType[descriptorIndex] = i;
+            }
+
+            fieldTable = buildMemberTable(tableOfContents.fieldIds);
+            methodTable = buildMemberTable(tableOfContents.methodIds);
+        }
+
+        int findString(String s) {
+            // Hash the MUTF-8 encoding of s as Mutf8.encode() would write it.
+            int hash = 0;
+            int byteCount = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                if (ch != 0 && ch <= 127) {
+                    hash = 31 * hash + (byte) ch;
+                    byteCount += 1;
+                } else if (ch <= 2047) {
+                    hash = 31 * hash + (byte) (0xc0 | (0x1f & (ch >> 6)));
+                    hash = 31 * hash + (byte) (0x80 | (0x3f & ch));
+                    byteCount += 2;
+                } else {
+                    hash = 31 * hash + (byte) (0xe0 | (0x0f & (ch >> 12)));
+                    hash = 31 * hash + (byte) (0x80 | (0x3f & (ch >> 6)));
+                    hash = 31 * hash + (byte) (0x80 | (0x3f & ch));
+                    byteCount += 3;
+                }
+            }
+
+            int mask = stringTable.length - 1;
+            for (int slot = mix(hash) & mask; stringTable[slot] != 0; slot = (slot + 1) & mask) {
+                int index = stringTable[slot] - 1;
+                if (stringHashes[index] == hash && stringLengths[index] == byteCount
+                        && mutf8Equals(stringStarts[index], s)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        int findType(String descriptor) {
+            int stringIndex = findString(descriptor);
+            return stringIndex >= 0 ? stringToType[stringIndex] : -1;
+        }
+
+        int findField(FieldId fieldId) {
+            return findMember(fieldTable, tableOfContents.fieldIds,
+                    fieldId.getDeclaringClassIndex(), fieldId.getTypeIndex(),
+                    fieldId.getNameIndex());
+        }
+
+        int findMethod(MethodId methodId) {
+            return findMember(methodTable, tableOfContents.methodIds,
+                    methodId.getDeclaringClassIndex(), methodId.getProtoIndex(),
+                    methodId.getNameIndex());
+        }
+
+        private int findMember(int[] table, TableOfContents.Section section,
+                int declaringClassIndex, int typeOrProtoIndex, int nameIndex) {
+            int hash = memberHash(declaringClassIndex, typeOrProtoIndex, nameIndex);
+            int mask = table.length - 1;
+            for (int slot = mix(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                int index = table[slot] - 1;
+                int position = section.off + index * SizeOf.MEMBER_ID_ITEM;
+                if ((data.getShort(position) & 0xffff) == declaringClassIndex
+                        && (data.getShort(position + SizeOf.USHORT) & 0xffff) == typeOrProtoIndex
+                        && data.getInt(position + 2 * SizeOf.USHORT) == nameIndex) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /** Returns true if the string data at {@code position} is the MUTF-8 encoding of s. */
+        private boolean mutf8Equals(int position, String s) {
+            ByteBuffer data = Dex.this.data;
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                if (ch != 0 && ch <= 127) {
+                    if (data.get(position++) != (byte) ch) {
+                        return false;
+                    }
+                } else if (ch <= 2047) {
+                    if (data.get(position++) != (byte) (0xc0 | (0x1f & (ch >> 6)))
+                            || data.get(position++) != (byte) (0x80 | (0x3f & ch))) {
+                        return false;
+                    }
+                } else {
+                    if (data.get(position++) != (byte) (0xe0 | (0x0f & (ch >> 12)))
+                            || data.get(position++) != (byte) (0x80 | (0x3f & (ch >> 6)))
+                            || data.get(position++) != (byte) (0x80 | (0x3f & ch))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private int[] buildMemberTable(TableOfContents.Section section) {
+            int[] table = new int[tableSize(section.size)];
+            for (int i = 0; i < section.size; i++) {
+                int position = section.off + i * SizeOf.MEMBER_ID_ITEM;
+                insert(table, memberHash(data.getShort(position) & 0xffff,
+                        data.getShort(position + SizeOf.USHORT) & 0xffff,
+                        data.getInt(position + 2 * SizeOf.USHORT)), i);
+            }
+            return table;
+        }
+
+        private int memberHash(int declaringClassIndex, int typeOrProtoIndex, int nameIndex) {
+            return (31 * declaringClassIndex + typeOrProtoIndex) * 31 + nameIndex;
+        }
+
+        /** Returns a power of two at least twice {@code count}, so tables are at most half full. */
+        private int tableSize(int count) {
+            return Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+        }
+
+        private void insert(int[] table, int hash, int index) {
+            int mask = table.length - 1;
+            int slot = mix(hash) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+
+        /** Spreads the high bits of {@code hash} into the low bits used as slots. */
+        private int mix(int hash) {
+            hash *= 0x9e3779b9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * A computed checksum, and what's needed to update it after sections are
+     * appended.
+     */
+    private final class ChecksumCheckpoint {
+        final int checksum;
+        final byte[] header = checksummedHeader();
+        final int sectionsEnd = nextSectionStart;
+
+        ChecksumCheckpoint(int checksum) {
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * Drives a {@link DexVisitor} with absolute reads from the buffer,
+     * decoding LEB128 values inline. Encoded values are read through a single
+     * section and reader, repositioned for each value.
+     */
+    private final class Walker {
+        private final DexVisitor visitor;
+        private final Section valueSection = open(0);
+        private final EncodedValueReader valueReader = new EncodedValueReader(valueSection);
+        private short[] insns = EMPTY_SHORT_ARRAY;
+        private int position;
+
+        Walker(DexVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        void walk() {
+            for (int i = 0; i < tableOfContents.classDefs.size; i++) {
+                int classDef = tableOfContents.classDefs.off + i * SizeOf.CLASS_DEF_ITEM;
+                visitor.visitClass(i, data.getInt(classDef), data.getInt(classDef + 4),
+                        data.getInt(classDef + 8), data.getInt(classDef + 16));
+
+                int interfacesOffset = data.getInt(classDef + 12);
+                if (interfacesOffset != 0) {
+                    int size = data.getInt(interfacesOffset);
+                    for (int j = 0; j < size; j++) {
+                        visitor.visitInterface(
+                                data.getShort(interfacesOffset + SizeOf.UINT + j * SizeOf.USHORT)
+                                        & 0xffff);
+                    }
+                }
+
+                int staticValuesOffset = data.getInt(classDef + 28);
+                if (staticValuesOffset != 0) {
+                    visitor.visitStaticValues(
+                            reader(staticValuesOffset, EncodedValueReader.ENCODED_ARRAY));
+                }
+
+                int annotationsOffset = data.getInt(classDef + 20);
+                if (annotationsOffset != 0) {
+                    int classAnnotationsOffset = data.getInt(annotationsOffset);
+                    if (classAnnotationsOffset != 0) {
+                        visitAnnotationSet(classAnnotationsOffset, -1, -1, -1);
+                    }
+                }
+
+                int classDataOffset = data.getInt(classDef + 24);
+                if (classDataOffset != 0) {
+                    walkClassData(classDataOffset);
+                }
+
+                if (annotationsOffset != 0) {
+                    walkAnnotationsDirectory(annotationsOffset);
+                }
+                visitor.visitClassEnd();
+            }
+        }
+
+        private void walkClassData(int offset) {
+            position = offset;
+            int staticFieldsSize = readUleb128();
+            int instanceFieldsSize = readUleb128();
+            int directMethodsSize = readUleb128();
+            int virtualMethodsSize = readUleb128();
+            walkFields(staticFieldsSize, true);
+            walkFields(instanceFieldsSize, false);
+            walkMethods(directMethodsSize, true);
+            walkMethods(virtualMethodsSize, false);
+        }
+
+        private void walkFields(int count, boolean isStatic) {
+            int fieldIndex = 0;
+            for (int i = 0; i < count; i++) {
+                fieldIndex += readUleb128(); // field index diff
+                int accessFlags = readUleb128();
+                visitor.visitField(fieldIndex, accessFlags, isStatic);
+            }
+        }
+
+        private void walkMethods(int count, boolean isDirect) {
+            int methodIndex = 0;
+            for (int i = 0; i < count; i++) {
+                methodIndex += readUleb128(); // method index diff
+                int accessFlags = readUleb128();
+                int codeOffset = readUleb128();
+                if (visitor.visitMethod(methodIndex, accessFlags, codeOffset, isDirect)
+                        && codeOffset != 0) {
+                    int savedPosition = position;
+                    walkCode(codeOffset);
+                    position = savedPosition;
+                }
+            }
+        }
+
+        private void walkCode(int offset) {
+            int registersSize = data.getShort(offset) & 0xffff;
+            int insSize = data.getShort(offset + 2) & 0xffff;
+            int outsSize = data.getShort(offset + 4) & 0xffff;
+            int triesSize = data.getShort(offset + 6) & 0xffff;
+            int debugInfoOffset = data.getInt(offset + 8);
+            int insnsSize = data.getInt(offset + 12);
+            visitor.visitCode(registersSize, insSize, outsSize, debugInfoOffset);
+
+            int insnsOffset = offset + 16;
+            if (insns.length < insnsSize) {
+                insns = new short[Math.max(insnsSize, insns.length * 2)];
+            }
+            for (int i = 0; i < insnsSize; i++) {
+                insns[i] = data.getShort(insnsOffset + i * SizeOf.USHORT);
+            }
+            visitor.visitInsns(insns, insnsSize);
+
+            if (triesSize == 0) {
+                return;
+            }
+            int triesOffset = insnsOffset + insnsSize * SizeOf.USHORT;
+            if ((insnsSize & 1) == 1) {
+                triesOffset += SizeOf.USHORT; // padding
+            }
+            int handlersOffset = triesOffset + triesSize * SizeOf.TRY_ITEM;
+            for (int i = 0; i < triesSize; i++) {
+                int tryItem = triesOffset + i * SizeOf.TRY_ITEM;
+                visitor.visitTry(data.getInt(tryItem), data.getShort(tryItem + 4) & 0xffff);
+
+                position = handlersOffset + (data.getShort(tryItem + 6) & 0xffff);
+                int size = readSleb128();
+                for (int j = 0, count = Math.abs(size); j < count; j++) {
+                    int typeIndex = readUleb128();
+                    visitor.visitCatch(typeIndex, readUleb128());
+                }
+                if (size <= 0) {
+                    visitor.visitCatch(ClassDef.NO_INDEX, readUleb128());
+                }
+            }
+        }
+
+        private void walkAnnotationsDirectory(int offset) {
+            int fieldsSize = data.getInt(offset + 4);
+            int methodsSize = data.getInt(offset + 8);
+            int parametersSize = data.getInt(offset + 12);
+            int item = offset + 16;
+            for (int i = 0; i < fieldsSize; i++, item += 8) {
+                visitAnnotationSet(data.getInt(item + 4), data.getInt(item), -1, -1);
+            }
+            for (int i = 0; i < methodsSize; i++, item += 8) {
+                visitAnnotationSet(data.getInt(item + 4), -1, data.getInt(item), -1);
+            }
+            for (int i = 0; i < parametersSize; i++, item += 8) {
+                int methodIndex = data.getInt(item);
+                int refList = data.getInt(item + 4);
+                int size = data.getInt(refList);
+                for (int j = 0; j < size; j++) {
+                    int annotationSetOffset = data.getInt(refList + SizeOf.UINT + j * SizeOf.UINT);
+                    if (annotationSetOffset != 0) {
+                        visitAnnotationSet(annotationSetOffset, -1, methodIndex, j);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Visits the annotations of the set at {@code offset}. They're on the
+         * class if {@code fieldIndex} and {@code methodIndex} are -1; on a
+         * parameter if {@code parameterIndex} isn't.
+         */
+        private void visitAnnotationSet(int offset, int fieldIndex, int methodIndex,
+                int parameterIndex) {
+            int size = data.getInt(offset);
+            for (int i = 0; i < size; i++) {
+                int annotationOffset = data.getInt(offset + SizeOf.UINT + i * SizeOf.UINT);
+                int visibility = data.get(annotationOffset);
+                EncodedValueReader reader = reader(annotationOffset + SizeOf.UBYTE,
+                        EncodedValueReader.ENCODED_ANNOTATION);
+                if (fieldIndex != -1) {
+                    visitor.visitFieldAnnotation(fieldIndex, visibility, reader);
+                } else if (parameterIndex != -1) {
+                    visitor.visitParameterAnnotation(methodIndex, parameterIndex, visibility,
+                            reader);
+                } else if (methodIndex != -1) {
+                    visitor.visitMethodAnnotation(methodIndex, visibility, reader);
+                } else {
+                    visitor.visitClassAnnotation(visibility, reader);
+                }
+            }
+        }
+
+        private EncodedValueReader reader(int offset, int knownType) {
+            valueSection.data.position(offset);
+            valueReader.reset(knownType);
+            return valueReader;
+        }
+
+        private int readUleb128() {
+            int result = 0;
+            int cur;
+            int shift = 0;
+            do {
+                cur = data.get(position++) & 0xff;
+                result |= (cur & 0x7f) << shift;
+                shift += 7;
+            } while ((cur & 0x80) == 0x80 && shift < 35);
+            if ((cur & 0x80) == 0x80) {
+                throw new DexException("invalid LEB128 sequence");
+            }
+            return result;
+        }
+
+        private int readSleb128() {
+            int result = 0;
+            int cur;
+            int shift = 0;
+            do {
+                cur = data.get(position++) & 0xff;
+                result |= (cur & 0x7f) << shift;
+                shift += 7;
+            } while ((cur & 0x80) == 0x80 && shift < 35);
+            if ((cur & 0x80) == 0x80) {
+                throw new DexException("invalid LEB128 sequence");
+            }
+            // Sign extend if the value is shorter than 32 bits.
+            return shift < 32 ? (result << (32 - shift)) >> (32 - shift) : result;
+        }
+    }
+
     private final class ClassDefIterator implements Iterator<ClassDef> {
         private final Dex.Section in = open(tableOfContents.classDefs.off);
         private int count = 0;
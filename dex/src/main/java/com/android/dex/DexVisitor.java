@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.dex;
+
+/**
+ * Receives the classes of a dex as it is walked by {@link Dex#accept}. Unlike
+ * {@link Dex#readClassData} and {@link Dex#readCode}, walking doesn't create
+ * objects for fields, methods, instructions or tries; each is reported by
+ * its indices and offsets. Subclasses override the methods for the items
+ * they're interested in; the others do nothing.
+ *
+ * <p>The methods are called in this order for each class:
+ * <ol>
+ *   <li>{@link #visitClass}, then {@link #visitInterface} for each
+ *       interface;
+ *   <li>{@link #visitStaticValues} and {@link #visitClassAnnotation}, if
+ *       the class has static values and annotations;
+ *   <li>{@link #visitField} for each static then each instance field;
+ *   <li>{@link #visitMethod} for each direct then each virtual method,
+ *       each followed by its code if it has any: {@link #visitCode}, {@link
+ *       #visitInsns}, and {@link #visitTry} for each try, followed by
+ *       {@link #visitCatch} for each of its handlers;
+ *   <li>{@link #visitFieldAnnotation}, {@link #visitMethodAnnotation} and
+ *       {@link #visitParameterAnnotation}, in the order of the class's
+ *       annotations directory;
+ *   <li>{@link #visitClassEnd}.
+ * </ol>
+ *
+ * <p>Encoded values are passed as an {@link EncodedValueReader} positioned
+ * at the value. The reader is reused, and is only valid until the method
+ * returns.
+ */
+public abstract class DexVisitor {
+
+    public void visitClass(int classDefIndex, int typeIndex, int accessFlags,
+            int supertypeIndex, int sourceFileIndex) {
+    }
+
+    public void visitInterface(int typeIndex) {
+    }
+
+    /**
+     * Visits the initial values of the class's static fields. {@code reader}
+     * is positioned at an {@link EncodedValueReader#ENCODED_ARRAY}.
+     */
+    public void visitStaticValues(EncodedValueReader reader) {
+    }
+
+    /**
+     * Visits an annotation on the class. {@code reader} is positioned at an
+     * {@link EncodedValueReader#ENCODED_ANNOTATION}.
+     */
+    public void visitClassAnnotation(int visibility, EncodedValueReader reader) {
+    }
+
+    public void visitField(int fieldIndex, int accessFlags, boolean isStatic) {
+    }
+
+    /**
+     * Visits a method. Returns true to visit its code, if it has any.
+     */
+    public boolean visitMethod(int methodIndex, int accessFlags, int codeOffset,
+            boolean isDirect) {
+        return true;
+    }
+
+    public void visitCode(int registersSize, int insSize, int outsSize, int debugInfoOffset) {
+    }
+
+    /**
+     * Visits a method's instructions, which are the first {@code count} code
+     * units of {@code insns}. The array is reused, and is only valid until
+     * this method returns.
+     */
+    public void visitInsns(short[] insns, int count) {
+    }
+
+    public void visitTry(int startAddress, int instructionCount) {
+    }
+
+    /**
+     * Visits a handler of the preceding try. {@code typeIndex} is {@link
+     * ClassDef#NO_INDEX} for a handler that catches all exceptions.
+     */
+    public void visitCatch(int typeIndex, int address) {
+    }
+
+    public void visitFieldAnnotation(int fieldIndex, int visibility, EncodedValueReader reader) {
+    }
+
+    public void visitMethodAnnotation(int methodIndex, int visibility,
+            EncodedValueReader reader) {
+    }
+
+    public void visitParameterAnnotation(int methodIndex, int parameterIndex, int visibility,
+            EncodedValueReader reader) {
+    }
+
+    public void visitClassEnd() {
+    }
+}
@@ -214,6 +214,15 @@ public final class EncodedValueReader {
         return arg != 0;
     }
 
+    /**
+     * Prepares to read a value of {@code knownType} from this reader's input,
+     * once the input has been repositioned at it. This lets a single reader
+     * be reused for many values.
+     */
+    void reset(int knownType) {
+        this.type = knownType;
+    }
+
     /**
      * Skips a single value, including its nested values if it is an array or
      * annotation.
@@ -18,6 +18,9 @@ package com.android.dex;
 
 import com.android.dex.util.ByteInput;
 import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Modified UTF-8 as described in the dex file format spec.
@@ -61,25 +64,89 @@ public final class Mutf8 {
     }
 
     /**
-     * Returns the number of bytes the modified UTF8 representation of 's' would take.
+     * Decodes the string of {@code utf16Length} characters at {@code position}
+     * in {@code in}, which is terminated by 0x00. Dex string data is prefixed
+     * with this length, so the string is sized exactly. Throws if the string
+     * doesn't have that length.
      */
-    private static long countBytes(String s, boolean shortLength) throws UTFDataFormatException {
-        long result = 0;
-        final int length = s.length();
-        for (int i = 0; i < length; ++i) {
-            char ch = s.charAt(i);
-            if (ch != 0 && ch <= 127) { // U+0000 uses two bytes.
-                ++result;
-            } else if (ch <= 2047) {
-                result += 2;
-            } else {
-                result += 3;
+    public static String decode(ByteBuffer in, int position, int utf16Length)
+            throws UTFDataFormatException {
+        byte[] array;
+        int offset;
+        if (in.hasArray()) {
+            array = in.array();
+            offset = in.arrayOffset() + position;
+        } else {
+            // Copy the most bytes the string and its terminator could take,
+            // in bulk: that's faster than a get() per byte.
+            ByteBuffer source = in.duplicate();
+            source.position(position);
+            array = new byte[(int) Math.min(3L * utf16Length + 1, source.remaining())];
+            source.get(array);
+            offset = 0;
+        }
+
+        // An ASCII string's bytes are its chars; make it without a char[].
+        int end = offset + utf16Length;
+        if (end < array.length && array[end] == 0 && isAscii(array, offset, end)) {
+            return new String(array, offset, utf16Length, StandardCharsets.ISO_8859_1);
+        }
+        char[] out = new char[utf16Length];
+        int length = decode(array, offset, out);
+        if (length != utf16Length) {
+            throw new UTFDataFormatException("Declared length " + utf16Length
+                    + " doesn't match decoded length of " + length);
+        }
+        return new String(out);
+    }
+
+    /** Returns true if the bytes from {@code start} to {@code end} are ASCII other than 0. */
+    private static boolean isAscii(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes bytes from {@code in}, starting at {@code offset}, into {@code
+     * out} until a delimiter 0x00 is encountered. Returns the number of
+     * characters decoded. Throws if {@code out} is too short.
+     */
+    public static int decode(byte[] in, int offset, char[] out) throws UTFDataFormatException {
+        int s = 0;
+        while (true) {
+            // Most dex strings are ASCII; copy runs of it in a tight loop.
+            int a;
+            while ((a = in[offset++]) > 0 && s < out.length) {
+                out[s++] = (char) a;
+            }
+            if (a == 0) {
+                return s;
             }
-            if (shortLength && result > 65535) {
-                throw new UTFDataFormatException("String more than 65535 UTF bytes long");
+            if (s == out.length) {
+                throw new UTFDataFormatException("more than " + out.length + " characters");
+            }
+            a &= 0xff;
+            if ((a & 0xe0) == 0xc0) {
+                int b = in[offset++] & 0xff;
+                if ((b & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("bad second byte");
+                }
+                out[s++] = (char) (((a & 0x1F) << 6) | (b & 0x3F));
+            } else if ((a & 0xf0) == 0xe0) {
+                int b = in[offset++] & 0xff;
+                int c = in[offset++] & 0xff;
+                if (((b & 0xC0) != 0x80) || ((c & 0xC0) != 0x80)) {
+                    throw new UTFDataFormatException("bad second or third byte");
+                }
+                out[s++] = (char) (((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+            } else {
+                throw new UTFDataFormatException("bad byte");
             }
         }
-        return result;
     }
 
     /**
@@ -105,11 +172,48 @@ public final class Mutf8 {
 
     /**
      * Returns an array containing the <i>modified UTF-8</i> form of {@code s}.
+     * This encodes in one pass rather than counting the bytes first: ASCII
+     * strings are encoded into an array of exactly their length, and others
+     * into one of the worst-case length that is then trimmed.
      */
     public static byte[] encode(String s) throws UTFDataFormatException {
-        int utfCount = (int) countBytes(s, true);
-        byte[] result = new byte[utfCount];
-        encode(result, 0, s);
-        return result;
+        final int length = s.length();
+        if (length > 65535) { // Every char takes at least one byte.
+            throw new UTFDataFormatException("String more than 65535 UTF bytes long");
+        }
+        byte[] result = new byte[length];
+        int i = 0;
+        for (; i < length; i++) {
+            char ch = s.charAt(i);
+            if (ch == 0 || ch > 127) {
+                break;
+            }
+            result[i] = (byte) ch;
+        }
+        if (i == length) {
+            return result;
+        }
+
+        byte[] ascii = result;
+        result = new byte[i + 3 * (length - i)];
+        System.arraycopy(ascii, 0, result, 0, i);
+        int offset = i;
+        for (; i < length; i++) {
+            char ch = s.charAt(i);
+            if (ch != 0 && ch <= 127) { // U+0000 uses two bytes.
+                result[offset++] = (byte) ch;
+            } else if (ch <= 2047) {
+                result[offset++] = (byte) (0xc0 | (0x1f & (ch >> 6)));
+                result[offset++] = (byte) (0x80 | (0x3f & ch));
+            } else {
+                result[offset++] = (byte) (0xe0 | (0x0f & (ch >> 12)));
+                result[offset++] = (byte) (0x80 | (0x3f & (ch >> 6)));
+                result[offset++] = (byte) (0x80 | (0x3f & ch));
+            }
+        }
+        if (offset > 65535) {
+            throw new UTFDataFormatException("String more than 65535 UTF bytes long");
+        }
+        return Arrays.copyOf(result, offset);
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.dex;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+import junit.framework.TestCase;
+
+public final class Adler32sTest extends TestCase {
+    private final Random random = new Random(0);
+
+    public void testCombine() {
+        byte[] bytes = randomBytes(100000);
+        for (int split : new int[] { 0, 1, 5552, 65521, 65522, 99999, 100000 }) {
+            int left = adler32(bytes, 0, split);
+            int right = adler32(bytes, split, bytes.length);
+            assertEquals("split=" + split, adler32(bytes, 0, bytes.length),
+                    Adler32s.combine(left, right, bytes.length - split));
+        }
+    }
+
+    public void testParallelMatchesSequential() {
+        byte[] bytes = randomBytes(5 * 1024 * 1024 + 17);
+        assertEquals(adler32(bytes, 3, bytes.length),
+                Adler32s.adler32(ByteBuffer.wrap(bytes), 3, bytes.length));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        assertEquals(adler32(bytes, 3, bytes.length), Adler32s.adler32(direct, 3, bytes.length));
+    }
+
+    public void testReplace() {
+        byte[] bytes = randomBytes(200000);
+        int checksum = adler32(bytes, 0, bytes.length);
+        int[][] changes = { { 0, 100 }, { 70000, 65521 }, { 199000, 1000 }, { 5, 0 } };
+        for (int[] change : changes) {
+            int offset = change[0];
+            int length = change[1];
+            byte[] old = Arrays.copyOfRange(bytes, offset, offset + length);
+            byte[] replacement = randomBytes(length);
+            System.arraycopy(replacement, 0, bytes, offset, length);
+            checksum = Adler32s.replace(checksum, bytes.length, offset,
+                    adler32(old, 0, length), adler32(replacement, 0, length), length);
+            assertEquals(adler32(bytes, 0, bytes.length), checksum);
+        }
+    }
+
+    public void testZeros() {
+        for (int length : new int[] { 0, 1, 65521, 100000 }) {
+            assertEquals(adler32(new byte[length], 0, length), Adler32s.zeros(length));
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] result = new byte[length];
+        random.nextBytes(result);
+        return result;
+    }
+
+    private static int adler32(byte[] bytes, int start, int end) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(bytes, start, end - start);
+        return (int) adler32.getValue();
+    }
+}
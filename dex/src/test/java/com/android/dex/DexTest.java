@@ -0,0 +1,536 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.dex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import junit.framework.TestCase;
+
+public final class DexTest extends TestCase {
+
+    private static final List<String> STRINGS = Arrays.asList(
+            "<init>", "LFoo;", "Ljava/lang/Object;", "V", "bar", "caf\u00e9", "\u4e2d\u6587");
+
+    private File tmpDir;
+
+    @Override protected void setUp() throws Exception {
+        tmpDir = File.createTempFile("DexTest", "");
+        tmpDir.delete();
+        tmpDir.mkdir();
+    }
+
+    @Override protected void tearDown() throws Exception {
+        for (File file : tmpDir.listFiles()) {
+            file.delete();
+        }
+        tmpDir.delete();
+    }
+
+    public void testMmapDexFile() throws Exception {
+        byte[] bytes = newDexBytes();
+        File file = new File(tmpDir, "test.dex");
+        writeFile(file, bytes);
+
+        Dex dex = Dex.mmap(file);
+        assertTrue(Arrays.equals(bytes, dex.getBytes()));
+        assertEquals(STRINGS, dex.strings());
+        assertEquals(Arrays.asList("LFoo;", "Ljava/lang/Object;", "V"), dex.typeNames());
+        assertEquals(new Dex(file).computeChecksum(), dex.computeChecksum());
+        try {
+            dex.writeHashes();
+            fail();
+        } catch (ReadOnlyBufferException expected) {
+        }
+    }
+
+    public void testMmapStoredArchiveEntry() throws Exception {
+        byte[] bytes = newDexBytes();
+        File file = new File(tmpDir, "test.jar");
+        writeArchive(file, bytes, ZipEntry.STORED);
+
+        Dex dex = Dex.mmap(file);
+        assertTrue(Arrays.equals(bytes, dex.getBytes()));
+        assertEquals(STRINGS, dex.strings());
+        try {
+            dex.open(0).writeInt(0);
+            fail(); // A read-only mapping, not a heap copy.
+        } catch (ReadOnlyBufferException expected) {
+        }
+    }
+
+    public void testMmapCompressedArchiveEntry() throws Exception {
+        byte[] bytes = newDexBytes();
+        File file = new File(tmpDir, "test.apk");
+        writeArchive(file, bytes, ZipEntry.DEFLATED);
+
+        Dex dex = Dex.mmap(file);
+        assertTrue(Arrays.equals(bytes, dex.getBytes()));
+        assertEquals(STRINGS, dex.strings());
+    }
+
+    public void testMmapArchiveWithoutDex() throws Exception {
+        File file = new File(tmpDir, "test.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        out.putNextEntry(new ZipEntry("other.txt"));
+        out.write(1);
+        out.close();
+        try {
+            Dex.mmap(file);
+            fail();
+        } catch (DexException expected) {
+        }
+    }
+
+    public void testSymbolIndex() throws Exception {
+        Dex dex = new Dex(newDexBytes());
+        dex.buildSymbolIndex();
+        for (int i = 0; i < STRINGS.size(); i++) {
+            assertEquals(i, dex.findStringIndex(STRINGS.get(i)));
+        }
+        assertEquals(0, dex.findTypeIndex("LFoo;"));
+        assertEquals(1, dex.findTypeIndex("Ljava/lang/Object;"));
+        assertEquals(2, dex.findTypeIndex("V"));
+        assertEquals(0, dex.findFieldIndex(new FieldId(dex, 0, 0, 4)));
+        assertEquals(0, dex.findMethodIndex(new MethodId(dex, 0, 0, 0)));
+    }
+
+    public void testSymbolIndexMisses() throws Exception {
+        Dex dex = new Dex(newDexBytes());
+        dex.buildSymbolIndex();
+        assertTrue(dex.findStringIndex("") < 0);
+        assertTrue(dex.findStringIndex("caf") < 0);
+        assertTrue(dex.findStringIndex("cafe") < 0);
+        assertTrue(dex.findStringIndex("caf\u00e9\u0000") < 0);
+        assertTrue(dex.findStringIndex("\u4e2d") < 0);
+        assertTrue(dex.findTypeIndex("bar") < 0); // A string, but not a type.
+        assertTrue(dex.findTypeIndex("LBar;") < 0);
+        assertTrue(dex.findFieldIndex(new FieldId(dex, 0, 1, 4)) < 0);
+        assertTrue(dex.findFieldIndex(new FieldId(dex, 1, 0, 4)) < 0);
+        assertTrue(dex.findMethodIndex(new MethodId(dex, 0, 0, 4)) < 0);
+    }
+
+    public void testSymbolIndexMatchesBinarySearch() throws Exception {
+        byte[] bytes = newDexBytes();
+        Dex dex = new Dex(bytes);
+        Dex indexed = new Dex(bytes);
+        indexed.buildSymbolIndex();
+        for (String s : dex.strings()) {
+            assertEquals(dex.findStringIndex(s), indexed.findStringIndex(s));
+        }
+        for (String typeName : dex.typeNames()) {
+            assertEquals(dex.findTypeIndex(typeName), indexed.findTypeIndex(typeName));
+        }
+        for (FieldId fieldId : dex.fieldIds()) {
+            assertEquals(dex.findFieldIndex(fieldId), indexed.findFieldIndex(fieldId));
+        }
+        for (MethodId methodId : dex.methodIds()) {
+            assertEquals(dex.findMethodIndex(methodId), indexed.findMethodIndex(methodId));
+        }
+    }
+
+    public void testWriteHashes() throws Exception {
+        Dex dex = new Dex(newDexBytes());
+        dex.open(SizeOf.HEADER_ITEM - 4).writeInt(0x12345678); // Invalidate the hashes.
+        dex.writeHashes();
+        assertEquals(dex.computeChecksum(), new Dex(dex.getBytes()).getTableOfContents().checksum);
+        assertTrue(Arrays.equals(dex.computeSignature(),
+                new Dex(dex.getBytes()).getTableOfContents().signature));
+    }
+
+    public void testChecksumOfLargeDex() throws Exception {
+        byte[] bytes = new byte[5 * 1024 * 1024 + 3];
+        new Random(0).nextBytes(bytes);
+        Dex dex = new Dex(bytes.length);
+        dex.open(0).write(bytes);
+        Adler32 adler32 = new Adler32();
+        adler32.update(bytes, 12, bytes.length - 12);
+        assertEquals((int) adler32.getValue(), dex.computeChecksum());
+    }
+
+    public void testUpdateChecksumAfterAppendingSections() throws Exception {
+        Random random = new Random(0);
+        Dex dex = new Dex(256 * 1024);
+        Dex.Section header = dex.appendSection(SizeOf.HEADER_ITEM, "header");
+        header.write(randomBytes(random, SizeOf.HEADER_ITEM));
+        dex.appendSection(1024, "ids").write(randomBytes(random, 1024));
+        dex.writeHashes();
+
+        for (int i = 0; i < 3; i++) {
+            dex.appendSection(40000, "data").write(randomBytes(random, 40000));
+            dex.open(32).write(randomBytes(random, SizeOf.HEADER_ITEM - 32));
+            assertEquals(checksum(dex.getBytes()), dex.updateChecksum());
+        }
+    }
+
+    public void testUpdateChecksumWithoutCheckpoint() throws Exception {
+        Dex dex = new Dex(newDexBytes());
+        assertEquals(dex.computeChecksum(), dex.updateChecksum());
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] result = new byte[length];
+        random.nextBytes(result);
+        return result;
+    }
+
+    private static int checksum(byte[] dex) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(dex, 12, dex.length - 12);
+        return (int) adler32.getValue();
+    }
+
+    public void testVisitor() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        new Dex(newDexBytes()).accept(new DexVisitor() {
+            @Override public void visitClass(int classDefIndex, int typeIndex, int accessFlags,
+                    int supertypeIndex, int sourceFileIndex) {
+                events.add("class " + classDefIndex + " " + typeIndex + " " + accessFlags + " "
+                        + supertypeIndex + " " + sourceFileIndex);
+            }
+            @Override public void visitInterface(int typeIndex) {
+                events.add("interface " + typeIndex);
+            }
+            @Override public void visitStaticValues(EncodedValueReader reader) {
+                assertEquals(1, reader.readArray());
+                reader.readNull();
+                events.add("static values");
+            }
+            @Override public void visitClassAnnotation(int visibility, EncodedValueReader reader) {
+                events.add("class annotation " + annotation(visibility, reader));
+            }
+            @Override public void visitField(int fieldIndex, int accessFlags, boolean isStatic) {
+                events.add("field " + fieldIndex + " " + accessFlags + " " + isStatic);
+            }
+            @Override public boolean visitMethod(int methodIndex, int accessFlags, int codeOffset,
+                    boolean isDirect) {
+                events.add("method " + methodIndex + " " + accessFlags + " " + isDirect);
+                return true;
+            }
+            @Override public void visitCode(int registersSize, int insSize, int outsSize,
+                    int debugInfoOffset) {
+                events.add("code " + registersSize + " " + insSize + " " + outsSize + " "
+                        + debugInfoOffset);
+            }
+            @Override public void visitInsns(short[] insns, int count) {
+                events.add("insns " + Arrays.toString(Arrays.copyOf(insns, count)));
+            }
+            @Override public void visitTry(int startAddress, int instructionCount) {
+                events.add("try " + startAddress + " " + instructionCount);
+            }
+            @Override public void visitCatch(int typeIndex, int address) {
+                events.add("catch " + typeIndex + " " + address);
+            }
+            @Override public void visitFieldAnnotation(int fieldIndex, int visibility,
+                    EncodedValueReader reader) {
+                events.add("field annotation " + fieldIndex + " " + annotation(visibility, reader));
+            }
+            @Override public void visitMethodAnnotation(int methodIndex, int visibility,
+                    EncodedValueReader reader) {
+                events.add("method annotation " + methodIndex + " "
+                        + annotation(visibility, reader));
+            }
+            @Override public void visitParameterAnnotation(int methodIndex, int parameterIndex,
+                    int visibility, EncodedValueReader reader) {
+                events.add("parameter annotation " + methodIndex + " " + parameterIndex + " "
+                        + annotation(visibility, reader));
+            }
+            @Override public void visitClassEnd() {
+                events.add("end");
+            }
+        });
+        assertEquals(Arrays.asList(
+                "class 0 0 1 1 -1",
+                "interface 1",
+                "static values",
+                "class annotation 1 0 4=42",
+                "field 0 8 true",
+                "method 0 65537 true",
+                "code 1 1 0 0",
+                "insns [14]",
+                "try 0 1",
+                "catch 1 0",
+                "catch -1 0",
+                "field annotation 0 1 0 4=42",
+                "method annotation 0 1 0 4=42",
+                "parameter annotation 0 0 1 0 4=42",
+                "end"), events);
+    }
+
+    public void testVisitorMatchesReaders() throws Exception {
+        final Dex dex = new Dex(newDexBytes());
+        final List<String> visited = new ArrayList<String>();
+        dex.accept(new DexVisitor() {
+            @Override public void visitField(int fieldIndex, int accessFlags, boolean isStatic) {
+                visited.add("field " + fieldIndex + " " + accessFlags);
+            }
+            @Override public boolean visitMethod(int methodIndex, int accessFlags, int codeOffset,
+                    boolean isDirect) {
+                visited.add("method " + methodIndex + " " + accessFlags + " " + codeOffset);
+                return true;
+            }
+            @Override public void visitInsns(short[] insns, int count) {
+                visited.add("insns " + Arrays.toString(Arrays.copyOf(insns, count)));
+            }
+            @Override public void visitTry(int startAddress, int instructionCount) {
+                visited.add("try " + startAddress + " " + instructionCount);
+            }
+        });
+
+        List<String> read = new ArrayList<String>();
+        for (ClassDef classDef : dex.classDefs()) {
+            ClassData classData = dex.readClassData(classDef);
+            for (ClassData.Field field : classData.allFields()) {
+                read.add("field " + field.getFieldIndex() + " " + field.getAccessFlags());
+            }
+            for (ClassData.Method method : classData.allMethods()) {
+                read.add("method " + method.getMethodIndex() + " " + method.getAccessFlags()
+                        + " " + method.getCodeOffset());
+                Code code = dex.readCode(method);
+                read.add("insns " + Arrays.toString(code.getInstructions()));
+                for (Code.Try tryItem : code.getTries()) {
+                    read.add("try " + tryItem.getStartAddress() + " "
+                            + tryItem.getInstructionCount());
+                }
+            }
+        }
+        assertEquals(read, visited);
+    }
+
+    public void testVisitorSkipsCode() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        new Dex(newDexBytes()).accept(new DexVisitor() {
+            @Override public boolean visitMethod(int methodIndex, int accessFlags, int codeOffset,
+                    boolean isDirect) {
+                events.add("method");
+                return false;
+            }
+            @Override public void visitCode(int registersSize, int insSize, int outsSize,
+                    int debugInfoOffset) {
+                events.add("code");
+            }
+            @Override public void visitMethodAnnotation(int methodIndex, int visibility,
+                    EncodedValueReader reader) {
+                events.add("method annotation");
+            }
+        });
+        assertEquals(Arrays.asList("method", "method annotation"), events);
+    }
+
+    /** Reads an annotation whose elements are ints, as "visibility type name=value...". */
+    private static String annotation(int visibility, EncodedValueReader reader) {
+        StringBuilder result = new StringBuilder();
+        int size = reader.readAnnotation();
+        result.append(visibility).append(" ").append(reader.getAnnotationType());
+        for (int i = 0; i < size; i++) {
+            result.append(" ").append(reader.readAnnotationName()).append("=")
+                    .append(reader.readInt());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns a minimal valid dex with {@link #STRINGS}, type IDs for those
+     * that are descriptors, and the class {@code Foo}. It extends and
+     * implements {@code Object}, and has a static field {@code bar} and a
+     * constructor whose code has a try. The class, field, constructor and
+     * constructor's parameter are all annotated.
+     */
+    static byte[] newDexBytes() throws IOException {
+        Dex dex = new Dex(4096);
+        TableOfContents toc = dex.getTableOfContents();
+        toc.header.off = 0;
+        toc.header.size = 1;
+
+        toc.stringIds.off = SizeOf.HEADER_ITEM;
+        toc.stringIds.size = STRINGS.size();
+        int[] descriptorIndices = { 1, 2, 3 };
+        toc.typeIds.off = toc.stringIds.off + toc.stringIds.size * SizeOf.STRING_ID_ITEM;
+        toc.typeIds.size = descriptorIndices.length;
+        Dex.Section typeIds = dex.open(toc.typeIds.off);
+        for (int descriptorIndex : descriptorIndices) {
+            typeIds.writeInt(descriptorIndex);
+        }
+
+        // The proto ()V, the field Foo.bar:LFoo; and the method Foo.<init>()V.
+        toc.protoIds.off = toc.typeIds.off + toc.typeIds.size * SizeOf.TYPE_ID_ITEM;
+        toc.protoIds.size = 1;
+        new ProtoId(dex, 3, 2, 0).writeTo(dex.open(toc.protoIds.off));
+        toc.fieldIds.off = toc.protoIds.off + SizeOf.PROTO_ID_ITEM;
+        toc.fieldIds.size = 1;
+        new FieldId(dex, 0, 0, 4).writeTo(dex.open(toc.fieldIds.off));
+        toc.methodIds.off = toc.fieldIds.off + SizeOf.MEMBER_ID_ITEM;
+        toc.methodIds.size = 1;
+        new MethodId(dex, 0, 0, 0).writeTo(dex.open(toc.methodIds.off));
+        toc.classDefs.off = toc.methodIds.off + SizeOf.MEMBER_ID_ITEM;
+        toc.classDefs.size = 1;
+
+        // The data section must be in the order that writeMap() declares
+        // sections. Like the dx merger, start with the map list.
+        toc.mapList.off = toc.classDefs.off + SizeOf.CLASS_DEF_ITEM;
+        toc.mapList.size = 1;
+        int mapListEntries = 17;
+        Dex.Section out = dex.open(toc.mapList.off + SizeOf.UINT + mapListEntries * SizeOf.MAP_ITEM);
+
+        toc.typeLists.off = out.getPosition();
+        toc.typeLists.size = 1;
+        out.writeInt(1);
+        out.writeUnsignedShort(1); // Ljava/lang/Object;
+        out.alignToFourBytesWithZeroFill();
+
+        toc.annotationSetRefLists.off = out.getPosition();
+        toc.annotationSetRefLists.size = 1;
+        out.writeInt(1);
+        int annotationSetOffset = out.getPosition() + SizeOf.UINT;
+        out.writeInt(annotationSetOffset);
+
+        toc.annotationSets.off = out.getPosition();
+        toc.annotationSets.size = 1;
+        out.writeInt(1);
+        int annotationOffsetPosition = out.getPosition();
+        out.writeInt(0); // Written below, once the annotation's offset is known.
+
+        toc.classDatas.off = out.getPosition();
+        toc.classDatas.size = 1;
+        out.writeUleb128(1); // static fields
+        out.writeUleb128(0); // instance fields
+        out.writeUleb128(1); // direct methods
+        out.writeUleb128(0); // virtual methods
+        out.writeUleb128(0); // field index diff
+        out.writeUleb128(0x0008); // static
+        out.writeUleb128(0); // method index diff
+        out.writeUleb128(0x10001); // public constructor
+        int codeOffset = (out.getPosition() + 2 + 3) & ~3; // The offset takes two bytes.
+        out.writeUleb128(codeOffset);
+        out.alignToFourBytesWithZeroFill();
+
+        toc.codes.off = codeOffset;
+        toc.codes.size = 1;
+        out.writeUnsignedShort(1); // registers
+        out.writeUnsignedShort(1); // ins
+        out.writeUnsignedShort(0); // outs
+        out.writeUnsignedShort(1); // tries
+        out.writeInt(0); // debug info
+        out.writeInt(1); // instructions
+        out.writeUnsignedShort(0x000e); // return-void
+        out.writeUnsignedShort(0); // padding
+        out.writeInt(0); // try start address
+        out.writeUnsignedShort(1); // try instruction count
+        out.writeUnsignedShort(1); // handler offset
+        out.writeUleb128(1); // handlers
+        out.writeSleb128(-1); // one typed handler, and a catch-all
+        out.writeUleb128(1); // Ljava/lang/Object;
+        out.writeUleb128(0);
+        out.writeUleb128(0);
+
+        toc.stringDatas.off = out.getPosition();
+        toc.stringDatas.size = STRINGS.size();
+        Dex.Section stringIds = dex.open(toc.stringIds.off);
+        for (String s : STRINGS) {
+            stringIds.writeInt(out.getPosition());
+            out.writeStringData(s);
+        }
+
+        // @Foo(bar = 42), with runtime visibility.
+        toc.annotations.off = out.getPosition();
+        toc.annotations.size = 1;
+        dex.open(annotationOffsetPosition).writeInt(toc.annotations.off);
+        out.writeByte(1);
+        out.writeUleb128(0);
+        out.writeUleb128(1);
+        out.writeUleb128(4);
+        out.writeByte(EncodedValueReader.ENCODED_INT);
+        out.writeByte(42);
+
+        toc.encodedArrays.off = out.getPosition();
+        toc.encodedArrays.size = 1;
+        out.writeUleb128(1);
+        out.writeByte(EncodedValueReader.ENCODED_NULL);
+        out.alignToFourBytesWithZeroFill();
+
+        toc.annotationsDirectories.off = out.getPosition();
+        toc.annotationsDirectories.size = 1;
+        out.writeInt(annotationSetOffset); // class annotations
+        out.writeInt(1); // fields
+        out.writeInt(1); // methods
+        out.writeInt(1); // parameters
+        out.writeInt(0);
+        out.writeInt(annotationSetOffset);
+        out.writeInt(0);
+        out.writeInt(annotationSetOffset);
+        out.writeInt(0);
+        out.writeInt(toc.annotationSetRefLists.off);
+
+        Dex.Section classDefs = dex.open(toc.classDefs.off);
+        classDefs.writeInt(0); // LFoo;
+        classDefs.writeInt(0x0001); // public
+        classDefs.writeInt(1); // Ljava/lang/Object;
+        classDefs.writeInt(toc.typeLists.off);
+        classDefs.writeInt(ClassDef.NO_INDEX); // source file
+        classDefs.writeInt(toc.annotationsDirectories.off);
+        classDefs.writeInt(toc.classDatas.off);
+        classDefs.writeInt(toc.encodedArrays.off);
+
+        toc.writeMap(dex.open(toc.mapList.off));
+
+        toc.fileSize = out.getPosition();
+        toc.dataOff = toc.mapList.off;
+        toc.dataSize = toc.fileSize - toc.dataOff;
+        toc.writeHeader(dex.open(0), DexFormat.API_NO_EXTENDED_OPCODES);
+
+        byte[] result = Arrays.copyOf(dex.getBytes(), toc.fileSize);
+        Dex trimmed = new Dex(result);
+        trimmed.writeHashes();
+        return trimmed.getBytes();
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+    }
+
+    /** Writes an archive with {@code dex} after another entry, to exercise the offsets. */
+    private static void writeArchive(File file, byte[] dex, int method) throws IOException {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        ZipEntry manifest = new ZipEntry("META-INF/MANIFEST.MF");
+        manifest.setExtra(new byte[] { 0x34, 0x12, 2, 0, 0, 0 }); // An unknown extra field.
+        out.putNextEntry(manifest);
+        out.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+
+        ZipEntry entry = new ZipEntry(DexFormat.DEX_IN_JAR_NAME);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(dex);
+            entry.setCrc(crc.getValue());
+            entry.setSize(dex.length);
+        }
+        out.putNextEntry(entry);
+        out.write(dex);
+        out.close();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.dex;
+
+import com.android.dex.util.ByteArrayByteInput;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public final class Mutf8Test extends TestCase {
+    private static final String[] STRINGS = {
+            "",
+            "Ljava/lang/Object;",
+            "\u0000",
+            "a\u0000b",
+            "caf\u00e9",
+            "\u00e9t\u00e9",
+            "\u4e2d\u6587 and ASCII",
+            "\ud83d\ude00", // A surrogate pair; each half takes three bytes.
+            "\u007f\u0080\u07ff\u0800\uffff",
+    };
+
+    public void testEncodeMatchesWriteUtf() throws Exception {
+        for (String s : STRINGS) {
+            assertTrue(s, Arrays.equals(writeUtf(s), Mutf8.encode(s)));
+        }
+    }
+
+    public void testEncodeTooLong() throws Exception {
+        char[] chars = new char[65535];
+        Arrays.fill(chars, 'a');
+        assertEquals(65535, Mutf8.encode(new String(chars)).length);
+        try {
+            Mutf8.encode(new String(chars) + "a");
+            fail();
+        } catch (UTFDataFormatException expected) {
+        }
+        chars[0] = '\u00e9';
+        try {
+            Mutf8.encode(new String(chars));
+            fail();
+        } catch (UTFDataFormatException expected) {
+        }
+    }
+
+    public void testDecode() throws Exception {
+        for (String s : STRINGS) {
+            byte[] bytes = terminated(s, 3);
+            assertEquals(s, Mutf8.decode(ByteBuffer.wrap(bytes), 3, s.length()));
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes);
+            assertEquals(s, Mutf8.decode(direct, 3, s.length()));
+            assertEquals(s, Mutf8.decode(new ByteArrayByteInput(terminated(s, 0)),
+                    new char[s.length()]));
+        }
+    }
+
+    public void testDecodeSlice() throws Exception {
+        byte[] bytes = terminated("caf\u00e9", 5);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+        assertEquals("caf\u00e9", Mutf8.decode(buffer.slice(), 3, 4));
+    }
+
+    public void testDecodeWrongLength() throws Exception {
+        byte[] bytes = terminated("caf\u00e9", 0);
+        try {
+            Mutf8.decode(ByteBuffer.wrap(bytes), 0, 5);
+            fail();
+        } catch (UTFDataFormatException expected) {
+        }
+        try {
+            Mutf8.decode(ByteBuffer.wrap(bytes), 0, 3);
+            fail();
+        } catch (UTFDataFormatException expected) {
+        }
+        try {
+            Mutf8.decode(ByteBuffer.wrap(terminated("abc", 0)), 0, 2);
+            fail();
+        } catch (UTFDataFormatException expected) {
+        }
+    }
+
+    public void testDecodeBadBytes() throws Exception {
+        byte[][] inputs = {
+                { (byte) 0xc3, 0x41, 0 },
+                { (byte) 0xe4, (byte) 0xb8, 0x41, 0 },
+                { (byte) 0xf0, (byte) 0x9f, (byte) 0x98, (byte) 0x80, 0 },
+                { (byte) 0x80, 0 },
+        };
+        for (byte[] input : inputs) {
+            try {
+                Mutf8.decode(input, 0, new char[4]);
+                fail();
+            } catch (UTFDataFormatException expected) {
+            }
+        }
+    }
+
+    /** Returns {@code s} encoded after {@code offset} zeros, and terminated. */
+    private static byte[] terminated(String s, int offset) throws IOException {
+        byte[] encoded = writeUtf(s);
+        byte[] result = new byte[offset + encoded.length + 1];
+        System.arraycopy(encoded, 0, result, offset, encoded.length);
+        return result;
+    }
+
+    /** Returns the modified UTF-8 written by {@link DataOutputStream#writeUTF}. */
+    private static byte[] writeUtf(String s) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(s);
+        return Arrays.copyOfRange(bytes.toByteArray(), 2, bytes.size());
+    }
+}
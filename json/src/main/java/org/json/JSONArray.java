@@ -16,6 +16,7 @@
 
 package org.json;
 
+import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -607,6 +608,17 @@ public class JSONArray {
         return stringer.toString();
     }
 
+    /**
+     * Encodes this array as a compact JSON string to {@code writer}. Unlike
+     * {@link #toString()}, this doesn't hold the whole encoded array in memory.
+     * The writer is flushed but not closed.
+     */
+    public void write(Writer writer) throws JSONException {
+        JSONStringer stringer = new JSONStringer(writer);
+        writeTo(stringer);
+        stringer.flush();
+    }
+
     void writeTo(JSONStringer stringer) throws JSONException {
         stringer.array();
         for (Object value : values) {
@@ -16,6 +16,7 @@
 
 package org.json;
 
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -714,6 +715,17 @@ public class JSONObject {
         return stringer.toString();
     }
 
+    /**
+     * Encodes this object as a compact JSON string to {@code writer}. Unlike
+     * {@link #toString()}, this doesn't hold the whole encoded object in memory.
+     * The writer is flushed but not closed.
+     */
+    public void write(Writer writer) throws JSONException {
+        JSONStringer stringer = new JSONStringer(writer);
+        writeTo(stringer);
+        stringer.flush();
+    }
+
     void writeTo(JSONStringer stringer) throws JSONException {
         stringer.object();
         for (Map.Entry<String, Object> entry : nameValuePairs.entrySet()) {
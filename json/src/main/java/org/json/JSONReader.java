@@ -0,0 +1,868 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads a JSON (<a href="http://www.ietf.org/rfc/rfc4627.txt">RFC 4627</a>)
+ * encoded value as a stream of tokens, without building {@link JSONObject}
+ * or {@link JSONArray} trees. This is useful for large documents where only
+ * some of the values are needed, or where the values are converted directly
+ * into application objects. Example usage: <pre>
+ * JSONReader reader = new JSONReader(in);
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     if (name.equals("query")) {
+ *         query = reader.nextString();
+ *     } else if (name.equals("count")) {
+ *         count = reader.nextLong();
+ *     } else {
+ *         reader.skipValue();
+ *     }
+ * }
+ * reader.endObject();</pre>
+ *
+ * <p>This reader accepts the same lenient syntax as {@link JSONTokener},
+ * including comments, unquoted and single quoted strings, hexadecimal and
+ * octal integers and omitted array elements, which are reported as nulls.
+ * The {@code nextLong()}, {@code nextInt()}, {@code nextDouble()} and
+ * {@code nextBoolean()} methods coerce strings in the same way as the
+ * corresponding getters of {@link JSONObject}. Several values may follow one
+ * another at the top level; {@link #peek} returns {@link Token#END_DOCUMENT}
+ * once the input is exhausted.
+ *
+ * <p>Instances of this class are not thread safe.
+ */
+public class JSONReader implements Closeable {
+
+    /** The kinds of token that {@link #peek} may return. */
+    public enum Token {
+        BEGIN_ARRAY,
+        END_ARRAY,
+        BEGIN_OBJECT,
+        END_OBJECT,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    /* The states of an open array, object or document. */
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    /** The input, or null if this reader is limited to its initial buffer. */
+    private final Reader in;
+
+    private char[] buffer;
+    private int pos;
+    private int limit;
+
+    /** The number of characters consumed before {@code buffer[0]}. */
+    private long bufferOffset;
+
+    private int[] stack = new int[32];
+    private int stackSize;
+
+    /** The next token, or null if it hasn't been read yet. */
+    private Token peeked;
+
+    /**
+     * The quote character of a peeked string or name. Its characters follow
+     * {@code pos} and have not been read yet.
+     */
+    private char peekedQuote;
+
+    /** The text of a peeked unquoted literal that isn't a fast-path long. */
+    private String peekedText;
+
+    /** The value of a peeked unquoted literal that isn't a fast-path long. */
+    private Object peekedValue;
+
+    /** True if the peeked number is held in {@code peekedLong}. */
+    private boolean peekedIsLong;
+    private long peekedLong;
+
+    /**
+     * Creates a reader that reads characters from {@code in} through an
+     * internal buffer.
+     */
+    public JSONReader(Reader in) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        this.in = in;
+        this.buffer = new char[DEFAULT_BUFFER_SIZE];
+        push(EMPTY_DOCUMENT);
+    }
+
+    /**
+     * Creates a reader over {@code count} characters of {@code chars}
+     * starting at {@code offset}. The characters are read in place and are
+     * not copied, so they must not be changed while this reader is in use.
+     */
+    public JSONReader(char[] chars, int offset, int count) {
+        Arrays.checkOffsetAndCount(chars.length, offset, count);
+        this.in = null;
+        this.buffer = chars;
+        this.pos = offset;
+        this.limit = offset + count;
+        this.bufferOffset = -offset;
+        push(EMPTY_DOCUMENT);
+    }
+
+    /**
+     * Consumes the next token, which must be the beginning of an array.
+     */
+    public void beginArray() throws JSONException {
+        expect(Token.BEGIN_ARRAY);
+        peeked = null;
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consumes the next token, which must be the end of the current array.
+     */
+    public void endArray() throws JSONException {
+        expect(Token.END_ARRAY);
+        peeked = null;
+        stackSize--;
+    }
+
+    /**
+     * Consumes the next token, which must be the beginning of an object.
+     */
+    public void beginObject() throws JSONException {
+        expect(Token.BEGIN_OBJECT);
+        peeked = null;
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consumes the next token, which must be the end of the current object.
+     */
+    public void endObject() throws JSONException {
+        expect(Token.END_OBJECT);
+        peeked = null;
+        stackSize--;
+    }
+
+    /**
+     * Returns true if the current array or object has another element.
+     */
+    public boolean hasNext() throws JSONException {
+        Token token = peek();
+        return token != Token.END_OBJECT
+                && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     */
+    public Token peek() throws JSONException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        int c;
+        switch (stack[stackSize - 1]) {
+            case EMPTY_DOCUMENT:
+                // consume an optional byte order mark (BOM) if it exists
+                if ((pos < limit || fill(1)) && buffer[pos] == '\ufeff') {
+                    pos++;
+                }
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                return peekValue(nextCleanInternal());
+
+            case NONEMPTY_DOCUMENT:
+                c = nextCleanInternal();
+                return c == -1 ? (peeked = Token.END_DOCUMENT) : peekValue(c);
+
+            case EMPTY_ARRAY:
+                if (peekCleanInternal() == ']') {
+                    pos++;
+                    return peeked = Token.END_ARRAY;
+                }
+                return peekArrayElement();
+
+            case NONEMPTY_ARRAY:
+                switch (nextCleanInternal()) {
+                    case ']':
+                        return peeked = Token.END_ARRAY;
+                    case ',':
+                    case ';':
+                        return peekArrayElement();
+                    default:
+                        throw syntaxError("Unterminated array");
+                }
+
+            case EMPTY_OBJECT:
+                c = nextCleanInternal();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                return peekName(c);
+
+            case NONEMPTY_OBJECT:
+                switch (nextCleanInternal()) {
+                    case '}':
+                        return peeked = Token.END_OBJECT;
+                    case ',':
+                    case ';':
+                        return peekName(nextCleanInternal());
+                    default:
+                        throw syntaxError("Unterminated object");
+                }
+
+            case DANGLING_NAME:
+                /*
+                 * Expect the name/value separator to be either a colon ':',
+                 * an equals sign '=', or an arrow "=>", like JSONTokener.
+                 */
+                c = nextCleanInternal();
+                if (c != ':' && c != '=') {
+                    throw syntaxError("Expected ':'");
+                }
+                if ((pos < limit || fill(1)) && buffer[pos] == '>') {
+                    pos++;
+                }
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                return peekValue(nextCleanInternal());
+
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Peeks the element of an array that has either just begun or just read
+     * a separator. A separator or the end of the array in place of a value
+     * means null, as in {@link JSONTokener}.
+     */
+    private Token peekArrayElement() throws JSONException {
+        stack[stackSize - 1] = NONEMPTY_ARRAY;
+        switch (peekCleanInternal()) {
+            case -1:
+                throw syntaxError("Unterminated array");
+            case ']':
+            case ',':
+            case ';':
+                // An omitted value. The separator is read by the next peek().
+                peekedQuote = 0;
+                peekedIsLong = false;
+                peekedValue = JSONObject.NULL;
+                return peeked = Token.NULL;
+            default:
+                return peekValue(nextCleanInternal());
+        }
+    }
+
+    /**
+     * Peeks the value that begins with the already consumed character
+     * {@code c}.
+     */
+    private Token peekValue(int c) throws JSONException {
+        switch (c) {
+            case -1:
+                throw syntaxError("End of input");
+
+            case '{':
+                return peeked = Token.BEGIN_OBJECT;
+
+            case '[':
+                return peeked = Token.BEGIN_ARRAY;
+
+            case '\'':
+            case '"':
+                peekedQuote = (char) c;
+                peekedValue = null;
+                return peeked = Token.STRING;
+
+            default:
+                pos--;
+                return peekLiteral();
+        }
+    }
+
+    /**
+     * Peeks the name that begins with the already consumed character
+     * {@code c}. Names must be quoted or unquoted strings.
+     */
+    private Token peekName(int c) throws JSONException {
+        stack[stackSize - 1] = DANGLING_NAME;
+        switch (c) {
+            case '\'':
+            case '"':
+                peekedQuote = (char) c;
+                peekedValue = null;
+                return peeked = Token.NAME;
+
+            case -1:
+                throw syntaxError("End of input");
+
+            case '{':
+            case '[':
+                throw syntaxError("Names must be strings");
+
+            default:
+                pos--;
+                if (peekLiteral() != Token.STRING) {
+                    Object name = peekedIsLong ? (Object) peekedLong : peekedValue;
+                    throw syntaxError("Names must be strings, but " + name
+                            + " is of type " + name.getClass().getName());
+                }
+                return peeked = Token.NAME;
+        }
+    }
+
+    /**
+     * Reads a null, boolean, numeric or unquoted string literal. Decimal
+     * integers are converted without allocating; everything else is
+     * converted by {@link JSONTokener#parseLiteral}.
+     */
+    private Token peekLiteral() throws JSONException {
+        int length = literalLength();
+        if (length == 0) {
+            throw syntaxError("Expected literal value");
+        }
+
+        peekedQuote = 0;
+        peekedIsLong = false;
+        peekedText = null;
+        if (literalEqualsIgnoreCase("null", length)) {
+            peekedValue = JSONObject.NULL;
+            peeked = Token.NULL;
+        } else if (literalEqualsIgnoreCase("true", length)) {
+            peekedValue = Boolean.TRUE;
+            peeked = Token.BOOLEAN;
+        } else if (literalEqualsIgnoreCase("false", length)) {
+            peekedValue = Boolean.FALSE;
+            peeked = Token.BOOLEAN;
+        } else if (literalIsDecimalLong(length)) {
+            peekedValue = null;
+            peeked = Token.NUMBER;
+        } else {
+            peekedText = new String(buffer, pos, length);
+            peekedValue = JSONTokener.parseLiteral(peekedText);
+            peeked = (peekedValue instanceof Number) ? Token.NUMBER : Token.STRING;
+        }
+        pos += length;
+        return peeked;
+    }
+
+    /**
+     * Returns the length of the literal at {@code pos}, making sure that all
+     * of its characters are in the buffer.
+     */
+    private int literalLength() throws JSONException {
+        int length = 0;
+        while (pos + length < limit || fill(length + 1)) {
+            switch (buffer[pos + length]) {
+                case '{':
+                case '}':
+                case '[':
+                case ']':
+                case '/':
+                case '\\':
+                case ':':
+                case ',':
+                case '=':
+                case ';':
+                case '#':
+                case ' ':
+                case '\t':
+                case '\f':
+                case '\r':
+                case '\n':
+                    return length;
+                default:
+                    length++;
+            }
+        }
+        return length;
+    }
+
+    private boolean literalEqualsIgnoreCase(String keyword, int length) {
+        if (length != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(buffer[pos + i]) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets {@code peekedLong} if the literal is a plain decimal integer that
+     * certainly fits in a long. Octal, hexadecimal, signed zero and very long
+     * integers are left to {@link JSONTokener#parseLiteral}.
+     */
+    private boolean literalIsDecimalLong(int length) {
+        int p = pos;
+        int end = pos + length;
+        boolean negative = buffer[p] == '-';
+        if (negative) {
+            p++;
+        }
+        int digits = end - p;
+        if (digits == 0 || digits > 18 || (digits > 1 && buffer[p] == '0')) {
+            return false;
+        }
+        long value = 0;
+        for (; p < end; p++) {
+            char c = buffer[p];
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (negative && value == 0) {
+            return false;
+        }
+        peekedLong = negative ? -value : value;
+        peekedIsLong = true;
+        return true;
+    }
+
+    /**
+     * Consumes the next token, which must be a name, and returns it.
+     */
+    public String nextName() throws JSONException {
+        expect(Token.NAME);
+        peeked = null;
+        return peekedQuote != 0 ? nextQuotedString(peekedQuote) : (String) peekedValue;
+    }
+
+    /**
+     * Consumes the next token and returns it as a string. Numbers and
+     * booleans are returned as their literal text.
+     */
+    public String nextString() throws JSONException {
+        Token token = peek();
+        switch (token) {
+            case STRING:
+                peeked = null;
+                return peekedQuote != 0 ? nextQuotedString(peekedQuote) : (String) peekedValue;
+            case NUMBER:
+                peeked = null;
+                return peekedIsLong ? Long.toString(peekedLong) : peekedText;
+            case BOOLEAN:
+                peeked = null;
+                return peekedValue.toString();
+            default:
+                throw syntaxError("Expected a string but was " + token);
+        }
+    }
+
+    /**
+     * Consumes the next token, which must be a boolean or a string that
+     * equals "true" or "false" ignoring case, and returns it.
+     */
+    public boolean nextBoolean() throws JSONException {
+        Object value = nextScalar("boolean");
+        Boolean result = JSON.toBoolean(value);
+        if (result == null) {
+            throw JSON.typeMismatch(value, "boolean");
+        }
+        return result;
+    }
+
+    /**
+     * Consumes the next token, which must be null.
+     */
+    public void nextNull() throws JSONException {
+        expect(Token.NULL);
+        peeked = null;
+    }
+
+    /**
+     * Consumes the next token, which must be a number or a string that can
+     * be coerced to a long, and returns it.
+     */
+    public long nextLong() throws JSONException {
+        if (peek() == Token.NUMBER && peekedIsLong) {
+            peeked = null;
+            return peekedLong;
+        }
+        Object value = nextScalar("long");
+        Long result = JSON.toLong(value);
+        if (result == null) {
+            throw JSON.typeMismatch(value, "long");
+        }
+        return result;
+    }
+
+    /**
+     * Consumes the next token, which must be a number or a string that can
+     * be coerced to an int, and returns it.
+     */
+    public int nextInt() throws JSONException {
+        if (peek() == Token.NUMBER && peekedIsLong) {
+            peeked = null;
+            return (int) peekedLong;
+        }
+        Object value = nextScalar("int");
+        Integer result = JSON.toInteger(value);
+        if (result == null) {
+            throw JSON.typeMismatch(value, "int");
+        }
+        return result;
+    }
+
+    /**
+     * Consumes the next token, which must be a number or a string that can
+     * be coerced to a double, and returns it.
+     */
+    public double nextDouble() throws JSONException {
+        if (peek() == Token.NUMBER && peekedIsLong) {
+            peeked = null;
+            return peekedLong;
+        }
+        Object value = nextScalar("double");
+        Double result = JSON.toDouble(value);
+        if (result == null) {
+            throw JSON.typeMismatch(value, "double");
+        }
+        return result;
+    }
+
+    /**
+     * Consumes the next string, number or boolean token and returns its
+     * value as it would appear in a {@link JSONObject}.
+     */
+    private Object nextScalar(String requiredType) throws JSONException {
+        Token token = peek();
+        switch (token) {
+            case STRING:
+                return nextString();
+            case NUMBER:
+            case BOOLEAN:
+                peeked = null;
+                return peekedIsLong ? (Object) peekedLong : peekedValue;
+            case NULL:
+                throw JSON.typeMismatch(null, requiredType);
+            default:
+                throw syntaxError("Expected a " + requiredType + " but was " + token);
+        }
+    }
+
+    /**
+     * Skips the next value, including all nested values of an array or
+     * object. Quoted strings are skipped without being decoded.
+     */
+    public void skipValue() throws JSONException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    if (depth == 0) {
+                        throw syntaxError("Expected a value but was " + token);
+                    }
+                    peeked = null;
+                    stackSize--;
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("End of input");
+                case NAME:
+                    if (depth == 0) {
+                        throw syntaxError("Expected a value but was " + token);
+                    }
+                    // fall through
+                default:
+                    peeked = null;
+                    if (peekedQuote != 0) {
+                        skipQuotedString(peekedQuote);
+                    }
+                    break;
+            }
+        } while (depth != 0);
+    }
+
+    /**
+     * Closes the underlying reader, if any.
+     */
+    @Override public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns an exception containing the given message plus the current
+     * position.
+     */
+    public JSONException syntaxError(String message) {
+        return new JSONException(message + this);
+    }
+
+    /**
+     * Returns the current position in the input.
+     */
+    @Override public String toString() {
+        return " at character " + (bufferOffset + pos);
+    }
+
+    private void expect(Token expected) throws JSONException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+    }
+
+    private void push(int state) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = state;
+    }
+
+    /**
+     * Makes at least {@code minimum} characters available starting at
+     * {@code pos}, moving them to the start of the buffer and growing it if
+     * necessary. Returns false if the input ends first.
+     */
+    private boolean fill(int minimum) throws JSONException {
+        if (in == null) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            bufferOffset += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        if (minimum > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, minimum));
+        }
+        try {
+            while (limit < minimum) {
+                int count = in.read(buffer, limit, buffer.length - limit);
+                if (count == -1) {
+                    return false;
+                }
+                limit += count;
+            }
+        } catch (IOException e) {
+            throw new JSONException("Failed to read input" + this, e);
+        }
+        return true;
+    }
+
+    private int nextCleanInternal() throws JSONException {
+        int c = peekCleanInternal();
+        if (c != -1) {
+            pos++;
+        }
+        return c;
+    }
+
+    /**
+     * Skips whitespace and comments like {@link JSONTokener} and returns the
+     * next character without consuming it, or -1 at the end of the input.
+     */
+    private int peekCleanInternal() throws JSONException {
+        while (pos < limit || fill(1)) {
+            char c = buffer[pos];
+            switch (c) {
+                case '\t':
+                case ' ':
+                case '\n':
+                case '\r':
+                    pos++;
+                    continue;
+
+                case '/':
+                    if (pos + 1 == limit && !fill(2)) {
+                        return c;
+                    }
+                    switch (buffer[pos + 1]) {
+                        case '*':
+                            // skip a /* c-style comment */
+                            pos += 2;
+                            skipComment();
+                            continue;
+
+                        case '/':
+                            // skip a // end-of-line comment
+                            pos += 2;
+                            skipToEndOfLine();
+                            continue;
+
+                        default:
+                            return c;
+                    }
+
+                case '#':
+                    // skip a # hash end-of-line comment
+                    pos++;
+                    skipToEndOfLine();
+                    continue;
+
+                default:
+                    return c;
+            }
+        }
+        return -1;
+    }
+
+    private void skipComment() throws JSONException {
+        while (pos + 1 < limit || fill(2)) {
+            if (buffer[pos] == '*' && buffer[pos + 1] == '/') {
+                pos += 2;
+                return;
+            }
+            pos++;
+        }
+        throw syntaxError("Unterminated comment");
+    }
+
+    /**
+     * Advances the position until after the next newline character. If the
+     * line is terminated by "\r\n", the '\n' must be consumed as whitespace
+     * by the caller.
+     */
+    private void skipToEndOfLine() throws JSONException {
+        while (pos < limit || fill(1)) {
+            char c = buffer[pos++];
+            if (c == '\r' || c == '\n') {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the string up to but not including {@code quote}, unescaping
+     * any character escape sequences encountered along the way. The opening
+     * quote should have already been read.
+     */
+    private String nextQuotedString(char quote) throws JSONException {
+        /*
+         * Strings that are free of escape sequences and don't span a buffer
+         * refill are copied straight out of the buffer.
+         */
+        StringBuilder builder = null;
+        while (true) {
+            int p = pos;
+            int start = p;
+            while (p < limit) {
+                char c = buffer[p++];
+                if (c == quote) {
+                    pos = p;
+                    if (builder == null) {
+                        return new String(buffer, start, p - start - 1);
+                    }
+                    builder.append(buffer, start, p - start - 1);
+                    return builder.toString();
+                }
+                if (c == '\\') {
+                    pos = p;
+                    if (builder == null) {
+                        builder = new StringBuilder();
+                    }
+                    builder.append(buffer, start, p - start - 1);
+                    builder.append(readEscapeCharacter());
+                    p = pos;
+                    start = p;
+                }
+            }
+            if (builder == null) {
+                builder = new StringBuilder();
+            }
+            builder.append(buffer, start, p - start);
+            pos = p;
+            if (!fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    /**
+     * Skips the string up to and including {@code quote}. The opening quote
+     * should have already been read.
+     */
+    private void skipQuotedString(char quote) throws JSONException {
+        while (pos < limit || fill(1)) {
+            char c = buffer[pos++];
+            if (c == quote) {
+                return;
+            }
+            if (c == '\\') {
+                if (pos == limit && !fill(1)) {
+                    break;
+                }
+                pos++;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Unescapes the character identified by the character or characters that
+     * immediately follow a backslash. The backslash '\' should have already
+     * been read.
+     */
+    private char readEscapeCharacter() throws JSONException {
+        if (pos == limit && !fill(1)) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        char escaped = buffer[pos++];
+        if (escaped != 'u') {
+            return JSONTokener.unescape(escaped);
+        }
+        if (pos + 4 > limit && !fill(4)) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        int result = 0;
+        for (int i = pos; i < pos + 4; i++) {
+            int digit = Character.digit(buffer[i], 16);
+            if (digit == -1) {
+                throw syntaxError("Invalid escape sequence: " + new String(buffer, pos, 4));
+            }
+            result = (result << 4) | digit;
+        }
+        pos += 4;
+        return (char) result;
+    }
+}
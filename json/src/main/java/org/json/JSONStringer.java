@@ -16,6 +16,11 @@
 
 package org.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -51,6 +56,10 @@ import java.util.List;
  * Attempts to create more than 20 levels of nesting may fail with a {@link
  * JSONException}.
  *
+ * <p>To encode large documents without holding all of the output in memory,
+ * create a stringer with {@link #JSONStringer(Writer)}. Its output is written
+ * to the writer whenever the internal buffer fills up, and by {@link #flush}.
+ *
  * <p>Each stringer may be used to encode a single top level value. Instances of
  * this class are not thread safe. Although this class is nonfinal, it was not
  * designed for inheritance and should not be subclassed. In particular,
@@ -60,9 +69,24 @@ import java.util.List;
  */
 public class JSONStringer {
 
-    /** The output data, containing at most one top-level array or object. */
+    /**
+     * The number of buffered characters that causes a writer-backed stringer
+     * to write its output.
+     */
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    /**
+     * The output data, containing at most one top-level array or object. For
+     * writer-backed stringers this only holds output not yet written.
+     */
     final StringBuilder out = new StringBuilder();
 
+    /** The destination of the output, or null to keep it all in {@code out}. */
+    private final Writer writer;
+
+    /** The number of characters already written to {@code writer}. */
+    private long writtenLength;
+
     /**
      * Lexical scoping elements within this stringer, necessary to insert the
      * appropriate separator characters (ie. commas and colons) and to detect
@@ -120,12 +144,35 @@ public class JSONStringer {
     private final String indent;
 
     public JSONStringer() {
+        writer = null;
+        indent = null;
+    }
+
+    /**
+     * Creates a stringer that writes its output to {@code writer} through a
+     * bounded buffer. Call {@link #flush} once the top-level value has been
+     * encoded.
+     */
+    public JSONStringer(Writer writer) {
+        if (writer == null) {
+            throw new NullPointerException("writer == null");
+        }
+        this.writer = writer;
         indent = null;
     }
 
+    /**
+     * Creates a stringer that writes its output to {@code out} encoded as
+     * UTF-8. Call {@link #flush} once the top-level value has been encoded.
+     */
+    public JSONStringer(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
     JSONStringer(int indentSpaces) {
         char[] indentChars = new char[indentSpaces];
         Arrays.fill(indentChars, ' ');
+        writer = null;
         indent = new String(indentChars);
     }
 
@@ -172,7 +219,7 @@ public class JSONStringer {
      * bracket.
      */
     JSONStringer open(Scope empty, String openBracket) throws JSONException {
-        if (stack.isEmpty() && out.length() > 0) {
+        if (stack.isEmpty() && (out.length() > 0 || writtenLength > 0)) {
             throw new JSONException("Nesting problem: multiple top-level roots");
         }
         beforeValue();
@@ -196,7 +243,7 @@ public class JSONStringer {
             newline();
         }
         out.append(closeBracket);
-        return this;
+        return flushIfFull();
     }
 
     /**
@@ -245,6 +292,12 @@ public class JSONStringer {
                 || value == JSONObject.NULL) {
             out.append(value);
 
+        } else if (value instanceof Integer || value instanceof Long) {
+            out.append(((Number) value).longValue());
+
+        } else if (value instanceof Double) {
+            appendDouble((Double) value);
+
         } else if (value instanceof Number) {
             out.append(JSONObject.numberToString((Number) value));
 
@@ -252,7 +305,7 @@ public class JSONStringer {
             string(value.toString());
         }
 
-        return this;
+        return flushIfFull();
     }
 
     /**
@@ -266,7 +319,7 @@ public class JSONStringer {
         }
         beforeValue();
         out.append(value);
-        return this;
+        return flushIfFull();
     }
 
     /**
@@ -281,8 +334,8 @@ public class JSONStringer {
             throw new JSONException("Nesting problem");
         }
         beforeValue();
-        out.append(JSONObject.numberToString(value));
-        return this;
+        appendDouble(value);
+        return flushIfFull();
     }
 
     /**
@@ -296,13 +349,44 @@ public class JSONStringer {
         }
         beforeValue();
         out.append(value);
-        return this;
+        return flushIfFull();
+    }
+
+    /**
+     * Appends {@code value} exactly as {@link JSONObject#numberToString}
+     * would format it, without boxing it or formatting integral values as
+     * doubles.
+     */
+    private void appendDouble(double value) throws JSONException {
+        JSON.checkDouble(value);
+        long longValue = (long) value;
+        if (value == (double) longValue) {
+            // the original returns "-0" instead of "-0.0" for negative zero
+            if (longValue == 0 && Double.doubleToRawLongBits(value) != 0) {
+                out.append("-0");
+            } else {
+                out.append(longValue);
+            }
+        } else {
+            out.append(value);
+        }
     }
 
     private void string(String value) {
         out.append("\"");
+
+        /*
+         * Most strings need no escaping at all, so runs of characters that
+         * don't need escaping are appended in bulk.
+         */
+        int start = 0;
         for (int i = 0, length = value.length(); i < length; i++) {
             char c = value.charAt(i);
+            if (c > '\\' || (c >= ' ' && c != '"' && c != '/' && c != '\\')) {
+                continue;
+            }
+            out.append(value, start, i);
+            start = i + 1;
 
             /*
              * From RFC 4627, "All Unicode characters may be placed within the
@@ -338,15 +422,12 @@ public class JSONStringer {
                     break;
 
                 default:
-                    if (c <= 0x1F) {
-                        out.append(String.format("\\u%04x", (int) c));
-                    } else {
-                        out.append(c);
-                    }
+                    out.append(String.format("\\u%04x", (int) c));
                     break;
             }
 
         }
+        out.append(value, start, value.length());
         out.append("\"");
     }
 
@@ -373,7 +454,7 @@ public class JSONStringer {
         }
         beforeKey();
         string(name);
-        return this;
+        return flushIfFull();
     }
 
     /**
@@ -416,6 +497,44 @@ public class JSONStringer {
         }
     }
 
+    /**
+     * Writes the buffered output of a writer-backed stringer once it reaches
+     * {@link #FLUSH_THRESHOLD} characters.
+     */
+    private JSONStringer flushIfFull() throws JSONException {
+        if (writer != null && out.length() >= FLUSH_THRESHOLD) {
+            writeBuffered();
+        }
+        return this;
+    }
+
+    private void writeBuffered() throws JSONException {
+        try {
+            writer.append(out);
+        } catch (IOException e) {
+            throw new JSONException("Failed to write output", e);
+        }
+        writtenLength += out.length();
+        out.setLength(0);
+    }
+
+    /**
+     * Writes all buffered output to the writer of a stringer created with
+     * {@link #JSONStringer(Writer)} or {@link #JSONStringer(OutputStream)},
+     * then flushes the writer. Does nothing for other stringers.
+     */
+    public void flush() throws JSONException {
+        if (writer == null) {
+            return;
+        }
+        writeBuffered();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new JSONException("Failed to write output", e);
+        }
+    }
+
     /**
      * Returns the encoded JSON string.
      *
@@ -424,9 +543,10 @@ public class JSONStringer {
      *
      * <p><strong>Warning:</strong> although it contradicts the general contract
      * of {@link Object#toString}, this method returns null if the stringer
-     * contains no data.
+     * contains no data. It also returns null for stringers that write their
+     * output to a {@link Writer} or {@link OutputStream}.
      */
     @Override public String toString() {
-        return out.length() == 0 ? null : out.toString();
+        return (writer != null || out.length() == 0) ? null : out.toString();
     }
 }
@@ -249,6 +249,18 @@ public class JSONTokener {
                     throw syntaxError("Invalid escape sequence: " + hex);
                 }
 
+            default:
+                return unescape(escaped);
+        }
+    }
+
+    /**
+     * Returns the character represented by the two-character escape sequence
+     * formed by a backslash and {@code escaped}. Unicode escapes must be
+     * handled by the caller.
+     */
+    static char unescape(char escaped) {
+        switch (escaped) {
             case 't':
                 return '\t';
 
@@ -282,7 +294,22 @@ public class JSONTokener {
 
         if (literal.length() == 0) {
             throw syntaxError("Expected literal value");
-        } else if ("null".equalsIgnoreCase(literal)) {
+        }
+        Object result = parseLiteral(literal);
+        if (result == literal) {
+            return new String(literal); // a new string avoids leaking memory
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value of a non-empty null, boolean, numeric or unquoted
+     * string literal. Numeric values will be returned as an Integer, Long, or
+     * Double, in that order of preference. Unquoted strings are returned as
+     * {@code literal} itself.
+     */
+    static Object parseLiteral(String literal) {
+        if ("null".equalsIgnoreCase(literal)) {
             return JSONObject.NULL;
         } else if ("true".equalsIgnoreCase(literal)) {
             return Boolean.TRUE;
@@ -324,7 +351,7 @@ public class JSONTokener {
         }
 
         /* ... finally give up. We have an unquoted string */
-        return new String(literal); // a new string avoids leaking memory
+        return literal;
     }
 
     /**
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json;
+
+import java.io.Reader;
+import java.io.StringReader;
+import junit.framework.TestCase;
+
+public class JSONReaderTest extends TestCase {
+
+    public void testReadObject() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader(
+                "{\"query\": \"Pizza\", \"locations\": [94043, 90210], \"open\": true}"));
+        assertEquals(JSONReader.Token.BEGIN_OBJECT, reader.peek());
+        reader.beginObject();
+        assertEquals("query", reader.nextName());
+        assertEquals("Pizza", reader.nextString());
+        assertEquals("locations", reader.nextName());
+        reader.beginArray();
+        assertEquals(JSONReader.Token.NUMBER, reader.peek());
+        assertEquals(94043, reader.nextLong());
+        assertEquals(90210, reader.nextInt());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("open", reader.nextName());
+        assertTrue(reader.nextBoolean());
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(JSONReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    public void testSkipValue() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader(
+                "{\"a\": {\"b\": [1, \"x\\\"]\", {}], \"c\": null}, \"d\": 5}"));
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.skipValue();
+        assertEquals("d", reader.nextName());
+        assertEquals(5, reader.nextLong());
+        reader.endObject();
+    }
+
+    public void testSkipValueRejectsEndOfArray() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader("[]"));
+        reader.beginArray();
+        try {
+            reader.skipValue();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+
+    public void testNumbers() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader(
+                "[0, -5, 9223372036854775807, 9223372036854775808, -0, 1.5, 1e2, 0x1F, 012]"));
+        reader.beginArray();
+        assertEquals(0, reader.nextLong());
+        assertEquals(-5, reader.nextLong());
+        assertEquals(Long.MAX_VALUE, reader.nextLong());
+        assertEquals(9223372036854775808d, reader.nextDouble());
+        assertEquals("-0", reader.nextString());
+        assertEquals(1.5, reader.nextDouble());
+        assertEquals("1e2", reader.nextString());
+        assertEquals(31, reader.nextInt());
+        assertEquals(10, reader.nextInt());
+        reader.endArray();
+    }
+
+    public void testCoercion() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader(
+                "[\"42\", \"TRUE\", 1.9, 7, \"abc\"]"));
+        reader.beginArray();
+        assertEquals(42, reader.nextLong());
+        assertTrue(reader.nextBoolean());
+        assertEquals(1, reader.nextLong());
+        assertEquals("7", reader.nextString());
+        try {
+            reader.nextLong();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+
+    public void testNullIsNotAString() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader("[null]"));
+        reader.beginArray();
+        try {
+            reader.nextString();
+            fail();
+        } catch (JSONException expected) {
+        }
+        reader.nextNull();
+        reader.endArray();
+    }
+
+    public void testEscapes() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader(
+                "[\"a\\tb\\n\\u00e9\\\\\\/\", 'it\\'s']"));
+        reader.beginArray();
+        assertEquals("a\tb\n\u00e9\\/", reader.nextString());
+        assertEquals("it's", reader.nextString());
+        reader.endArray();
+    }
+
+    public void testInvalidEscape() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader("[\"\\u00zz\"]"));
+        reader.beginArray();
+        try {
+            reader.nextString();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+
+    public void testUnterminatedString() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader("[\"abc"));
+        reader.beginArray();
+        try {
+            reader.nextString();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+
+    public void testNamesMustBeStrings() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader("{5: 6}"));
+        reader.beginObject();
+        try {
+            reader.nextName();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+
+    public void testOmittedArrayElementsAreNull() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader("[,1,;]"));
+        reader.beginArray();
+        reader.nextNull();
+        assertEquals(1, reader.nextInt());
+        reader.nextNull();
+        reader.nextNull();
+        reader.endArray();
+    }
+
+    public void testMultipleTopLevelValues() throws JSONException {
+        JSONReader reader = new JSONReader(new StringReader("{} [] 5"));
+        reader.beginObject();
+        reader.endObject();
+        reader.beginArray();
+        reader.endArray();
+        assertEquals(5, reader.nextInt());
+        assertFalse(reader.hasNext());
+    }
+
+    public void testCharArrayWindow() throws JSONException {
+        char[] chars = "xx[1, \"two\"]yy".toCharArray();
+        JSONReader reader = new JSONReader(chars, 2, 10);
+        reader.beginArray();
+        assertEquals(1, reader.nextInt());
+        assertEquals("two", reader.nextString());
+        reader.endArray();
+        assertEquals(JSONReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    public void testCharArrayWindowBounds() {
+        try {
+            new JSONReader(new char[4], 2, 3);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException expected) {
+        }
+    }
+
+    /**
+     * The reader must produce the same values as {@link JSONTokener} for all
+     * of the lenient syntax that the tokener accepts, even when each read of
+     * the underlying reader returns a single character.
+     */
+    public void testSameValuesAsTokener() throws JSONException {
+        String[] documents = {
+            "{\"a\": 1, \"b\": [true, false, null], \"c\": {\"d\": \"e\"}}",
+            "\ufeff[1, 2.5, -3, 1e-3, 0x10, 010, 12345678901234567890]",
+            "{a: b, 'c' = d; e => f}",
+            "[1 /* comment */, 2 // comment\n, 3 # comment\n, 'four']",
+            "[,]",
+            "[\"\\u0041\\\"\\\\\", TRUE, Null]",
+            "{\"long string\": \"" + repeat("0123456789", 300) + "\"}",
+            "[" + repeat("[", 40) + repeat("]", 40) + "]",
+        };
+        for (String document : documents) {
+            Object expected = new JSONTokener(document).nextValue();
+            assertEquals(document, expected.toString(),
+                    readValue(new JSONReader(new StringReader(document))).toString());
+            assertEquals(document, expected.toString(),
+                    readValue(new JSONReader(new OneCharReader(document))).toString());
+            char[] chars = document.toCharArray();
+            assertEquals(document, expected.toString(),
+                    readValue(new JSONReader(chars, 0, chars.length)).toString());
+        }
+    }
+
+    private static Object readValue(JSONReader reader) throws JSONException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    object.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                return JSONTokener.parseLiteral(reader.nextString());
+            case STRING:
+                return reader.nextString();
+            default:
+                throw new AssertionError(reader.peek());
+        }
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(s);
+        }
+        return result.toString();
+    }
+
+    private static class OneCharReader extends Reader {
+        private final String s;
+        private int pos;
+
+        OneCharReader(String s) {
+            this.s = s;
+        }
+
+        @Override public int read(char[] buffer, int offset, int count) {
+            if (pos == s.length()) {
+                return -1;
+            }
+            buffer[offset] = s.charAt(pos++);
+            return 1;
+        }
+
+        @Override public void close() {
+        }
+    }
+}
@@ -16,6 +16,9 @@
 
 package org.json;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import junit.framework.TestCase;
 
 /**
@@ -350,4 +353,68 @@ public class JSONStringerTest extends TestCase {
         } catch (JSONException e) {
         }
     }
+
+    public void testWriterMatchesToString() throws JSONException {
+        JSONObject object = new JSONObject();
+        object.put("string", "a\"b\\c/d\te\u0001f\u00e9");
+        object.put("ints", new JSONArray("[0, -1, 2147483647, 9223372036854775807]"));
+        object.put("doubles", new JSONArray("[1.5, -0.0, 2.0, 1e20, 1e-7]"));
+        object.put("float", 1.5f);
+        object.put("bool", true);
+        object.put("null", JSONObject.NULL);
+
+        StringWriter writer = new StringWriter();
+        object.write(writer);
+        assertEquals(object.toString(), writer.toString());
+    }
+
+    public void testWriterStringerToStringIsNull() throws JSONException {
+        JSONStringer stringer = new JSONStringer(new StringWriter());
+        stringer.array().value(1).endArray();
+        assertNull(stringer.toString());
+    }
+
+    public void testWriterIsWrittenIncrementally() throws JSONException {
+        final StringBuilder written = new StringBuilder();
+        Writer writer = new Writer() {
+            @Override public void write(char[] buffer, int offset, int count) {
+                written.append(buffer, offset, count);
+            }
+            @Override public void flush() {
+            }
+            @Override public void close() {
+            }
+        };
+        JSONStringer stringer = new JSONStringer(writer);
+        stringer.array();
+        for (int i = 0; i < 100000; i++) {
+            stringer.value(i);
+        }
+        // at most one buffer's worth of output is held back
+        int writtenBeforeFlush = written.length();
+        stringer.endArray();
+        stringer.flush();
+        assertTrue(written.length() - writtenBeforeFlush < 10000);
+        assertTrue(written.toString().endsWith(",99999]"));
+    }
+
+    public void testWriterMultipleRootsAfterFlush() throws JSONException {
+        JSONStringer stringer = new JSONStringer(new StringWriter());
+        stringer.array();
+        stringer.endArray();
+        stringer.flush();
+        try {
+            stringer.object();
+            fail();
+        } catch (JSONException e) {
+        }
+    }
+
+    public void testOutputStreamIsUtf8() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONStringer stringer = new JSONStringer(out);
+        stringer.array().value("\u00e9\u4e2d").endArray();
+        stringer.flush();
+        assertEquals("[\"\u00e9\u4e2d\"]", new String(out.toByteArray(), "UTF-8"));
+    }
 }
@@ -16,11 +16,17 @@
 
 package java.net;
 
-import libcore.util.BasicLruCache;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import libcore.util.ConcurrentLruCache;
 
 /**
- * Implements caching for {@code InetAddress}. We use a unified cache for both positive and negative
- * cache entries.
+ * Implements caching for {@code InetAddress}. Positive and negative entries are kept in separate
+ * caches so that a burst of failing lookups can't push out the hosts that do resolve.
+ *
+ * Each cache is split into shards by key hash. Reads don't lock; writes only lock the shards of the
+ * key they touch.
  *
  * TODO: benchmark and optimize InetAddress until we get to the point where we can just rely on
  * the C library level caching. The main thing caching at this level buys us is avoiding repeated
@@ -28,17 +34,65 @@ import libcore.util.BasicLruCache;
  */
 class AddressCache {
     /**
-     * When the cache contains more entries than this, we start dropping the oldest ones.
-     * This should be a power of two to avoid wasted space in our custom map.
+     * The number of shards in each cache. This must be a power of two.
+     */
+    private static final int SHARD_COUNT = 4;
+
+    /**
+     * When a shard contains more entries than this, we start dropping the oldest ones. Each shard
+     * can hold the whole limit so that hosts that happen to hash to the same shard don't evict
+     * each other while the rest of the cache is empty. The whole cache holds at most
+     * SHARD_COUNT times this many entries.
      */
-    private static final int MAX_ENTRIES = 16;
+    private static final int MAX_POSITIVE_ENTRIES = 32;
+    private static final int MAX_NEGATIVE_ENTRIES = 16;
 
     // The TTL for the Java-level cache is short, just 2s.
-    private static final long TTL_NANOS = 2 * 1000000000L;
+    private static final long DEFAULT_TTL_NANOS = 2 * 1000000000L;
 
-    // The actual cache.
-    private final BasicLruCache<AddressCacheKey, AddressCacheEntry> cache
-            = new BasicLruCache<AddressCacheKey, AddressCacheEntry>(MAX_ENTRIES);
+    /**
+     * A hit in the final part of an entry's lifetime asks one caller to refresh the entry while
+     * everyone else keeps using the cached value. This avoids all callers of a popular host
+     * missing at the same moment when its entry expires.
+     */
+    private static final int REFRESH_AHEAD_DIVISOR = 4;
+
+    /**
+     * Returned by get(Shards, ...) to the caller chosen to refresh an entry.
+     */
+    private static final Object REFRESH = new Object();
+
+    private static final LongSupplier SYSTEM_NANO_TIME = new LongSupplier() {
+        @Override public long getAsLong() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * The source of the current time in nanoseconds. Entries are timed against this rather than
+     * against System.nanoTime directly so that tests can move time forwards without sleeping.
+     */
+    private final LongSupplier nanoTime;
+
+    // The actual caches.
+    private final Shards positiveCache = new Shards(MAX_POSITIVE_ENTRIES);
+    private final Shards negativeCache = new Shards(MAX_NEGATIVE_ENTRIES);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder negativeHitCount = new LongAdder();
+
+    AddressCache() {
+        this(SYSTEM_NANO_TIME);
+    }
+
+    /**
+     * Creates a cache that reads the current time from 'nanoTime'. Used by tests.
+     */
+    AddressCache(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+    }
 
     static class AddressCacheKey {
         private final String mHostname;
@@ -77,13 +131,51 @@ class AddressCache {
          * The absolute expiry time in nanoseconds. Nanoseconds from System.nanoTime is ideal
          * because -- unlike System.currentTimeMillis -- it can never go backwards.
          *
-         * We don't need to worry about overflow with a TTL_NANOS of 2s.
+         * We don't need to worry about overflow with TTLs measured in seconds.
          */
         final long expiryNanos;
 
-        AddressCacheEntry(Object value) {
+        /**
+         * Entries are eligible for refresh-ahead from this time onwards.
+         */
+        final long refreshNanos;
+
+        /**
+         * Set once a caller has been asked to refresh this entry.
+         */
+        final AtomicBoolean refreshClaimed = new AtomicBoolean();
+
+        AddressCacheEntry(Object value, long now, long ttlNanos) {
             this.value = value;
-            this.expiryNanos = System.nanoTime() + TTL_NANOS;
+            this.expiryNanos = now + ttlNanos;
+            this.refreshNanos = expiryNanos - ttlNanos / REFRESH_AHEAD_DIVISOR;
+        }
+    }
+
+    /**
+     * A fixed number of independent caches, each holding the keys whose hash selects it.
+     */
+    private static class Shards {
+        private final ConcurrentLruCache<AddressCacheKey, AddressCacheEntry>[] shards;
+
+        @SuppressWarnings("unchecked")
+        Shards(int maxEntries) {
+            shards = new ConcurrentLruCache[SHARD_COUNT];
+            for (int i = 0; i < SHARD_COUNT; ++i) {
+                shards[i] = new ConcurrentLruCache<AddressCacheKey, AddressCacheEntry>(maxEntries);
+            }
+        }
+
+        ConcurrentLruCache<AddressCacheKey, AddressCacheEntry> shardFor(AddressCacheKey key) {
+            int h = key.hashCode();
+            h ^= (h >>> 16);
+            return shards[h & (SHARD_COUNT - 1)];
+        }
+
+        void evictAll() {
+            for (ConcurrentLruCache<AddressCacheKey, AddressCacheEntry> shard : shards) {
+                shard.evictAll();
+            }
         }
     }
 
@@ -91,31 +183,93 @@ class AddressCache {
      * Removes all entries from the cache.
      */
     public void clear() {
-        cache.evictAll();
+        positiveCache.evictAll();
+        negativeCache.evictAll();
     }
 
     /**
      * Returns the cached InetAddress[] for 'hostname' on network 'netId'. Returns null
      * if nothing is known about 'hostname'. Returns a String suitable for use as an
      * UnknownHostException detail message if 'hostname' is known not to exist.
+     *
+     * Null is also returned to one caller shortly before a frequently used entry expires, so
+     * that caller can look 'hostname' up again and replace the entry before anyone else misses.
      */
     public Object get(String hostname, int netId) {
-        AddressCacheEntry entry = cache.get(new AddressCacheKey(hostname, netId));
-        // Do we have a valid cache entry?
-        if (entry != null && entry.expiryNanos >= System.nanoTime()) {
-            return entry.value;
+        AddressCacheKey key = new AddressCacheKey(hostname, netId);
+        long now = nanoTime.getAsLong();
+        Object result = get(positiveCache, key, now);
+        if (result == null) {
+            result = get(negativeCache, key, now);
+            if (result != null && result != REFRESH) {
+                negativeHitCount.increment();
+                return result;
+            }
+        } else if (result != REFRESH) {
+            hitCount.increment();
+            return result;
         }
-        // Either we didn't find anything, or it had expired.
-        // No need to remove expired entries: the caller will provide a replacement shortly.
+        missCount.increment();
         return null;
     }
 
+    /**
+     * Returns what get() would, but only for entries that aren't due to be refreshed, and without
+     * counting the lookup. This lets a caller that has missed check whether someone else has just
+     * cached a fresh entry, without claiming a refresh.
+     */
+    public Object peek(String hostname, int netId) {
+        AddressCacheKey key = new AddressCacheKey(hostname, netId);
+        long now = nanoTime.getAsLong();
+        AddressCacheEntry entry = positiveCache.shardFor(key).get(key);
+        if (entry == null) {
+            entry = negativeCache.shardFor(key).get(key);
+        }
+        if (entry == null || entry.refreshNanos < now) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Returns the valid value cached for 'key' in 'cache', REFRESH if this caller should refresh
+     * it, or null.
+     */
+    private Object get(Shards cache, AddressCacheKey key, long now) {
+        AddressCacheEntry entry = cache.shardFor(key).get(key);
+        if (entry == null) {
+            return null;
+        }
+        // Do we have a valid cache entry?
+        if (entry.expiryNanos < now) {
+            // No need to remove expired entries: the caller will provide a replacement shortly.
+            expirationCount.increment();
+            return null;
+        }
+        if (entry.refreshNanos < now && entry.refreshClaimed.compareAndSet(false, true)) {
+            // This caller refreshes the entry; everyone else keeps using it until it expires.
+            return REFRESH;
+        }
+        return entry.value;
+    }
+
     /**
      * Associates the given 'addresses' with 'hostname'. The association will expire after a
      * certain length of time.
      */
     public void put(String hostname, int netId, InetAddress[] addresses) {
-        cache.put(new AddressCacheKey(hostname, netId), new AddressCacheEntry(addresses));
+        put(hostname, netId, addresses, DEFAULT_TTL_NANOS);
+    }
+
+    /**
+     * Associates the given 'addresses' with 'hostname' for 'ttlNanos' nanoseconds.
+     */
+    public void put(String hostname, int netId, InetAddress[] addresses, long ttlNanos) {
+        AddressCacheKey key = new AddressCacheKey(hostname, netId);
+        long now = nanoTime.getAsLong();
+        positiveCache.shardFor(key).put(key, new AddressCacheEntry(addresses, now, ttlNanos));
+        // The newer result replaces any negative entry.
+        negativeCache.shardFor(key).remove(key);
     }
 
     /**
@@ -123,6 +277,48 @@ class AddressCache {
      * negative cache entry.)
      */
     public void putUnknownHost(String hostname, int netId, String detailMessage) {
-        cache.put(new AddressCacheKey(hostname, netId), new AddressCacheEntry(detailMessage));
+        putUnknownHost(hostname, netId, detailMessage, DEFAULT_TTL_NANOS);
+    }
+
+    /**
+     * Records that 'hostname' is known not to have any associated addresses for 'ttlNanos'
+     * nanoseconds.
+     */
+    public void putUnknownHost(String hostname, int netId, String detailMessage,
+            long ttlNanos) {
+        AddressCacheKey key = new AddressCacheKey(hostname, netId);
+        long now = nanoTime.getAsLong();
+        negativeCache.shardFor(key).put(key, new AddressCacheEntry(detailMessage, now, ttlNanos));
+        // The newer result replaces any positive entry.
+        positiveCache.shardFor(key).remove(key);
+    }
+
+    /**
+     * Returns the number of lookups that found a valid positive entry.
+     */
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups that found no valid entry, including those that found an
+     * expired entry and those asked to refresh an entry ahead of its expiry.
+     */
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups that found an entry past its expiry time.
+     */
+    public long expirationCount() {
+        return expirationCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups that found a valid negative entry.
+     */
+    public long negativeHitCount() {
+        return negativeHitCount.sum();
     }
 }
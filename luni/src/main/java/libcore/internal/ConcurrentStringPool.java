@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.internal;
+
+/**
+ * A bounded pool of string instances that is safe for use by multiple
+ * threads. Like {@link StringPool}, this pool provides no guarantee of
+ * reference equality. It is intended only to save allocations, for example
+ * of the element and attribute names of documents that share a schema.
+ *
+ * <p>Each string hashes to a set of {@link #WAYS} slots. Lookups that find
+ * their string never lock and only write a reference bit. On a miss the new
+ * string replaces an entry of its set chosen by a CLOCK sweep, which gives
+ * entries that were used since the last sweep a second chance.
+ *
+ * <p>Threads may race to fill or replace a slot. The loser's string is simply
+ * not pooled; every lookup still returns a string with the requested content.
+ */
+public final class ConcurrentStringPool {
+
+    private static final int WAYS = 4;
+
+    private static final ConcurrentStringPool SHARED = new ConcurrentStringPool(2048);
+
+    /** The pooled strings, grouped into sets of {@link #WAYS} slots. */
+    private final String[] strings;
+
+    /** The hash code of each pooled string, checked before its content. */
+    private final int[] hashes;
+
+    /** Whether each slot was used since the clock hand last passed it. */
+    private final boolean[] referenced;
+
+    /** The clock hand of each set, as an index within the set. */
+    private final byte[] hands;
+
+    private final int setMask;
+
+    /**
+     * Returns the process-wide pool.
+     */
+    public static ConcurrentStringPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param capacity the maximum number of strings to pool. This is rounded
+     *     up to a power of two that is at least {@link #WAYS}.
+     */
+    public ConcurrentStringPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        int minimumSetCount = (capacity + WAYS - 1) / WAYS;
+        int setCount = (minimumSetCount == 1)
+                ? 1
+                : Integer.highestOneBit(minimumSetCount - 1) << 1;
+        strings = new String[setCount * WAYS];
+        hashes = new int[setCount * WAYS];
+        referenced = new boolean[setCount * WAYS];
+        hands = new byte[setCount];
+        setMask = setCount - 1;
+    }
+
+    /**
+     * Returns the maximum number of strings in this pool.
+     */
+    public int capacity() {
+        return strings.length;
+    }
+
+    /**
+     * Returns a string equal to {@code new String(array, start, length)}.
+     */
+    public String get(char[] array, int start, int length) {
+        // The same hash as String.hashCode(), so it can be compared with pooled strings.
+        int hashCode = 0;
+        for (int i = start; i < start + length; i++) {
+            hashCode = (hashCode * 31) + array[i];
+        }
+
+        // Pick a set using Doug Lea's supplemental secondaryHash function (from HashMap)
+        int h = hashCode;
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        int set = h & setMask;
+        int base = set * WAYS;
+
+        for (int slot = base; slot < base + WAYS; slot++) {
+            String pooled = strings[slot];
+            if (pooled != null && hashes[slot] == hashCode
+                    && contentEquals(pooled, array, start, length)) {
+                if (!referenced[slot]) {
+                    referenced[slot] = true;
+                }
+                return pooled;
+            }
+        }
+
+        String result = new String(array, start, length);
+        int slot = base + nextVictim(set, base);
+        // Concurrent readers may see any mix of this slot's old and new fields. The content check
+        // turns every mix into either a correct hit or a harmless miss.
+        hashes[slot] = hashCode;
+        referenced[slot] = false;
+        strings[slot] = result;
+        return result;
+    }
+
+    /**
+     * Advances the clock hand of {@code set} to an empty or unreferenced slot
+     * and returns that slot's index within the set.
+     */
+    private int nextVictim(int set, int base) {
+        int hand = hands[set];
+        // After one turn every reference bit is clear.
+        for (int i = 0; i < WAYS; i++) {
+            int slot = base + hand;
+            if (strings[slot] == null || !referenced[slot]) {
+                break;
+            }
+            referenced[slot] = false;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+        return hand;
+    }
+
+    private static boolean contentEquals(String s, char[] chars, int start, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
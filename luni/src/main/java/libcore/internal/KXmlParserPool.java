@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.internal;
+
+import java.lang.ref.WeakReference;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Keeps one recycled {@link KXmlParser} per thread, so that code parsing
+ * many small documents in a row can reuse a parser's read buffer and string
+ * pool rather than allocating new ones for each document.
+ *
+ * <p>Each thread's parser is only weakly held, so a thread that stops
+ * parsing doesn't keep a parser alive.
+ */
+public final class KXmlParserPool {
+
+    private static final ThreadLocal<WeakReference<KXmlParser>> RECYCLED
+            = new ThreadLocal<WeakReference<KXmlParser>>();
+
+    private KXmlParserPool() {
+    }
+
+    /**
+     * Returns the parser this thread last recycled, or a new one. The parser
+     * has no input and all of its features are off.
+     */
+    public static KXmlParser obtain() {
+        WeakReference<KXmlParser> reference = RECYCLED.get();
+        if (reference != null) {
+            KXmlParser parser = reference.get();
+            RECYCLED.set(null);
+            if (parser != null) {
+                return parser;
+            }
+        }
+        return new KXmlParser();
+    }
+
+    /**
+     * Resets {@code parser} and makes it available to the next call to
+     * {@link #obtain} on this thread. The caller must not use {@code parser}
+     * afterwards.
+     */
+    public static void recycle(KXmlParser parser) {
+        try {
+            parser.reset();
+        } catch (XmlPullParserException e) {
+            return;
+        }
+        RECYCLED.set(new WeakReference<KXmlParser>(parser));
+    }
+}
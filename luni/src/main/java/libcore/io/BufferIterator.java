@@ -59,4 +59,29 @@ public abstract class BufferIterator {
      * Returns the 16-bit short at the current position, and advances the current position two bytes.
      */
     public abstract short readShort();
+
+    /**
+     * Copies {@code shortCount} 16-bit shorts from the current position into {@code dst}, starting
+     * at {@code dstOffset}, and advances the current position {@code 2 * shortCount} bytes.
+     */
+    public abstract void readShortArray(short[] dst, int dstOffset, int shortCount);
+
+    /**
+     * Copies {@code longCount} 64-bit longs from the current position into {@code dst}, starting
+     * at {@code dstOffset}, and advances the current position {@code 8 * longCount} bytes.
+     */
+    public abstract void readLongArray(long[] dst, int dstOffset, int longCount);
+
+    /**
+     * Copies {@code floatCount} 32-bit floats from the current position into {@code dst}, starting
+     * at {@code dstOffset}, and advances the current position {@code 4 * floatCount} bytes.
+     */
+    public abstract void readFloatArray(float[] dst, int dstOffset, int floatCount);
+
+    /**
+     * Copies {@code doubleCount} 64-bit doubles from the current position into {@code dst},
+     * starting at {@code dstOffset}, and advances the current position {@code 8 * doubleCount}
+     * bytes.
+     */
+    public abstract void readDoubleArray(double[] dst, int dstOffset, int doubleCount);
 }
@@ -72,4 +72,24 @@ public final class NioBufferIterator extends BufferIterator {
         position += SizeOf.SHORT;
         return result;
     }
+
+    public void readShortArray(short[] dst, int dstOffset, int shortCount) {
+        Memory.peekShortArray(address + position, dst, dstOffset, shortCount, swap);
+        position += SizeOf.SHORT * shortCount;
+    }
+
+    public void readLongArray(long[] dst, int dstOffset, int longCount) {
+        Memory.peekLongArray(address + position, dst, dstOffset, longCount, swap);
+        position += SizeOf.LONG * longCount;
+    }
+
+    public void readFloatArray(float[] dst, int dstOffset, int floatCount) {
+        Memory.peekFloatArray(address + position, dst, dstOffset, floatCount, swap);
+        position += SizeOf.FLOAT * floatCount;
+    }
+
+    public void readDoubleArray(double[] dst, int dstOffset, int doubleCount) {
+        Memory.peekDoubleArray(address + position, dst, dstOffset, doubleCount, swap);
+        position += SizeOf.DOUBLE * doubleCount;
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.util;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An approximately least-recently-used cache for libcore that can be read
+ * from many threads without contention. This offers the same {@link #create}
+ * and {@link #entryEvicted} hooks as {@link BasicLruCache}.
+ *
+ * <p>Reads never take a lock: a hit is a {@link ConcurrentHashMap} lookup
+ * followed by setting the entry's reference bit. Writes and evictions are
+ * serialized on the cache's monitor. Eviction uses the CLOCK (second chance)
+ * algorithm: entries are kept in insertion order and an entry that has been
+ * read since the clock hand last passed it is moved to the back of the queue
+ * rather than being evicted. This approximates LRU ordering without having
+ * to reorder a list on every read.
+ */
+public class ConcurrentLruCache<K, V> {
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+    private final int maxSize;
+
+    /** Entries in clock order, oldest first. Guarded by {@code this}. */
+    private final ArrayDeque<Node<K, V>> queue;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile boolean referenced;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    public ConcurrentLruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        this.map = new ConcurrentHashMap<K, Node<K, V>>(maxSize);
+        this.queue = new ArrayDeque<Node<K, V>>(maxSize);
+    }
+
+    /**
+     * Returns the value for {@code key} if it exists in the cache or can be
+     * created by {@code #create}. If a value was returned, it is marked as
+     * recently used. This returns null if a value is not cached and cannot be
+     * created.
+     *
+     * <p>If another thread caches a value for {@code key} while
+     * {@code #create} is running, the other thread's value is kept and
+     * returned and the created value is discarded.
+     */
+    public final V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            // Avoid dirtying the cache line if the bit is already set.
+            if (!node.referenced) {
+                node.referenced = true;
+            }
+            hitCount.increment();
+            return node.value;
+        }
+        missCount.increment();
+
+        // Don't hold any locks while calling create.
+        V result = create(key);
+        if (result == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            node = map.get(key);
+            if (node != null) {
+                return node.value;
+            }
+            insert(key, result);
+            trimToSize(maxSize);
+        }
+        return result;
+    }
+
+    /**
+     * Caches {@code value} for {@code key} and marks it as recently used.
+     *
+     * @return the previous value mapped by {@code key}. Although that entry is
+     *     no longer cached, it has not been passed to {@link #entryEvicted}.
+     */
+    public synchronized final V put(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        } else if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            V previous = node.value;
+            node.value = value;
+            node.referenced = true;
+            return previous;
+        }
+        insert(key, value);
+        trimToSize(maxSize);
+        return null;
+    }
+
+    /**
+     * Removes the entry for {@code key} if it exists. The removed entry is not
+     * passed to {@link #entryEvicted}. This takes time proportional to the
+     * number of cached entries.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    public synchronized final V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Node<K, V> node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        queue.remove(node);
+        return node.value;
+    }
+
+    private void insert(K key, V value) {
+        Node<K, V> node = new Node<K, V>(key, value);
+        map.put(key, node);
+        queue.addLast(node);
+    }
+
+    private void trimToSize(int maxSize) {
+        while (queue.size() > maxSize) {
+            Node<K, V> toEvict = queue.pollFirst();
+            if (maxSize > 0 && toEvict.referenced) {
+                // Give it a second chance.
+                toEvict.referenced = false;
+                queue.addLast(toEvict);
+                continue;
+            }
+
+            map.remove(toEvict.key);
+            evictionCount.increment();
+            entryEvicted(toEvict.key, toEvict.value);
+        }
+    }
+
+    /**
+     * Called for entries that have been chosen for eviction and removed from
+     * the cache. The default implementation does nothing. This is called while
+     * holding the cache's lock, so implementations should be quick.
+     */
+    protected void entryEvicted(K key, V value) {}
+
+    /**
+     * Called after a cache miss to compute a value for the corresponding key.
+     * Returns the computed value or null if no value can be computed. The
+     * default implementation returns null. This may be called concurrently
+     * for the same key.
+     */
+    protected V create(K key) {
+        return null;
+    }
+
+    /**
+     * Returns a copy of the current contents of the cache, ordered from the
+     * next eviction candidate to the most recently inserted entry.
+     */
+    public synchronized final Map<K, V> snapshot() {
+        Map<K, V> result = new LinkedHashMap<K, V>();
+        for (Node<K, V> node : queue) {
+            result.put(node.key, node.value);
+        }
+        return result;
+    }
+
+    /**
+     * Clear the cache, calling {@link #entryEvicted} on each removed entry.
+     */
+    public synchronized final void evictAll() {
+        trimToSize(0);
+    }
+
+    /**
+     * Returns the number of times {@link #get} found a cached value.
+     */
+    public final long hitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of times {@link #get} did not find a cached value,
+     * whether or not {@link #create} was able to supply one.
+     */
+    public final long missCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of entries that have been passed to
+     * {@link #entryEvicted}.
+     */
+    public final long evictionCount() {
+        return evictionCount.sum();
+    }
+}
@@ -24,12 +24,14 @@ package libcore.util;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
 import libcore.io.BufferIterator;
+import libcore.io.Memory;
 
 /**
  * Our concrete TimeZone implementation, backed by zoneinfo data.
@@ -222,11 +224,18 @@ public final class ZoneInfo extends TimeZone {
         byte[] type = new byte[tzh_timecnt];
         it.readByteArray(type, 0, type.length);
 
+        // Read all the struct ttinfo entries in one go rather than one field at a time. Each is
+        // a 4 byte tt_gmtoff followed by single bytes for tt_isdst and tt_abbrind. Like the rest
+        // of the tzfile format, tt_gmtoff is big-endian.
+        final int SIZEOF_TTINFO = 6;
+        byte[] ttinfos = new byte[tzh_typecnt * SIZEOF_TTINFO];
+        it.readByteArray(ttinfos, 0, ttinfos.length);
+
         int[] gmtOffsets = new int[tzh_typecnt];
         byte[] isDsts = new byte[tzh_typecnt];
-        for (int i = 0; i < tzh_typecnt; ++i) {
-            gmtOffsets[i] = it.readInt();
-            byte b = it.readByte();
+        for (int i = 0, offset = 0; i < tzh_typecnt; ++i, offset += SIZEOF_TTINFO) {
+            gmtOffsets[i] = Memory.peekInt(ttinfos, offset, ByteOrder.BIG_ENDIAN);
+            byte b = ttinfos[offset + 4];
             if (b != 0 && b != 1) {
                 throw new IllegalStateException(id + " dst at " + i + " is not 0 or 1, is " + b);
             }
@@ -238,7 +247,6 @@ public final class ZoneInfo extends TimeZone {
             // for en_US, we wouldn't be able to provide correct abbreviations for other locales,
             // nor would we be able to provide correct long forms (such as "Yukon Standard Time")
             // for any locale. (The RI doesn't do any better than us here either.)
-            it.skip(1);
         }
 
         return new ZoneInfo(id, transitions64, type, gmtOffsets, isDsts, currentTimeMillis);
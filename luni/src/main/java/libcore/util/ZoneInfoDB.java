@@ -19,9 +19,9 @@ package libcore.util;
 import android.system.ErrnoException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import libcore.io.BufferIterator;
 import libcore.io.MemoryMappedFile;
 
@@ -55,32 +55,48 @@ public final class ZoneInfoDB {
 
     /**
      * The 'ids' array contains time zone ids sorted alphabetically, for binary searching.
-     * The other two arrays are in the same order. 'byteOffsets' gives the byte offset
-     * of each time zone, and 'rawUtcOffsetsCache' gives the time zone's raw UTC offset.
+     * The 'byteOffsets' array is in the same order and gives the byte offset of each time zone.
      */
     private String[] ids;
     private int[] byteOffsets;
-    private int[] rawUtcOffsetsCache; // Access this via getRawUtcOffsets instead.
+
+    /**
+     * Maps raw UTC offsets to ids. This is immutable once built, so readers don't need to lock.
+     * Access this via getRawUtcOffsetIndex instead.
+     */
+    private volatile RawUtcOffsetIndex rawUtcOffsetIndex;
 
     /**
      * ZoneInfo objects are worth caching because they are expensive to create.
      * See http://b/8270865 for context.
+     *
+     * Processes that work with several zones at once can raise the number of cached zones with
+     * the {@code libcore.util.ZoneInfoDB.cacheSize} system property.
      */
-    private final static int CACHE_SIZE = 1;
-    private final BasicLruCache<String, ZoneInfo> cache =
-        new BasicLruCache<String, ZoneInfo>(CACHE_SIZE) {
-      @Override
-      protected ZoneInfo create(String id) {
-        BufferIterator it = getBufferIterator(id);
-        if (it == null) {
-          return null;
-        }
-
-        return ZoneInfo.makeTimeZone(id, it);
-      }
-    };
+    public static final String CACHE_SIZE_PROPERTY = "libcore.util.ZoneInfoDB.cacheSize";
+    private static final int DEFAULT_CACHE_SIZE = 4;
+    private final ConcurrentLruCache<String, ZoneInfo> cache;
 
     public TzData(String... paths) {
+      this(getCacheSizeFromProperty(), paths);
+    }
+
+    /**
+     * Visible for testing.
+     */
+    public TzData(int cacheSize, String... paths) {
+      cache = new ConcurrentLruCache<String, ZoneInfo>(cacheSize) {
+        @Override
+        protected ZoneInfo create(String id) {
+          BufferIterator it = getBufferIterator(id);
+          if (it == null) {
+            return null;
+          }
+
+          return ZoneInfo.makeTimeZone(id, it);
+        }
+      };
+
       for (String path : paths) {
         if (loadData(path)) {
           return;
@@ -94,7 +110,23 @@ public final class ZoneInfoDB {
       version = "missing";
       zoneTab = "# Emergency fallback data.\n";
       ids = new String[] { "GMT" };
-      byteOffsets = rawUtcOffsetsCache = new int[1];
+      byteOffsets = new int[1];
+      rawUtcOffsetIndex = new RawUtcOffsetIndex(ids, new int[1]);
+    }
+
+    private static int getCacheSizeFromProperty() {
+      String value = System.getProperty(CACHE_SIZE_PROPERTY);
+      if (value != null) {
+        try {
+          int cacheSize = Integer.parseInt(value);
+          if (cacheSize > 0) {
+            return cacheSize;
+          }
+        } catch (NumberFormatException ignored) {
+        }
+        System.logW("Ignoring invalid " + CACHE_SIZE_PROPERTY + ": " + value);
+      }
+      return DEFAULT_CACHE_SIZE;
     }
 
     /**
@@ -215,30 +247,39 @@ public final class ZoneInfoDB {
     }
 
     public String[] getAvailableIDs(int rawUtcOffset) {
-      List<String> matches = new ArrayList<String>();
-      int[] rawUtcOffsets = getRawUtcOffsets();
-      for (int i = 0; i < rawUtcOffsets.length; ++i) {
-        if (rawUtcOffsets[i] == rawUtcOffset) {
-          matches.add(ids[i]);
-        }
-      }
-      return matches.toArray(new String[matches.size()]);
+      return getRawUtcOffsetIndex().getIds(rawUtcOffset);
+    }
+
+    /**
+     * Returns all time zone ids grouped by raw UTC offset in milliseconds, in increasing order
+     * of offset. Within each group the ids are sorted alphabetically.
+     */
+    public SortedMap<Integer, String[]> getAvailableIDsByRawOffset() {
+      return getRawUtcOffsetIndex().getAllIds();
     }
 
-    private synchronized int[] getRawUtcOffsets() {
-      if (rawUtcOffsetsCache != null) {
-        return rawUtcOffsetsCache;
+    private RawUtcOffsetIndex getRawUtcOffsetIndex() {
+      RawUtcOffsetIndex index = rawUtcOffsetIndex;
+      if (index != null) {
+        return index;
       }
-      rawUtcOffsetsCache = new int[ids.length];
+      // Two threads may race to build the index. That's harmless because they build equal
+      // immutable objects, and cheaper than making every caller take a lock.
+      int[] rawUtcOffsets = new int[ids.length];
       for (int i = 0; i < ids.length; ++i) {
-        // This creates a TimeZone, which is quite expensive. Hence the cache.
-        // Note that icu4c does the same (without the cache), so if you're
+        // This creates a TimeZone, which is quite expensive. Hence the index.
+        // Note that icu4c does the same (without the index), so if you're
         // switching this code over to icu4j you should check its performance.
         // Telephony shouldn't care, but someone converting a bunch of calendar
         // events might.
-        rawUtcOffsetsCache[i] = cache.get(ids[i]).getRawOffset();
+        // We bypass 'cache' here so that building the index doesn't evict the
+        // zones that are actually in use.
+        ZoneInfo zoneInfo = ZoneInfo.makeTimeZone(ids[i], getBufferIterator(ids[i]));
+        rawUtcOffsets[i] = zoneInfo.getRawOffset();
       }
-      return rawUtcOffsetsCache;
+      index = new RawUtcOffsetIndex(ids, rawUtcOffsets);
+      rawUtcOffsetIndex = index;
+      return index;
     }
 
     public String getVersion() {
@@ -259,6 +300,61 @@ public final class ZoneInfoDB {
       return cache.get(id) != null;
     }
 
+    /**
+     * The time zone ids grouped by raw UTC offset, held in flat arrays.
+     * 'offsets' contains each distinct raw offset once, in increasing order. The ids with
+     * offset 'offsets[i]' are 'ids[starts[i]]' to 'ids[starts[i + 1] - 1]', in alphabetical
+     * order.
+     */
+    private static final class RawUtcOffsetIndex {
+      private final int[] offsets;
+      private final int[] starts;
+      private final String[] ids;
+
+      RawUtcOffsetIndex(String[] sortedIds, int[] rawUtcOffsets) {
+        // Sort (offset, index) pairs packed into longs. The offset is in the high bits so it
+        // dominates the ordering, and ties keep the alphabetical order of 'sortedIds'.
+        long[] keys = new long[sortedIds.length];
+        for (int i = 0; i < keys.length; ++i) {
+          keys[i] = ((long) rawUtcOffsets[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        ids = new String[keys.length];
+        int[] offsets = new int[keys.length];
+        int[] starts = new int[keys.length + 1];
+        int groupCount = 0;
+        for (int i = 0; i < keys.length; ++i) {
+          int offset = (int) (keys[i] >> 32);
+          ids[i] = sortedIds[(int) keys[i]];
+          if (groupCount == 0 || offsets[groupCount - 1] != offset) {
+            offsets[groupCount] = offset;
+            starts[groupCount] = i;
+            ++groupCount;
+          }
+        }
+        starts[groupCount] = keys.length;
+        this.offsets = Arrays.copyOf(offsets, groupCount);
+        this.starts = Arrays.copyOf(starts, groupCount + 1);
+      }
+
+      String[] getIds(int rawUtcOffset) {
+        int group = Arrays.binarySearch(offsets, rawUtcOffset);
+        if (group < 0) {
+          return EmptyArray.STRING;
+        }
+        return Arrays.copyOfRange(ids, starts[group], starts[group + 1]);
+      }
+
+      SortedMap<Integer, String[]> getAllIds() {
+        SortedMap<Integer, String[]> result = new TreeMap<Integer, String[]>();
+        for (int group = 0; group < offsets.length; ++group) {
+          result.put(offsets[group], Arrays.copyOfRange(ids, starts[group], starts[group + 1]));
+        }
+        return result;
+      }
+    }
+
     @Override protected void finalize() throws Throwable {
       if (mappedFile != null) {
         mappedFile.close();
@@ -517,7 +517,7 @@ class ExpatParser {
         }
     }
 
-    private void startDocument() throws SAXException {
+    /*package*/ void startDocument() throws SAXException {
         ContentHandler contentHandler = xmlReader.contentHandler;
         if (contentHandler != null) {
             contentHandler.setDocumentLocator(this.locator);
@@ -525,7 +525,7 @@ class ExpatParser {
         }
     }
 
-    private void endDocument() throws SAXException {
+    /*package*/ void endDocument() throws SAXException {
         ContentHandler contentHandler;
         contentHandler = xmlReader.contentHandler;
         if (contentHandler != null) {
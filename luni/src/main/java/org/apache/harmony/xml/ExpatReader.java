@@ -19,6 +19,7 @@ package org.apache.harmony.xml;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Arrays;
 import libcore.io.IoUtils;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
@@ -34,6 +35,12 @@ import org.xml.sax.ext.LexicalHandler;
 /**
  * SAX wrapper around Expat. Interns strings. Does not support validation.
  * Does not support {@link DTDHandler}.
+ *
+ * <p>In addition to the blocking {@link #parse} methods, documents may be
+ * pushed to this reader as their bytes arrive: call {@link #startFeeding},
+ * then {@link #feed} for each chunk, then {@link #finish}. Events are
+ * dispatched from within {@code feed} for as much of the document as can be
+ * parsed so far.
  */
 public class ExpatReader implements XMLReader {
     /*
@@ -49,6 +56,9 @@ public class ExpatReader implements XMLReader {
     private boolean processNamespaces = true;
     private boolean processNamespacePrefixes = false;
 
+    /** The parser of the document being fed, or null if none is. */
+    private ExpatParser feedingParser;
+
     private static final String LEXICAL_HANDLER_PROPERTY
             = "http://xml.org/sax/properties/lexical-handler";
 
@@ -247,18 +257,7 @@ public class ExpatReader implements XMLReader {
     }
 
     public void parse(InputSource input) throws IOException, SAXException {
-        if (processNamespacePrefixes && processNamespaces) {
-            /*
-             * Expat has XML_SetReturnNSTriplet, but that still doesn't
-             * include xmlns attributes like this feature requires. We may
-             * have to implement namespace processing ourselves if we want
-             * this (not too difficult). We obviously "support" namespace
-             * prefixes if namespaces are disabled.
-             */
-            throw new SAXNotSupportedException("The 'namespace-prefix' " +
-                    "feature is not supported while the 'namespaces' " +
-                    "feature is enabled.");
-        }
+        checkFeatures();
 
         // Try the character stream.
         Reader reader = input.getCharacterStream();
@@ -319,4 +318,80 @@ public class ExpatReader implements XMLReader {
     public void parse(String systemId) throws IOException, SAXException {
         parse(new InputSource(systemId));
     }
+
+    /**
+     * Begins parsing a document whose bytes will be supplied by {@link #feed}.
+     * Any document that was being fed and not finished is abandoned.
+     *
+     * @param encoding the document's character encoding, or null for UTF-8
+     * @param publicId the document's public id, or null
+     * @param systemId the document's system id, used to resolve relative
+     *     external entities, or null
+     */
+    public void startFeeding(String encoding, String publicId, String systemId)
+            throws SAXException {
+        checkFeatures();
+        feedingParser = null;
+        ExpatParser parser =
+                new ExpatParser(encoding, this, processNamespaces, publicId, systemId);
+        parser.startDocument();
+        feedingParser = parser;
+    }
+
+    /**
+     * Parses the next {@code count} bytes of the document begun by {@link
+     * #startFeeding}, dispatching events for as much of the document as is
+     * complete. Chunks may split the document anywhere, even within a
+     * character. If parsing fails, the document is abandoned.
+     *
+     * @throws IllegalStateException if no document is being fed
+     */
+    public void feed(byte[] buffer, int offset, int count) throws SAXException {
+        Arrays.checkOffsetAndCount(buffer.length, offset, count);
+        ExpatParser parser = feedingParser();
+        boolean success = false;
+        try {
+            parser.append(buffer, offset, count);
+            success = true;
+        } finally {
+            if (!success) {
+                feedingParser = null;
+            }
+        }
+    }
+
+    /**
+     * Ends the document begun by {@link #startFeeding}.
+     *
+     * @throws SAXException if the document is incomplete or malformed
+     * @throws IllegalStateException if no document is being fed
+     */
+    public void finish() throws SAXException {
+        ExpatParser parser = feedingParser();
+        feedingParser = null;
+        parser.finish();
+        parser.endDocument();
+    }
+
+    private ExpatParser feedingParser() {
+        if (feedingParser == null) {
+            throw new IllegalStateException("startFeeding() not called");
+        }
+        return feedingParser;
+    }
+
+    private void checkFeatures() throws SAXNotSupportedException {
+        if (processNamespacePrefixes && processNamespaces) {
+            /*
+             * Expat has XML_SetReturnNSTriplet, but that still doesn't
+             * include xmlns attributes like this feature requires. We may
+             * have to implement namespace processing ourselves if we want
+             * this (not too difficult). We obviously "support" namespace
+             * prefixes if namespaces are disabled.
+             */
+            throw new SAXNotSupportedException("The 'namespace-prefix' " +
+                    "feature is not supported while the 'namespaces' " +
+                    "feature is enabled.");
+        }
+    }
 }
@@ -105,10 +105,24 @@ public final class AttrImpl extends NodeImpl implements Attr {
     @Override
     public void setPrefix(String prefix) {
         this.prefix = validatePrefix(prefix, namespaceAware, namespaceURI);
+        if (ownerElement != null) {
+            document.elementsChanged();
+        }
     }
 
     public void setValue(String value) throws DOMException {
         this.value = value;
+        if (ownerElement != null && affectsElementIndex()) {
+            document.elementsChanged();
+        }
+    }
+
+    /**
+     * Returns true if this attribute can change its element's results from
+     * {@link ElementImpl#getElementById}.
+     */
+    boolean affectsElementIndex() {
+        return isId || "id".equals(getName());
     }
 
     public TypeInfo getSchemaTypeInfo() {
@@ -32,6 +32,15 @@ import org.w3c.dom.Node;
  */
 public final class DOMConfigurationImpl implements DOMConfiguration {
 
+    /**
+     * True to index the document's elements by tag name and ID, so that
+     * repeated calls to {@code getElementsByTagName} and {@code
+     * getElementById} don't walk the tree. The index is rebuilt on the first
+     * lookup after elements are added, removed or renamed, or ID attributes
+     * change. Defaults to false.
+     */
+    public static final String ELEMENT_INDEX = "http://android.com/dom/element-index";
+
     private static final Map<String, Parameter> PARAMETERS
             = new TreeMap<String, Parameter>(String.CASE_INSENSITIVE_ORDER);
 
@@ -281,6 +290,18 @@ public final class DOMConfigurationImpl implements DOMConfiguration {
             }
         });
 
+        /*
+         * True to index elements for lookups by tag name and ID.
+         */
+        PARAMETERS.put(ELEMENT_INDEX, new BooleanParameter() {
+            public Object get(DOMConfigurationImpl config) {
+                return config.elementIndex;
+            }
+            public void set(DOMConfigurationImpl config, Object value) {
+                config.elementIndex = (Boolean) value;
+            }
+        });
+
         // TODO add "resource-resolver" property for use with LS feature...
     }
 
@@ -288,6 +309,7 @@ public final class DOMConfigurationImpl implements DOMConfiguration {
     private boolean comments = true;
     private boolean datatypeNormalization = false;
     private boolean entities = true;
+    boolean elementIndex = false;
     private DOMErrorHandler errorHandler;
     private boolean namespaces = true;
     private String schemaLocation;
@@ -50,6 +50,19 @@ public final class DocumentImpl extends InnerNodeImpl implements Document {
     private DOMImplementation domImplementation;
     private DOMConfigurationImpl domConfiguration;
 
+    /**
+     * Building an element index costs about as much as walking the tree a few
+     * times, so it is only built once this many queries in a row have found
+     * the elements unchanged. See {@link #elementIndex}.
+     */
+    private static final int QUERIES_BEFORE_INDEXING = 4;
+
+    /** See {@link #elementsChanged}. */
+    int elementsVersion;
+    private ElementIndex elementIndex;
+    /** Queries that found the elements unchanged since {@link #elementsVersion} last changed. */
+    private int queriesSinceElementsChanged;
+
     /*
      * The default values of these fields are specified by the Document
      * interface.
@@ -316,6 +329,7 @@ public final class DocumentImpl extends InnerNodeImpl implements Document {
         }
 
         setNameNS((NodeImpl) node, namespaceURI, qualifiedName);
+        elementsChanged();
         notifyUserDataHandlers(UserDataHandler.NODE_RENAMED, node, null);
         return node;
     }
@@ -361,7 +375,8 @@ public final class DocumentImpl extends InnerNodeImpl implements Document {
     }
 
     public DocumentType getDoctype() {
-        for (LeafNodeImpl child : children) {
+        for (int i = 0; i < childCount; i++) {
+            LeafNodeImpl child = childAt(i);
             if (child instanceof DocumentType) {
                 return (DocumentType) child;
             }
@@ -371,7 +386,8 @@ public final class DocumentImpl extends InnerNodeImpl implements Document {
     }
 
     public Element getDocumentElement() {
-        for (LeafNodeImpl child : children) {
+        for (int i = 0; i < childCount; i++) {
+            LeafNodeImpl child = childAt(i);
             if (child instanceof Element) {
                 return (Element) child;
             }
@@ -381,6 +397,11 @@ public final class DocumentImpl extends InnerNodeImpl implements Document {
     }
 
     public Element getElementById(String elementId) {
+        ElementIndex index = elementIndex();
+        if (index != null) {
+            return index.getElementById(elementId);
+        }
+
         ElementImpl root = (ElementImpl) getDocumentElement();
 
         return (root == null ? null : root.getElementById(elementId));
@@ -388,16 +409,65 @@ public final class DocumentImpl extends InnerNodeImpl implements Document {
 
     public NodeList getElementsByTagName(String name) {
         NodeListImpl result = new NodeListImpl();
-        getElementsByTagName(result, name);
+        ElementIndex index = elementIndex();
+        if (index != null) {
+            index.getElementsByTagName(result, null, name);
+        } else {
+            getElementsByTagName(result, name);
+        }
         return result;
     }
 
     public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
         NodeListImpl result = new NodeListImpl();
-        getElementsByTagNameNS(result, namespaceURI, localName);
+        ElementIndex index = elementIndex();
+        if (index != null) {
+            index.getElementsByTagNameNS(result, null, namespaceURI, localName);
+        } else {
+            getElementsByTagNameNS(result, namespaceURI, localName);
+        }
         return result;
     }
 
+    /**
+     * Records a mutation that may change the results of {@code
+     * getElementsByTagName} or {@code getElementById}, invalidating the
+     * element index.
+     */
+    void elementsChanged() {
+        elementsVersion++;
+        queriesSinceElementsChanged = 0;
+    }
+
+    /**
+     * Returns an index of this document's elements that reflects all
+     * mutations so far, or null if the caller should walk the tree instead.
+     * That is always the case if the {@link
+     * DOMConfigurationImpl#ELEMENT_INDEX} parameter isn't set.
+     *
+     * <p>After a relevant mutation, queries walk the tree until {@link
+     * #QUERIES_BEFORE_INDEXING} of them in a row have found the elements
+     * unchanged, and only then is the index rebuilt. Code that mutates the
+     * document between queries therefore does no more work than it would
+     * without the index, and code that mostly queries rebuilds it at most
+     * once per burst of queries.
+     */
+    ElementIndex elementIndex() {
+        if (domConfiguration == null || !domConfiguration.elementIndex) {
+            elementIndex = null;
+            return null;
+        }
+        if (elementIndex != null && elementIndex.version == elementsVersion) {
+            return elementIndex;
+        }
+        elementIndex = null;
+        if (++queriesSinceElementsChanged < QUERIES_BEFORE_INDEXING) {
+            return null;
+        }
+        elementIndex = new ElementIndex(this, elementsVersion);
+        return elementIndex;
+    }
+
     public DOMImplementation getImplementation() {
         return domImplementation;
     }
@@ -16,8 +16,7 @@
 
 package org.apache.harmony.xml.dom;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import libcore.util.Objects;
 import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
@@ -44,7 +43,18 @@ public class ElementImpl extends InnerNodeImpl implements Element {
     String prefix;
     String localName;
 
-    private List<AttrImpl> attributes = new ArrayList<AttrImpl>();
+    /**
+     * The attributes of this element, packed into the first {@link
+     * #attributeCount} slots. Null until the first attribute is added, as
+     * most elements have none.
+     */
+    private AttrImpl[] attributes;
+
+    // Maintained by ElementImpl.
+    int attributeCount;
+
+    /** This element's position in the document's {@link ElementIndex}. */
+    int indexPosition = -1;
 
     ElementImpl(DocumentImpl document, String namespaceURI, String qualifiedName) {
         super(document);
@@ -56,9 +66,39 @@ public class ElementImpl extends InnerNodeImpl implements Element {
         setName(this, name);
     }
 
+    private void addAttribute(AttrImpl attr) {
+        if (attributes == null) {
+            attributes = new AttrImpl[2];
+        } else if (attributeCount == attributes.length) {
+            attributes = Arrays.copyOf(attributes, attributeCount * 2);
+        }
+        attributes[attributeCount++] = attr;
+        if (attr.affectsElementIndex()) {
+            document.elementsChanged();
+        }
+    }
+
+    AttrImpl attributeAt(int index) {
+        if (index < 0 || index >= attributeCount) {
+            throw new IndexOutOfBoundsException(
+                    "index=" + index + " attributeCount=" + attributeCount);
+        }
+        return attributes[index];
+    }
+
+    private AttrImpl removeAttributeAt(int index) {
+        AttrImpl result = attributeAt(index);
+        System.arraycopy(attributes, index + 1, attributes, index, attributeCount - index - 1);
+        attributes[--attributeCount] = null;
+        if (result.affectsElementIndex()) {
+            document.elementsChanged();
+        }
+        return result;
+    }
+
     private int indexOfAttribute(String name) {
-        for (int i = 0; i < attributes.size(); i++) {
-            AttrImpl attr = attributes.get(i);
+        for (int i = 0; i < attributeCount; i++) {
+            AttrImpl attr = attributes[i];
             if (Objects.equal(name, attr.getNodeName())) {
                 return i;
             }
@@ -68,8 +108,8 @@ public class ElementImpl extends InnerNodeImpl implements Element {
     }
 
     private int indexOfAttributeNS(String namespaceURI, String localName) {
-        for (int i = 0; i < attributes.size(); i++) {
-            AttrImpl attr = attributes.get(i);
+        for (int i = 0; i < attributeCount; i++) {
+            AttrImpl attr = attributes[i];
             if (Objects.equal(namespaceURI, attr.getNamespaceURI())
                     && Objects.equal(localName, attr.getLocalName())) {
                 return i;
@@ -106,7 +146,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
             return null;
         }
 
-        return attributes.get(i);
+        return attributes[i];
     }
 
     public AttrImpl getAttributeNodeNS(String namespaceURI, String localName) {
@@ -116,7 +156,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
             return null;
         }
 
-        return attributes.get(i);
+        return attributes[i];
     }
 
     @Override
@@ -130,7 +170,8 @@ public class ElementImpl extends InnerNodeImpl implements Element {
      * navigation of large documents.
      */
     Element getElementById(String name) {
-        for (Attr attr : attributes) {
+        for (int i = 0; i < attributeCount; i++) {
+            AttrImpl attr = attributes[i];
             if (attr.isId() && name.equals(attr.getValue())) {
                 return this;
             }
@@ -146,9 +187,10 @@ public class ElementImpl extends InnerNodeImpl implements Element {
             return this;
         }
 
-        for (NodeImpl node : children) {
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Element element = ((ElementImpl) node).getElementById(name);
+        for (int i = 0; i < childCount; i++) {
+            ElementImpl child = elementAt(i);
+            if (child != null) {
+                Element element = child.getElementById(name);
                 if (element != null) {
                     return element;
                 }
@@ -160,13 +202,23 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
     public NodeList getElementsByTagName(String name) {
         NodeListImpl result = new NodeListImpl();
-        getElementsByTagName(result, name);
+        ElementIndex index = document.elementIndex();
+        if (index != null && index.contains(this)) {
+            index.getElementsByTagName(result, this, name);
+        } else {
+            getElementsByTagName(result, name);
+        }
         return result;
     }
 
     public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
         NodeListImpl result = new NodeListImpl();
-        getElementsByTagNameNS(result, namespaceURI, localName);
+        ElementIndex index = document.elementIndex();
+        if (index != null && index.contains(this)) {
+            index.getElementsByTagNameNS(result, this, namespaceURI, localName);
+        } else {
+            getElementsByTagNameNS(result, namespaceURI, localName);
+        }
         return result;
     }
 
@@ -210,14 +262,14 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
     @Override
     public boolean hasAttributes() {
-        return !attributes.isEmpty();
+        return attributeCount != 0;
     }
 
     public void removeAttribute(String name) throws DOMException {
         int i = indexOfAttribute(name);
 
         if (i != -1) {
-            attributes.remove(i);
+            removeAttributeAt(i);
         }
     }
 
@@ -226,7 +278,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
         int i = indexOfAttributeNS(namespaceURI, localName);
 
         if (i != -1) {
-            attributes.remove(i);
+            removeAttributeAt(i);
         }
     }
 
@@ -237,7 +289,12 @@ public class ElementImpl extends InnerNodeImpl implements Element {
             throw new DOMException(DOMException.NOT_FOUND_ERR, null);
         }
 
-        attributes.remove(oldAttrImpl);
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributes[i] == oldAttrImpl) {
+                removeAttributeAt(i);
+                break;
+            }
+        }
         oldAttrImpl.ownerElement = null;
 
         return oldAttrImpl;
@@ -281,11 +338,10 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
         int i = indexOfAttribute(newAttr.getName());
         if (i != -1) {
-            oldAttrImpl = attributes.get(i);
-            attributes.remove(i);
+            oldAttrImpl = removeAttributeAt(i);
         }
 
-        attributes.add(newAttrImpl);
+        addAttribute(newAttrImpl);
         newAttrImpl.ownerElement = this;
 
         return oldAttrImpl;
@@ -306,11 +362,10 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
         int i = indexOfAttributeNS(newAttr.getNamespaceURI(), newAttr.getLocalName());
         if (i != -1) {
-            oldAttrImpl = attributes.get(i);
-            attributes.remove(i);
+            oldAttrImpl = removeAttributeAt(i);
         }
 
-        attributes.add(newAttrImpl);
+        addAttribute(newAttrImpl);
         newAttrImpl.ownerElement = this;
 
         return oldAttrImpl;
@@ -319,12 +374,13 @@ public class ElementImpl extends InnerNodeImpl implements Element {
     @Override
     public void setPrefix(String prefix) {
         this.prefix = validatePrefix(prefix, namespaceAware, namespaceURI);
+        document.elementsChanged();
     }
 
     public class ElementAttrNamedNodeMapImpl implements NamedNodeMap {
 
         public int getLength() {
-            return ElementImpl.this.attributes.size();
+            return ElementImpl.this.attributeCount;
         }
 
         private int indexOfItem(String name) {
@@ -344,7 +400,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
         }
 
         public Node item(int index) {
-            return ElementImpl.this.attributes.get(index);
+            return ElementImpl.this.attributeAt(index);
         }
 
         public Node removeNamedItem(String name) throws DOMException {
@@ -354,7 +410,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
                 throw new DOMException(DOMException.NOT_FOUND_ERR, null);
             }
 
-            return ElementImpl.this.attributes.remove(i);
+            return ElementImpl.this.removeAttributeAt(i);
         }
 
         public Node removeNamedItemNS(String namespaceURI, String localName)
@@ -365,7 +421,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
                 throw new DOMException(DOMException.NOT_FOUND_ERR, null);
             }
 
-            return ElementImpl.this.attributes.remove(i);
+            return ElementImpl.this.removeAttributeAt(i);
         }
 
         public Node setNamedItem(Node arg) throws DOMException {
@@ -397,6 +453,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
                     "No such attribute: " + name);
         }
         attr.isId = isId;
+        document.elementsChanged();
     }
 
     public void setIdAttributeNS(String namespaceURI, String localName,
@@ -407,9 +464,11 @@ public class ElementImpl extends InnerNodeImpl implements Element {
                     "No such attribute: " + namespaceURI +  " " + localName);
         }
         attr.isId = isId;
+        document.elementsChanged();
     }
 
     public void setIdAttributeNode(Attr idAttr, boolean isId) throws DOMException {
         ((AttrImpl) idAttr).isId = isId;
+        document.elementsChanged();
     }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.dom;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import libcore.util.Objects;
+
+/**
+ * A snapshot of the elements of a document, indexed for {@code
+ * getElementsByTagName}, {@code getElementsByTagNameNS} and {@code
+ * getElementById}. Each query returns the same elements in the same order as
+ * a walk of the tree would.
+ *
+ * <p>Elements are numbered in document order, so the descendants of an
+ * element are exactly the elements numbered after it, up to the number of
+ * its last descendant. A query for a subtree binary searches the sorted
+ * positions of the matching elements for that range.
+ *
+ * <p>An index is only valid while the document's {@link
+ * DocumentImpl#elementsVersion} is unchanged.
+ */
+final class ElementIndex {
+
+    /** The document's elements version when this index was built. */
+    final int version;
+
+    /** The document's elements in document order. */
+    private ElementImpl[] elements = new ElementImpl[64];
+
+    /** The position of the last descendant of each element, or its own. */
+    private int[] subtreeEnds = new int[64];
+
+    private int count;
+
+    /** Positions of elements by {@link ElementImpl#getNodeName}. */
+    private final Map<String, Positions> byTagName = new HashMap<String, Positions>();
+
+    /** Positions of elements by {@link ElementImpl#getLocalName}. */
+    private final Map<String, Positions> byLocalName = new HashMap<String, Positions>();
+
+    /** The first element in document order having each ID. */
+    private final Map<String, ElementImpl> byId = new HashMap<String, ElementImpl>();
+
+    ElementIndex(DocumentImpl document, int version) {
+        this.version = version;
+        for (int i = 0; i < document.childCount; i++) {
+            ElementImpl element = document.elementAt(i);
+            if (element != null) {
+                add(element);
+            }
+        }
+    }
+
+    private void add(ElementImpl element) {
+        int position = count++;
+        if (position == elements.length) {
+            elements = Arrays.copyOf(elements, position * 2);
+            subtreeEnds = Arrays.copyOf(subtreeEnds, position * 2);
+        }
+        elements[position] = element;
+        element.indexPosition = position;
+
+        positions(byTagName, element.getNodeName()).add(position);
+        positions(byLocalName, element.getLocalName()).add(position);
+        // Like getElementById(), match ID attributes and the "id" attribute.
+        for (int i = 0; i < element.attributeCount; i++) {
+            AttrImpl attr = element.attributeAt(i);
+            if (attr.isId() && !byId.containsKey(attr.getValue())) {
+                byId.put(attr.getValue(), element);
+            }
+        }
+        String id = element.getAttribute("id");
+        if (!byId.containsKey(id)) {
+            byId.put(id, element);
+        }
+
+        for (int i = 0; i < element.childCount; i++) {
+            ElementImpl child = element.elementAt(i);
+            if (child != null) {
+                add(child);
+            }
+        }
+        subtreeEnds[position] = count - 1;
+    }
+
+    private static Positions positions(Map<String, Positions> map, String key) {
+        Positions result = map.get(key);
+        if (result == null) {
+            result = new Positions();
+            map.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if {@code element} is in this index. Elements that were
+     * detached from the document are not.
+     */
+    boolean contains(ElementImpl element) {
+        int position = element.indexPosition;
+        return position >= 0 && position < count && elements[position] == element;
+    }
+
+    /**
+     * Adds the descendants of {@code root} that have the tag name {@code
+     * name}, or all of them if {@code name} is "*". If {@code root} is null,
+     * adds all of the document's matching elements.
+     */
+    void getElementsByTagName(NodeListImpl out, ElementImpl root, String name) {
+        int from = root == null ? 0 : root.indexPosition + 1;
+        int to = root == null ? count - 1 : subtreeEnds[root.indexPosition];
+        if ("*".equals(name)) {
+            for (int i = from; i <= to; i++) {
+                out.add(elements[i]);
+            }
+            return;
+        }
+        Positions positions = byTagName.get(name);
+        if (positions == null) {
+            return;
+        }
+        for (int i = positions.indexOf(from); i < positions.size
+                && positions.values[i] <= to; i++) {
+            out.add(elements[positions.values[i]]);
+        }
+    }
+
+    /**
+     * Like {@link #getElementsByTagName}, but for elements matching both
+     * {@code namespaceURI} and {@code localName}, either of which may be "*".
+     */
+    void getElementsByTagNameNS(NodeListImpl out, ElementImpl root,
+            String namespaceURI, String localName) {
+        int from = root == null ? 0 : root.indexPosition + 1;
+        int to = root == null ? count - 1 : subtreeEnds[root.indexPosition];
+        boolean anyNamespace = "*".equals(namespaceURI);
+        if ("*".equals(localName)) {
+            for (int i = from; i <= to; i++) {
+                if (anyNamespace || Objects.equal(namespaceURI, elements[i].getNamespaceURI())) {
+                    out.add(elements[i]);
+                }
+            }
+            return;
+        }
+        Positions positions = byLocalName.get(localName);
+        if (positions == null) {
+            return;
+        }
+        for (int i = positions.indexOf(from); i < positions.size
+                && positions.values[i] <= to; i++) {
+            ElementImpl element = elements[positions.values[i]];
+            if (anyNamespace || Objects.equal(namespaceURI, element.getNamespaceURI())) {
+                out.add(element);
+            }
+        }
+    }
+
+    ElementImpl getElementById(String id) {
+        return byId.get(id);
+    }
+
+    /** A growable, sorted list of element positions. */
+    private static final class Positions {
+        int[] values = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        /**
+         * Returns the index of the first value that is at least {@code
+         * position}, or {@link #size} if there is none.
+         */
+        int indexOf(int position) {
+            int index = Arrays.binarySearch(values, 0, size, position);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -16,8 +16,7 @@
 
 package org.apache.harmony.xml.dom;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import libcore.util.Objects;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.DocumentFragment;
@@ -41,45 +40,125 @@ import org.w3c.dom.NodeList;
  */
 public abstract class InnerNodeImpl extends LeafNodeImpl {
 
-    // Maintained by LeafNodeImpl and ElementImpl.
-    List<LeafNodeImpl> children = new ArrayList<LeafNodeImpl>();
+    private static final AtomicReferenceArray<Object> EMPTY_CHILDREN =
+            new AtomicReferenceArray<Object>(0);
+
+    /**
+     * The children of this node, packed into the first {@link #childCount}
+     * slots. Each slot holds either a {@link LeafNodeImpl} or the {@code
+     * String} data of a text node that hasn't been created yet. Use {@link
+     * #childAt} to get the node in a slot.
+     *
+     * <p>Reading a document creates text nodes, so the slots are atomic: any
+     * number of threads may read a document that nobody is modifying, as
+     * with the eagerly built DOM.
+     */
+    private AtomicReferenceArray<Object> children = EMPTY_CHILDREN;
+
+    // Maintained by InnerNodeImpl.
+    int childCount;
 
     protected InnerNodeImpl(DocumentImpl document) {
         super(document);
     }
 
+    /**
+     * Returns the child at {@code index}, creating its node first if it is
+     * unmaterialized text.
+     */
+    final LeafNodeImpl childAt(int index) {
+        Object child = children.get(index);
+        if (child instanceof LeafNodeImpl) {
+            return (LeafNodeImpl) child;
+        }
+        TextImpl text = new TextImpl(document, (String) child);
+        text.parent = this;
+        text.index = index;
+        if (children.compareAndSet(index, child, text)) {
+            return text;
+        }
+        // Another thread created the node first; use it so that every caller
+        // sees the same node.
+        return (LeafNodeImpl) children.get(index);
+    }
+
+    /**
+     * Returns the child at {@code index} if it is an element, or null. This
+     * never materializes text.
+     */
+    final ElementImpl elementAt(int index) {
+        Object child = children.get(index);
+        return child instanceof ElementImpl ? (ElementImpl) child : null;
+    }
+
+    /**
+     * Appends {@code data} to the last child if it is a text node, or else
+     * appends a text child without creating its {@link TextImpl} until the
+     * node is first requested. Documents built by a parser are often only
+     * navigated by element, or read with {@link #getTextContent}, which
+     * never needs the text nodes themselves.
+     */
+    public void appendOrMergeText(String data) {
+        if (childCount != 0) {
+            Object last = children.get(childCount - 1);
+            if (last instanceof String) {
+                children.set(childCount - 1, (String) last + data);
+                return;
+            }
+            if (last instanceof TextImpl && ((TextImpl) last).getNodeType() == Node.TEXT_NODE) {
+                ((TextImpl) last).appendData(data);
+                return;
+            }
+        }
+        ensureCapacity(childCount + 1);
+        children.set(childCount++, data);
+    }
+
+    private void ensureCapacity(int minimum) {
+        int length = children.length();
+        if (minimum > length) {
+            // Most elements have few children, so start small.
+            int newLength = Math.max(minimum, length < 4 ? 4 : length * 2);
+            AtomicReferenceArray<Object> newChildren = new AtomicReferenceArray<Object>(newLength);
+            for (int i = 0; i < childCount; i++) {
+                newChildren.set(i, children.get(i));
+            }
+            children = newChildren;
+        }
+    }
+
     public Node appendChild(Node newChild) throws DOMException {
-        return insertChildAt(newChild, children.size());
+        return insertChildAt(newChild, childCount);
     }
 
     public NodeList getChildNodes() {
         NodeListImpl list = new NodeListImpl();
 
-        for (NodeImpl node : children) {
-            list.add(node);
+        for (int i = 0; i < childCount; i++) {
+            list.add(childAt(i));
         }
 
         return list;
     }
 
     public Node getFirstChild() {
-        return (!children.isEmpty() ? children.get(0) : null);
+        return (childCount != 0 ? childAt(0) : null);
     }
 
     public Node getLastChild() {
-        return (!children.isEmpty() ? children.get(children.size() - 1) : null);
+        return (childCount != 0 ? childAt(childCount - 1) : null);
     }
 
     public Node getNextSibling() {
-        if (parent == null || index + 1 >= parent.children.size()) {
+        if (parent == null || index + 1 >= parent.childCount) {
             return null;
         }
 
-        return parent.children.get(index + 1);
+        return parent.childAt(index + 1);
     }
 
     public boolean hasChildNodes() {
-        return children.size() != 0;
+        return childCount != 0;
     }
 
     public Node insertBefore(Node newChild, Node refChild) throws DOMException {
@@ -122,14 +201,23 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
         }
 
         if (toInsert.parent != null) {
-            int oldIndex = toInsert.index;
-            toInsert.parent.children.remove(oldIndex);
-            toInsert.parent.refreshIndices(oldIndex);
+            toInsert.parent.removeChildAt(toInsert.index);
         }
 
-        children.add(index, toInsert);
+        if (index < 0 || index > childCount) {
+            throw new IndexOutOfBoundsException("index=" + index + " childCount=" + childCount);
+        }
+        ensureCapacity(childCount + 1);
+        for (int i = childCount; i > index; i--) {
+            children.set(i, children.get(i - 1));
+        }
+        children.set(index, toInsert);
+        childCount++;
         toInsert.parent = this;
         refreshIndices(index);
+        if (toInsert instanceof ElementImpl) {
+            invalidateElementIndex();
+        }
 
         return newChild;
     }
@@ -166,11 +254,38 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
     }
 
     private void refreshIndices(int fromIndex) {
-        for (int i = fromIndex; i < children.size(); i++) {
-            children.get(i).index = i;
+        for (int i = fromIndex; i < childCount; i++) {
+            Object child = children.get(i);
+            if (child instanceof LeafNodeImpl) {
+                ((LeafNodeImpl) child).index = i;
+            }
         }
     }
 
+    /**
+     * Invalidates the element index of the document that contains this node.
+     */
+    private void invalidateElementIndex() {
+        DocumentImpl owner = (this instanceof DocumentImpl) ? (DocumentImpl) this : document;
+        if (owner != null) {
+            owner.elementsChanged();
+        }
+    }
+
+    /**
+     * Detaches the child at {@code index} and closes the gap.
+     */
+    private void removeChildAt(int index) {
+        if (children.get(index) instanceof ElementImpl) {
+            invalidateElementIndex();
+        }
+        for (int i = index; i < childCount - 1; i++) {
+            children.set(i, children.get(i + 1));
+        }
+        children.set(--childCount, null);
+        refreshIndices(index);
+    }
+
     public Node removeChild(Node oldChild) throws DOMException {
         LeafNodeImpl oldChildImpl = (LeafNodeImpl) oldChild;
 
@@ -181,10 +296,8 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
             throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR, null);
         }
 
-        int index = oldChildImpl.index;
-        children.remove(index);
+        removeChildAt(oldChildImpl.index);
         oldChildImpl.parent = null;
-        refreshIndices(index);
 
         return oldChild;
     }
@@ -201,14 +314,17 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
     }
 
     public String getTextContent() throws DOMException {
-        Node child = getFirstChild();
-        if (child == null) {
+        if (childCount == 0) {
             return "";
         }
 
-        Node next = child.getNextSibling();
-        if (next == null) {
-            return hasTextContent(child) ? child.getTextContent() : "";
+        if (childCount == 1) {
+            Object child = children.get(0);
+            if (child instanceof String) {
+                return (String) child;
+            }
+            Node node = (Node) child;
+            return hasTextContent(node) ? node.getTextContent() : "";
         }
 
         StringBuilder buf = new StringBuilder();
@@ -217,12 +333,13 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
     }
 
     void getTextContent(StringBuilder buf) throws DOMException {
-        Node child = getFirstChild();
-        while (child != null) {
-            if (hasTextContent(child)) {
+        for (int i = 0; i < childCount; i++) {
+            Object child = children.get(i);
+            if (child instanceof String) {
+                buf.append((String) child);
+            } else if (hasTextContent((Node) child)) {
                 ((NodeImpl) child).getTextContent(buf);
             }
-            child = child.getNextSibling();
         }
     }
 
@@ -233,9 +350,9 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
     }
 
     void getElementsByTagName(NodeListImpl out, String name) {
-        for (NodeImpl node : children) {
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                ElementImpl element = (ElementImpl) node;
+        for (int i = 0; i < childCount; i++) {
+            ElementImpl element = elementAt(i);
+            if (element != null) {
                 if (matchesNameOrWildcard(name, element.getNodeName())) {
                     out.add(element);
                 }
@@ -245,9 +362,9 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
     }
 
     void getElementsByTagNameNS(NodeListImpl out, String namespaceURI, String localName) {
-        for (NodeImpl node : children) {
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                ElementImpl element = (ElementImpl) node;
+        for (int i = 0; i < childCount; i++) {
+            ElementImpl element = elementAt(i);
+            if (element != null) {
                 if (matchesNameOrWildcard(namespaceURI, element.getNamespaceURI())
                         && matchesNameOrWildcard(localName, element.getLocalName())) {
                     out.add(element);
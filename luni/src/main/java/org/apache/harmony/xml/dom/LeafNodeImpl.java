@@ -43,11 +43,11 @@ public abstract class LeafNodeImpl extends NodeImpl {
     }
 
     public Node getNextSibling() {
-        if (parent == null || index + 1 >= parent.children.size()) {
+        if (parent == null || index + 1 >= parent.childCount) {
             return null;
         }
 
-        return parent.children.get(index + 1);
+        return parent.childAt(index + 1);
     }
 
     public Node getParentNode() {
@@ -59,7 +59,7 @@ public abstract class LeafNodeImpl extends NodeImpl {
             return null;
         }
 
-        return parent.children.get(index - 1);
+        return parent.childAt(index - 1);
     }
 
     boolean isParentOf(Node node) {
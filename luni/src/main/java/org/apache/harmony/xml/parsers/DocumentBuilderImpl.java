@@ -25,6 +25,7 @@ import org.apache.harmony.xml.dom.CDATASectionImpl;
 import org.apache.harmony.xml.dom.DOMImplementationImpl;
 import org.apache.harmony.xml.dom.DocumentImpl;
 import org.apache.harmony.xml.dom.DocumentTypeImpl;
+import org.apache.harmony.xml.dom.ElementImpl;
 import org.apache.harmony.xml.dom.TextImpl;
 import org.kxml2.io.KXmlParser;
 import org.w3c.dom.Attr;
@@ -58,6 +59,13 @@ class DocumentBuilderImpl extends DocumentBuilder {
     private boolean namespaceAware;
     // adding a new field? don't forget to update reset().
 
+    /**
+     * The text run being collected for the current element, so that a run
+     * split across many tokens, such as text with entity references, is
+     * stored as one String. Empty outside of parse().
+     */
+    private final StringBuilder pendingText = new StringBuilder();
+
     @Override public void reset() {
         coalescing = false;
         entityResolver = null;
@@ -152,6 +160,9 @@ class DocumentBuilderImpl extends DocumentBuilder {
             throw newEx;
         } finally {
             IoUtils.closeQuietly(parser);
+            // Don't keep a large document's text alive.
+            pendingText.setLength(0);
+            pendingText.trimToSize();
         }
 
         return document;
@@ -198,6 +209,7 @@ class DocumentBuilderImpl extends DocumentBuilder {
                 String target = (dot != -1 ? text.substring(0, dot) : text);
                 String data = (dot != -1 ? text.substring(dot + 1) : "");
 
+                flushText(node);
                 node.appendChild(document.createProcessingInstruction(target,
                         data));
             } else if (token == XmlPullParser.DOCDECL) {
@@ -212,6 +224,7 @@ class DocumentBuilderImpl extends DocumentBuilder {
                  * create a node if the client wants to see comments at all.
                  */
                 if (!ignoreComments) {
+                    flushText(node);
                     node.appendChild(document.createComment(parser.getText()));
                 }
             } else if (token == XmlPullParser.IGNORABLE_WHITESPACE) {
@@ -246,6 +259,7 @@ class DocumentBuilderImpl extends DocumentBuilder {
                 if (resolved != null) {
                     appendText(document, node, token, resolved);
                 } else {
+                    flushText(node);
                     node.appendChild(document.createEntityReference(entity));
                 }
             } else if (token == XmlPullParser.START_TAG) {
@@ -268,6 +282,7 @@ class DocumentBuilderImpl extends DocumentBuilder {
                     }
 
                     // Create element node and wire it correctly
+                    flushText(node);
                     Element element = document.createElementNS(namespace, name);
                     element.setPrefix(prefix);
                     node.appendChild(element);
@@ -302,6 +317,7 @@ class DocumentBuilderImpl extends DocumentBuilder {
                     String name = parser.getName();
 
                     // Create element node and wire it correctly
+                    flushText(node);
                     Element element = document.createElement(name);
                     node.appendChild(element);
 
@@ -327,6 +343,7 @@ class DocumentBuilderImpl extends DocumentBuilder {
 
             token = parser.nextToken();
         }
+        flushText(node);
     }
 
     /**
@@ -338,6 +355,14 @@ class DocumentBuilderImpl extends DocumentBuilder {
         if (text.isEmpty()) {
             return;
         }
+        // Collect the run, and create its node only when it's asked for.
+        // When coalescing, a CDATA section after text joins the text.
+        if (parent instanceof ElementImpl && (token != XmlPullParser.CDSECT
+                || (coalescing && pendingText.length() != 0))) {
+            pendingText.append(text);
+            return;
+        }
+        flushText(parent);
         // Merge with any previous text node if possible.
         if (coalescing || token != XmlPullParser.CDSECT) {
             Node lastChild = parent.getLastChild();
@@ -353,6 +378,17 @@ class DocumentBuilderImpl extends DocumentBuilder {
                 : new TextImpl(document, text));
     }
 
+    /**
+     * Ends the text run being collected for {@code parent}, if any, and adds
+     * it to {@code parent}.
+     */
+    private void flushText(Node parent) {
+        if (pendingText.length() != 0) {
+            ((ElementImpl) parent).appendOrMergeText(pendingText.toString());
+            pendingText.setLength(0);
+        }
+    }
+
     @Override
     public void setEntityResolver(EntityResolver resolver) {
         entityResolver = resolver;
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.internal;
+
+import junit.framework.TestCase;
+
+public final class ConcurrentStringPoolTest extends TestCase {
+
+    public void testGet() {
+        ConcurrentStringPool pool = new ConcurrentStringPool(16);
+        String bcd = pool.get(new char[] { 'a', 'b', 'c', 'd', 'e' }, 1, 3);
+        assertEquals("bcd", bcd);
+        assertSame(bcd, pool.get(new char[] { 'a', 'b', 'c', 'd', 'e' }, 1, 3));
+    }
+
+    public void testHashCollision() {
+        ConcurrentStringPool pool = new ConcurrentStringPool(16);
+        char[] a = { (char) 1, (char) 0 };
+        char[] b = { (char) 0, (char) 31 };
+        assertEquals(new String(a).hashCode(), new String(b).hashCode());
+
+        String aString = pool.get(a, 0, 2);
+        assertEquals(new String(a), aString);
+        String bString = pool.get(b, 0, 2);
+        assertEquals(new String(b), bString);
+        // unlike StringPool, colliding strings can share a set
+        assertSame(aString, pool.get(a, 0, 2));
+        assertSame(bString, pool.get(b, 0, 2));
+    }
+
+    public void testCapacityIsRoundedUp() {
+        assertEquals(4, new ConcurrentStringPool(1).capacity());
+        assertEquals(8, new ConcurrentStringPool(5).capacity());
+        assertEquals(2048, new ConcurrentStringPool(2048).capacity());
+    }
+
+    public void testRecentlyUsedStringGetsSecondChance() {
+        // a single set of 4 slots
+        ConcurrentStringPool pool = new ConcurrentStringPool(4);
+        String a = get(pool, "a");
+        String b = get(pool, "b");
+        String c = get(pool, "c");
+        String d = get(pool, "d");
+        assertSame(a, get(pool, "a"));
+        get(pool, "e");
+
+        assertSame(a, get(pool, "a"));
+        assertSame(c, get(pool, "c"));
+        assertSame(d, get(pool, "d"));
+        assertNotSame(b, get(pool, "b"));
+    }
+
+    public void testBounded() {
+        ConcurrentStringPool pool = new ConcurrentStringPool(4);
+        String first = get(pool, "0");
+        for (int i = 1; i < 100; i++) {
+            get(pool, Integer.toString(i));
+        }
+        assertNotSame(first, get(pool, "0"));
+    }
+
+    public void testConcurrentGets() throws Exception {
+        final ConcurrentStringPool pool = new ConcurrentStringPool(16);
+        Thread[] threads = new Thread[4];
+        final Throwable[] failure = new Throwable[1];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override public void run() {
+                    try {
+                        for (int j = 0; j < 10000; j++) {
+                            String expected = "name" + (j % 64);
+                            assertEquals(expected, get(pool, expected));
+                        }
+                    } catch (Throwable t) {
+                        failure[0] = t;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure[0]);
+    }
+
+    private static String get(ConcurrentStringPool pool, String s) {
+        char[] chars = s.toCharArray();
+        return pool.get(chars, 0, chars.length);
+    }
+}
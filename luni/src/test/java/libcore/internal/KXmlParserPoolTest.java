@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.internal;
+
+import java.io.StringReader;
+import junit.framework.TestCase;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+public final class KXmlParserPoolTest extends TestCase {
+
+    public void testObtainReusesRecycledParser() throws Exception {
+        KXmlParser parser = KXmlParserPool.obtain();
+        KXmlParserPool.recycle(parser);
+        assertSame(parser, KXmlParserPool.obtain());
+        assertNotSame(parser, KXmlParserPool.obtain());
+    }
+
+    public void testRecycledParserIsReset() throws Exception {
+        KXmlParser parser = KXmlParserPool.obtain();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new StringReader("<foo/>"));
+        assertEquals(XmlPullParser.START_TAG, parser.next());
+        KXmlParserPool.recycle(parser);
+
+        assertSame(parser, KXmlParserPool.obtain());
+        assertFalse(parser.getFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES));
+        assertEquals(XmlPullParser.START_DOCUMENT, parser.getEventType());
+    }
+
+    public void testRecycledParserIsNotSharedWithOtherThreads() throws Exception {
+        final KXmlParser parser = KXmlParserPool.obtain();
+        KXmlParserPool.recycle(parser);
+        final KXmlParser[] obtained = new KXmlParser[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override public void run() {
+                obtained[0] = KXmlParserPool.obtain();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotNull(obtained[0]);
+        assertNotSame(parser, obtained[0]);
+        assertSame(parser, KXmlParserPool.obtain());
+    }
+}
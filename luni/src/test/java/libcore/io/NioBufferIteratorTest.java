@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.io;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class NioBufferIteratorTest extends TestCase {
+    private static final short[] SHORTS = { 1, -2, 0x1234, Short.MIN_VALUE, Short.MAX_VALUE };
+    private static final long[] LONGS = { 1L, -2L, 0x123456789abcdefL, Long.MIN_VALUE };
+    private static final float[] FLOATS = { 1.5f, -2.25f, Float.MAX_VALUE, Float.NaN };
+    private static final double[] DOUBLES = { 1.5, -2.25, Double.MIN_VALUE, Math.PI };
+
+    private File file;
+    private MemoryMappedFile mappedFile;
+
+    @Override protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("NioBufferIteratorTest", null);
+        // A leading byte so that every read below is unaligned.
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeByte(0x7f);
+        for (short value : SHORTS) {
+            out.writeShort(value);
+        }
+        for (long value : LONGS) {
+            out.writeLong(value);
+        }
+        for (float value : FLOATS) {
+            out.writeFloat(value);
+        }
+        for (double value : DOUBLES) {
+            out.writeDouble(value);
+        }
+        out.close();
+        mappedFile = MemoryMappedFile.mmapRO(file.getPath());
+    }
+
+    @Override protected void tearDown() throws Exception {
+        mappedFile.close();
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testBulkReadsBigEndian() throws Exception {
+        BufferIterator it = mappedFile.bigEndianIterator();
+        assertEquals(0x7f, it.readByte());
+
+        short[] shorts = new short[SHORTS.length + 1];
+        it.readShortArray(shorts, 1, SHORTS.length);
+        assertTrue(Arrays.equals(SHORTS, Arrays.copyOfRange(shorts, 1, shorts.length)));
+
+        long[] longs = new long[LONGS.length];
+        it.readLongArray(longs, 0, LONGS.length);
+        assertTrue(Arrays.equals(LONGS, longs));
+
+        float[] floats = new float[FLOATS.length];
+        it.readFloatArray(floats, 0, FLOATS.length);
+        assertTrue(Arrays.equals(FLOATS, floats));
+
+        double[] doubles = new double[DOUBLES.length];
+        it.readDoubleArray(doubles, 0, DOUBLES.length);
+        assertTrue(Arrays.equals(DOUBLES, doubles));
+    }
+
+    public void testBulkReadsMatchSingleReads() throws Exception {
+        BufferIterator bulk = mappedFile.littleEndianIterator();
+        BufferIterator single = mappedFile.littleEndianIterator();
+        bulk.seek(1);
+        single.seek(1);
+
+        short[] shorts = new short[SHORTS.length];
+        bulk.readShortArray(shorts, 0, shorts.length);
+        for (int i = 0; i < shorts.length; ++i) {
+            assertEquals(single.readShort(), shorts[i]);
+            assertEquals(Short.reverseBytes(SHORTS[i]), shorts[i]);
+        }
+
+        long[] longs = new long[LONGS.length];
+        bulk.readLongArray(longs, 0, longs.length);
+        for (int i = 0; i < longs.length; ++i) {
+            assertEquals(Long.reverseBytes(LONGS[i]), longs[i]);
+        }
+    }
+}
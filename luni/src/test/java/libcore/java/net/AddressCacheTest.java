@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.net;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import junit.framework.TestCase;
+
+/**
+ * Tests java.net.AddressCache, which is package-private, through reflection.
+ */
+public final class AddressCacheTest extends TestCase {
+    private static final int NET_ID = 0;
+    private static final long LONG_TTL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private static final InetAddress[] ADDRESSES = { InetAddress.getLoopbackAddress() };
+
+    /** The time the cache sees, in nanoseconds. Tests advance it instead of sleeping. */
+    private final AtomicLong nanoTime = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    private AddressCache cache;
+
+    @Override protected void setUp() throws Exception {
+        super.setUp();
+        cache = new AddressCache(new LongSupplier() {
+            @Override public long getAsLong() {
+                return nanoTime.get();
+            }
+        });
+    }
+
+    private void advance(long nanos) {
+        nanoTime.addAndGet(nanos);
+    }
+
+    public void testPositiveEntry() throws Exception {
+        assertNull(cache.get("example.com"));
+        cache.put("example.com", ADDRESSES, LONG_TTL_NANOS);
+        assertSame(ADDRESSES, cache.get("example.com"));
+        assertEquals(1, cache.count("hitCount"));
+        assertEquals(1, cache.count("missCount"));
+        assertEquals(0, cache.count("negativeHitCount"));
+    }
+
+    public void testNegativeEntry() throws Exception {
+        cache.putUnknownHost("example.com", "unknown", LONG_TTL_NANOS);
+        assertEquals("unknown", cache.get("example.com"));
+        assertEquals(0, cache.count("hitCount"));
+        assertEquals(0, cache.count("missCount"));
+        assertEquals(1, cache.count("negativeHitCount"));
+    }
+
+    public void testNetIdsAreSeparate() throws Exception {
+        cache.put("example.com", ADDRESSES, LONG_TTL_NANOS);
+        assertNull(cache.get("example.com", NET_ID + 1));
+    }
+
+    public void testPositiveEntryReplacesNegativeEntry() throws Exception {
+        cache.putUnknownHost("example.com", "unknown", LONG_TTL_NANOS);
+        cache.put("example.com", ADDRESSES, LONG_TTL_NANOS);
+        assertSame(ADDRESSES, cache.get("example.com"));
+    }
+
+    public void testNegativeEntryReplacesPositiveEntry() throws Exception {
+        cache.put("example.com", ADDRESSES, LONG_TTL_NANOS);
+        cache.putUnknownHost("example.com", "unknown", LONG_TTL_NANOS);
+        assertEquals("unknown", cache.get("example.com"));
+    }
+
+    public void testEntryExpires() throws Exception {
+        cache.put("example.com", ADDRESSES, TimeUnit.MILLISECONDS.toNanos(1));
+        cache.putUnknownHost("unknown.example.com", "unknown", TimeUnit.MILLISECONDS.toNanos(1));
+        advance(TimeUnit.MILLISECONDS.toNanos(1) + 1);
+        assertNull(cache.get("example.com"));
+        assertNull(cache.get("unknown.example.com"));
+        assertEquals(2, cache.count("expirationCount"));
+        assertEquals(2, cache.count("missCount"));
+        assertEquals(0, cache.count("hitCount"));
+        assertEquals(0, cache.count("negativeHitCount"));
+    }
+
+    public void testEntriesHaveTheirOwnTtl() throws Exception {
+        cache.put("short.example.com", ADDRESSES, TimeUnit.MILLISECONDS.toNanos(1));
+        cache.put("long.example.com", ADDRESSES, LONG_TTL_NANOS);
+        advance(TimeUnit.MILLISECONDS.toNanos(1) + 1);
+        assertNull(cache.get("short.example.com"));
+        assertSame(ADDRESSES, cache.get("long.example.com"));
+    }
+
+    public void testRefreshAndExpiryBoundaries() throws Exception {
+        final long ttlNanos = TimeUnit.SECONDS.toNanos(2);
+        cache.put("example.com", ADDRESSES, ttlNanos);
+        advance(ttlNanos * 3 / 4);
+        assertSame(ADDRESSES, cache.get("example.com"));
+        advance(1);
+        assertNull(cache.get("example.com"));
+        advance(ttlNanos / 4 - 1);
+        assertSame(ADDRESSES, cache.get("example.com"));
+        advance(1);
+        assertNull(cache.get("example.com"));
+        assertEquals(1, cache.count("expirationCount"));
+    }
+
+    public void testClear() throws Exception {
+        cache.put("example.com", ADDRESSES, LONG_TTL_NANOS);
+        cache.putUnknownHost("unknown.example.com", "unknown", LONG_TTL_NANOS);
+        cache.clear();
+        assertNull(cache.get("example.com"));
+        assertNull(cache.get("unknown.example.com"));
+    }
+
+    /**
+     * Once an entry is in the last quarter of its lifetime, exactly one caller is asked to
+     * refresh it and everyone else keeps getting the cached value.
+     */
+    public void testRefreshAheadMissesForExactlyOneCaller() throws Exception {
+        final long ttlNanos = TimeUnit.SECONDS.toNanos(2);
+        cache.put("example.com", ADDRESSES, ttlNanos);
+        advance(ttlNanos * 3 / 4 + 1);
+
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int i = 0; i < threadCount; ++i) {
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override public Object call() throws Exception {
+                    start.await();
+                    return cache.get("example.com");
+                }
+            }));
+        }
+        start.countDown();
+        int misses = 0;
+        for (Future<Object> future : futures) {
+            Object result = future.get();
+            if (result == null) {
+                misses++;
+            } else {
+                assertSame(ADDRESSES, result);
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, misses);
+        assertEquals(1, cache.count("missCount"));
+        assertEquals(threadCount - 1, cache.count("hitCount"));
+        assertEquals(0, cache.count("expirationCount"));
+    }
+
+    /**
+     * The caller asked to refresh a host's entry gets a miss, never an older negative entry
+     * for the host.
+     */
+    public void testRefreshAheadDoesNotReturnOlderNegativeEntry() throws Exception {
+        final long ttlNanos = TimeUnit.SECONDS.toNanos(2);
+        cache.putUnknownHost("example.com", "unknown", LONG_TTL_NANOS);
+        cache.put("example.com", ADDRESSES, ttlNanos);
+        advance(ttlNanos * 3 / 4 + 1);
+        assertNull(cache.get("example.com"));
+        assertSame(ADDRESSES, cache.get("example.com"));
+        assertEquals(0, cache.count("negativeHitCount"));
+    }
+
+    public void testRefreshAheadOfNegativeEntry() throws Exception {
+        final long ttlNanos = TimeUnit.SECONDS.toNanos(2);
+        cache.putUnknownHost("example.com", "unknown", ttlNanos);
+        advance(ttlNanos * 3 / 4 + 1);
+        assertNull(cache.get("example.com"));
+        assertEquals("unknown", cache.get("example.com"));
+        assertEquals(1, cache.count("missCount"));
+        assertEquals(1, cache.count("negativeHitCount"));
+    }
+
+    public void testPeek() throws Exception {
+        assertNull(cache.peek("example.com"));
+        cache.put("example.com", ADDRESSES, LONG_TTL_NANOS);
+        cache.putUnknownHost("unknown.example.com", "unknown", LONG_TTL_NANOS);
+        assertSame(ADDRESSES, cache.peek("example.com"));
+        assertEquals("unknown", cache.peek("unknown.example.com"));
+        assertEquals(0, cache.count("hitCount"));
+        assertEquals(0, cache.count("missCount"));
+        assertEquals(0, cache.count("negativeHitCount"));
+    }
+
+    /**
+     * peek() ignores entries that are due to be refreshed, and leaves the refresh to get().
+     */
+    public void testPeekDoesNotClaimRefresh() throws Exception {
+        final long ttlNanos = TimeUnit.SECONDS.toNanos(2);
+        cache.put("example.com", ADDRESSES, ttlNanos);
+        advance(ttlNanos * 3 / 4 + 1);
+        assertNull(cache.peek("example.com"));
+        assertNull(cache.get("example.com"));
+        assertSame(ADDRESSES, cache.get("example.com"));
+    }
+
+    /**
+     * Hosts that hash to the same shard don't evict each other while the cache has room.
+     */
+    public void testHostsInOneShardDontEvictEachOther() throws Exception {
+        List<String> hosts = new ArrayList<String>();
+        for (int i = 0; hosts.size() < 32; ++i) {
+            String host = "host" + i + ".example.com";
+            if (shardOf(host) == 0) {
+                hosts.add(host);
+            }
+        }
+        for (String host : hosts) {
+            cache.put(host, ADDRESSES, LONG_TTL_NANOS);
+        }
+        for (String host : hosts) {
+            assertSame(host, ADDRESSES, cache.get(host));
+        }
+    }
+
+    /** Returns the shard AddressCache keeps 'host' in, for any power of two up to 4 shards. */
+    private static int shardOf(String host) {
+        int h = 17;
+        h = 31 * h + NET_ID;
+        h = 31 * h + host.hashCode();
+        h ^= (h >>> 16);
+        return h & 3;
+    }
+
+    /**
+     * Calls the methods of a java.net.AddressCache.
+     */
+    private static final class AddressCache {
+        private final Object instance;
+        private final Class<?> c;
+
+        AddressCache(LongSupplier nanoTime) throws Exception {
+            c = Class.forName("java.net.AddressCache");
+            Constructor<?> constructor = c.getDeclaredConstructor(LongSupplier.class);
+            constructor.setAccessible(true);
+            instance = constructor.newInstance(nanoTime);
+        }
+
+        Object get(String hostname) throws Exception {
+            return get(hostname, NET_ID);
+        }
+
+        Object get(String hostname, int netId) throws Exception {
+            return invoke("get", new Class<?>[] { String.class, int.class }, hostname, netId);
+        }
+
+        Object peek(String hostname) throws Exception {
+            return invoke("peek", new Class<?>[] { String.class, int.class }, hostname, NET_ID);
+        }
+
+        void put(String hostname, InetAddress[] addresses, long ttlNanos) throws Exception {
+            invoke("put", new Class<?>[] { String.class, int.class, InetAddress[].class,
+                    long.class }, hostname, NET_ID, addresses, ttlNanos);
+        }
+
+        void putUnknownHost(String hostname, String detailMessage, long ttlNanos)
+                throws Exception {
+            invoke("putUnknownHost", new Class<?>[] { String.class, int.class, String.class,
+                    long.class }, hostname, NET_ID, detailMessage, ttlNanos);
+        }
+
+        void clear() throws Exception {
+            invoke("clear", new Class<?>[0]);
+        }
+
+        long count(String name) throws Exception {
+            return (Long) invoke(name, new Class<?>[0]);
+        }
+
+        private Object invoke(String name, Class<?>[] parameterTypes, Object... args)
+                throws Exception {
+            Method method = c.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            try {
+                return method.invoke(instance, args);
+            } catch (InvocationTargetException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+}
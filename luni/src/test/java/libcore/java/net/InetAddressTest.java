@@ -17,6 +17,9 @@
 package libcore.java.net;
 
 import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
@@ -25,9 +28,17 @@ import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import libcore.util.SerializationTester;
 
 public class InetAddressTest extends junit.framework.TestCase {
@@ -428,6 +439,155 @@ public class InetAddressTest extends junit.framework.TestCase {
         assertEquals("localhost", getHostStringWithoutReverseDns(Inet4Address.LOOPBACK));
     }
 
+    /**
+     * Concurrent lookups of a host that is already being looked up wait for that lookup's
+     * result rather than resolving the host themselves.
+     */
+    public void test_getAllByName_sharesPendingLookup() throws Exception {
+        String host = "pending-lookup.invalid";
+        InetAddress address = InetAddress.getByAddress(host, new byte[] { 10, 0, 0, 1 });
+        List<Future<InetAddress[]>> futures = lookUpWhilePending(host, 4,
+                new InetAddress[] { address });
+        for (Future<InetAddress[]> future : futures) {
+            InetAddress[] result = future.get();
+            assertEquals(1, result.length);
+            assertSame(address, result[0]);
+        }
+    }
+
+    public void test_getAllByName_sharesPendingUnknownHost() throws Exception {
+        String host = "pending-lookup.invalid";
+        UnknownHostException failure = new UnknownHostException("pending lookup failed");
+        List<Future<InetAddress[]>> futures = lookUpWhilePending(host, 4, failure);
+        for (Future<InetAddress[]> future : futures) {
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException expected) {
+                // Each waiter gets its own exception, caused by the lookup's.
+                UnknownHostException e = (UnknownHostException) expected.getCause();
+                assertNotSame(failure, e);
+                assertSame(failure, e.getCause());
+                assertEquals("pending lookup failed", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Waiters get the lookup's own RuntimeException or Error, so that they can catch the same
+     * type as the thread that did the lookup.
+     */
+    public void test_getAllByName_sharesPendingLookupFailure() throws Exception {
+        String host = "pending-lookup.invalid";
+        Throwable[] failures = {
+            new SecurityException("no permission"),
+            new IllegalStateException("bad state"),
+            new OutOfMemoryError("out of memory"),
+        };
+        for (Throwable failure : failures) {
+            for (Future<InetAddress[]> future : lookUpWhilePending(host, 4, failure)) {
+                try {
+                    future.get();
+                    fail();
+                } catch (ExecutionException expected) {
+                    assertSame(failure, expected.getCause());
+                }
+            }
+        }
+    }
+
+    public void test_getAllByName_removesPendingLookup() throws Exception {
+        InetAddress.clearDnsCache();
+        InetAddress.getAllByName("localhost");
+        assertFalse(pendingLookups().containsKey(addressCacheKey("localhost")));
+
+        try {
+            InetAddress.getAllByName("does-not-exist.invalid");
+            fail();
+        } catch (UnknownHostException expected) {
+        }
+        assertFalse(pendingLookups().containsKey(addressCacheKey("does-not-exist.invalid")));
+    }
+
+    /**
+     * Looks up 'host' on 'threadCount' threads while a lookup of it is pending, then completes
+     * the pending lookup with 'result'.
+     */
+    private static List<Future<InetAddress[]>> lookUpWhilePending(final String host,
+            int threadCount, Object result) throws Exception {
+        InetAddress.clearDnsCache();
+        Object key = addressCacheKey(host);
+        Class<?> pendingLookupClass = Class.forName("java.net.Inet6AddressImpl$PendingLookup");
+        Constructor<?> constructor = pendingLookupClass.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        Object pendingLookup = constructor.newInstance();
+        Map<Object, Object> pendingLookups = pendingLookups();
+        assertNull(pendingLookups.put(key, pendingLookup));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+            List<Future<InetAddress[]>> futures = new ArrayList<Future<InetAddress[]>>();
+            for (int i = 0; i < threadCount; ++i) {
+                futures.add(executor.submit(new Callable<InetAddress[]>() {
+                    @Override public InetAddress[] call() throws Exception {
+                        threads.add(Thread.currentThread());
+                        return InetAddress.getAllByName(host);
+                    }
+                }));
+            }
+            // Wait for every thread to be waiting for the pending lookup.
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!allWaiting(threads, threadCount)) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+
+            Method complete = pendingLookupClass.getDeclaredMethod("complete", Object.class);
+            complete.setAccessible(true);
+            complete.invoke(pendingLookup, result);
+            for (Future<InetAddress[]> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ignored) {
+                }
+            }
+            return futures;
+        } finally {
+            pendingLookups.remove(key);
+            executor.shutdown();
+        }
+    }
+
+    private static boolean allWaiting(List<Thread> threads, int threadCount) {
+        synchronized (threads) {
+            if (threads.size() < threadCount) {
+                return false;
+            }
+            for (Thread thread : threads) {
+                if (thread.getState() != Thread.State.WAITING) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static Object addressCacheKey(String host) throws Exception {
+        Constructor<?> constructor = Class.forName("java.net.AddressCache$AddressCacheKey")
+                .getDeclaredConstructor(String.class, int.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(host, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> pendingLookups() throws Exception {
+        Field field = Class.forName("java.net.Inet6AddressImpl")
+                .getDeclaredField("pendingLookups");
+        field.setAccessible(true);
+        return (Map<Object, Object>) field.get(null);
+    }
+
     private static void assertEquals(
         byte[] expectedAddressBytes, String expectedHostname, InetAddress actual) {
         assertArrayEquals(expectedAddressBytes, actual.getAddress());
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public final class ConcurrentLruCacheTest extends TestCase {
+
+    public void testCreateOnCacheMiss() {
+        ConcurrentLruCache<String, String> cache = newCreatingCache();
+        String created = cache.get("aa");
+        assertEquals("created-aa", created);
+        assertEquals(0, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    public void testNoCreateOnCacheHit() {
+        ConcurrentLruCache<String, String> cache = newCreatingCache();
+        cache.put("aa", "put-aa");
+        assertEquals("put-aa", cache.get("aa"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(0, cache.missCount());
+    }
+
+    public void testMissWithoutCreate() {
+        ConcurrentLruCache<String, String> cache = newCreatingCache();
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.missCount());
+        assertSnapshot(cache);
+    }
+
+    public void testConstructorDoesNotAllowZeroCacheSize() {
+        try {
+            new ConcurrentLruCache<String, String>(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testCannotGetNullKey() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(3);
+        try {
+            cache.get(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    public void testCannotPutNullKey() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(3);
+        try {
+            cache.put(null, "A");
+            fail();
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    public void testCannotPutNullValue() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(3);
+        try {
+            cache.put("a", null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    public void testEvictionWithSingletonCache() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(1);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertSnapshot(cache, "b", "B");
+        assertEquals(1, cache.evictionCount());
+    }
+
+    public void testEntryEvictedWhenFull() {
+        List<String> expectedEvictionLog = new ArrayList<String>();
+        final List<String> evictionLog = new ArrayList<String>();
+        ConcurrentLruCache<String, String> cache = newLoggingCache(3, evictionLog);
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        assertEquals(expectedEvictionLog, evictionLog);
+
+        cache.put("d", "D");
+        expectedEvictionLog.add("a=A");
+        assertEquals(expectedEvictionLog, evictionLog);
+    }
+
+    /**
+     * An entry that was read since the clock hand last passed it survives the
+     * next eviction and the oldest unreferenced entry is evicted instead.
+     */
+    public void testRecentlyReadEntryGetsSecondChance() {
+        final List<String> evictionLog = new ArrayList<String>();
+        ConcurrentLruCache<String, String> cache = newLoggingCache(3, evictionLog);
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        cache.get("a");
+        cache.put("d", "D");
+        assertEquals(Arrays.asList("b=B"), evictionLog);
+        assertSnapshot(cache, "c", "C", "d", "D", "a", "A");
+    }
+
+    /**
+     * Replacing the value for a key doesn't cause an eviction.
+     */
+    public void testPutDoesNotCauseEviction() {
+        final List<String> evictionLog = new ArrayList<String>();
+        ConcurrentLruCache<String, String> cache = newLoggingCache(3, evictionLog);
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        assertEquals("B", cache.put("b", "B2"));
+        assertEquals(Arrays.<String>asList(), evictionLog);
+        assertSnapshot(cache, "a", "A", "b", "B2", "c", "C");
+    }
+
+    public void testEvictAll() {
+        final List<String> evictionLog = new ArrayList<String>();
+        ConcurrentLruCache<String, String> cache = newLoggingCache(10, evictionLog);
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        cache.get("b");
+        cache.evictAll();
+        assertSnapshot(cache);
+        assertEquals(Arrays.asList("a=A", "b=B", "c=C"), evictionLog);
+        assertEquals(3, cache.evictionCount());
+    }
+
+    public void testRemove() {
+        final List<String> evictionLog = new ArrayList<String>();
+        ConcurrentLruCache<String, String> cache = newLoggingCache(2, evictionLog);
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertEquals("A", cache.remove("a"));
+        assertNull(cache.remove("a"));
+        assertSnapshot(cache, "b", "B");
+
+        // The removed entry no longer takes up space.
+        cache.put("c", "C");
+        assertSnapshot(cache, "b", "B", "c", "C");
+        assertEquals(Arrays.<String>asList(), evictionLog);
+    }
+
+    public void testConcurrentGetsStayWithinBounds() throws Exception {
+        final int maxSize = 8;
+        final AtomicInteger evictions = new AtomicInteger();
+        final ConcurrentLruCache<Integer, String> cache =
+                new ConcurrentLruCache<Integer, String>(maxSize) {
+            @Override protected String create(Integer key) {
+                return "v" + key;
+            }
+            @Override protected void entryEvicted(Integer key, String value) {
+                evictions.incrementAndGet();
+            }
+        };
+
+        // Run the workers through futures, so that a failed assertion fails the test.
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < 4; ++i) {
+                final int seed = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override public Void call() {
+                        for (int j = 0; j < 10000; ++j) {
+                            Integer key = (j * 31 + seed) % 32;
+                            assertEquals("v" + key, cache.get(key));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(cache.snapshot().size() <= maxSize);
+        assertEquals(40000, cache.hitCount() + cache.missCount());
+        assertEquals(evictions.get(), cache.evictionCount());
+    }
+
+    private ConcurrentLruCache<String, String> newCreatingCache() {
+        return new ConcurrentLruCache<String, String>(3) {
+            @Override protected String create(String key) {
+                return (key.length() > 1) ? ("created-" + key) : null;
+            }
+        };
+    }
+
+    private ConcurrentLruCache<String, String> newLoggingCache(int maxSize,
+            final List<String> evictionLog) {
+        return new ConcurrentLruCache<String, String>(maxSize) {
+            @Override protected void entryEvicted(String key, String value) {
+                evictionLog.add(key + "=" + value);
+            }
+        };
+    }
+
+    private <T> void assertSnapshot(ConcurrentLruCache<T, T> cache, T... keysAndValues) {
+        List<T> actualKeysAndValues = new ArrayList<T>();
+        for (Map.Entry<T, T> entry : cache.snapshot().entrySet()) {
+            actualKeysAndValues.add(entry.getKey());
+            actualKeysAndValues.add(entry.getValue());
+        }
+
+        // assert using lists because order is important for LRUs
+        assertEquals(Arrays.asList(keysAndValues), actualKeysAndValues);
+    }
+}
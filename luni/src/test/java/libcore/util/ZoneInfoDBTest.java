@@ -19,6 +19,9 @@ package libcore.util;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
 import java.util.TimeZone;
 
 public class ZoneInfoDBTest extends junit.framework.TestCase {
@@ -95,6 +98,54 @@ public class ZoneInfoDBTest extends junit.framework.TestCase {
     assertFalse(first.getRawOffset() == second.getRawOffset());
   }
 
+  // Switching between several zones should hand out equivalent but independent instances.
+  public void testMakeTimeZone_multipleCachedZones() throws Exception {
+    ZoneInfoDB.TzData data = new ZoneInfoDB.TzData(2, TZDATA_IN_ROOT);
+    ZoneInfo london = data.makeTimeZone("Europe/London");
+    ZoneInfo paris = data.makeTimeZone("Europe/Paris");
+    ZoneInfo tokyo = data.makeTimeZone("Asia/Tokyo");
+    assertTrue(london.hasSameRules(data.makeTimeZone("Europe/London")));
+    assertTrue(paris.hasSameRules(data.makeTimeZone("Europe/Paris")));
+    assertTrue(tokyo.hasSameRules(data.makeTimeZone("Asia/Tokyo")));
+
+    paris.setRawOffset(0);
+    assertEquals(3600000, data.makeTimeZone("Europe/Paris").getRawOffset());
+  }
+
+  public void testCacheSizeMustBePositive() throws Exception {
+    try {
+      new ZoneInfoDB.TzData(0, TZDATA_IN_ROOT);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testGetAvailableIDs_rawOffset() throws Exception {
+    ZoneInfoDB.TzData data = new ZoneInfoDB.TzData(TZDATA_IN_ROOT);
+    String[] ids = data.getAvailableIDs(-8 * 3600 * 1000);
+    assertTrue(Arrays.asList(ids).contains("America/Los_Angeles"));
+    for (String id : ids) {
+      assertEquals(-8 * 3600 * 1000, data.makeTimeZone(id).getRawOffset());
+    }
+    String[] sortedIds = ids.clone();
+    Arrays.sort(sortedIds);
+    assertEquals(Arrays.asList(sortedIds), Arrays.asList(ids));
+
+    assertEquals(0, data.getAvailableIDs(12345).length);
+  }
+
+  public void testGetAvailableIDsByRawOffset() throws Exception {
+    ZoneInfoDB.TzData data = new ZoneInfoDB.TzData(TZDATA_IN_ROOT);
+    SortedMap<Integer, String[]> byOffset = data.getAvailableIDsByRawOffset();
+    int total = 0;
+    for (Map.Entry<Integer, String[]> entry : byOffset.entrySet()) {
+      assertEquals(Arrays.asList(data.getAvailableIDs(entry.getKey())),
+          Arrays.asList(entry.getValue()));
+      total += entry.getValue().length;
+    }
+    assertEquals(data.getAvailableIDs().length, total);
+  }
+
   public void testMakeTimeZone_notFound() throws Exception {
     ZoneInfoDB.TzData data = new ZoneInfoDB.TzData(TZDATA_IN_ROOT);
     assertNull(data.makeTimeZone("THIS_TZ_DOES_NOT_EXIST"));
@@ -529,5 +529,29 @@ public class ZoneInfoTest extends TestCase {
       skip(2);
       return value;
     }
+
+    @Override
+    public void readShortArray(short[] dst, int dstOffset, int shortCount) {
+      buffer.asShortBuffer().get(dst, dstOffset, shortCount);
+      skip(2 * shortCount);
+    }
+
+    @Override
+    public void readLongArray(long[] dst, int dstOffset, int longCount) {
+      buffer.asLongBuffer().get(dst, dstOffset, longCount);
+      skip(8 * longCount);
+    }
+
+    @Override
+    public void readFloatArray(float[] dst, int dstOffset, int floatCount) {
+      buffer.asFloatBuffer().get(dst, dstOffset, floatCount);
+      skip(4 * floatCount);
+    }
+
+    @Override
+    public void readDoubleArray(double[] dst, int dstOffset, int doubleCount) {
+      buffer.asDoubleBuffer().get(dst, dstOffset, doubleCount);
+      skip(8 * doubleCount);
+    }
   }
 }
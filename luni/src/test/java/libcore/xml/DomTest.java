@@ -1698,6 +1698,251 @@ public class DomTest extends TestCase {
         }
     }
 
+    public void testParsedTextNodesAreStable() throws Exception {
+        document = builder.parse(new InputSource(new StringReader(
+                "<a>one<b/>two &amp; three<c x='1' y='2'/>four</a>")));
+        Element a = document.getDocumentElement();
+        assertEquals("onetwo & threefour", a.getTextContent());
+        assertEquals(2, a.getElementsByTagName("*").getLength());
+
+        Node one = a.getFirstChild();
+        assertSame(one, a.getFirstChild());
+        assertSame(one, a.getChildNodes().item(0));
+        assertSame(a, one.getParentNode());
+        assertEquals("b", one.getNextSibling().getNodeName());
+        Node four = a.getLastChild();
+        assertEquals("four", four.getNodeValue());
+        assertEquals("c", four.getPreviousSibling().getNodeName());
+        assertSame(four, four.getPreviousSibling().getNextSibling());
+        assertEquals("two & three", one.getNextSibling().getNextSibling().getNodeValue());
+
+        a.removeChild(one);
+        assertEquals("b", a.getFirstChild().getNodeName());
+        assertEquals("two & threefour", a.getTextContent());
+        a.insertBefore(one, four);
+        assertSame(one, four.getPreviousSibling());
+        assertEquals("two & threeonefour", a.getTextContent());
+    }
+
+    public void testParsedTextIsMergedAroundEntities() throws Exception {
+        document = builder.parse(new InputSource(new StringReader(
+                "<a>x &lt; y &amp; z<![CDATA[w]]>v &gt; u</a>")));
+        NodeList children = document.getDocumentElement().getChildNodes();
+        assertEquals(3, children.getLength());
+        assertEquals(Node.TEXT_NODE, children.item(0).getNodeType());
+        assertEquals("x < y & z", children.item(0).getNodeValue());
+        assertEquals(Node.CDATA_SECTION_NODE, children.item(1).getNodeType());
+        assertEquals("v > u", children.item(2).getNodeValue());
+    }
+
+    /**
+     * Escaped markup, as in an RSS feed, splits one text node into many
+     * tokens. Merging them must take linear time.
+     */
+    public void testParsedTextWithManyEntityReferences() throws Exception {
+        StringBuilder xml = new StringBuilder("<a>");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            xml.append("&lt;p&gt;x &amp; y&lt;/p&gt;");
+            expected.append("<p>x & y</p>");
+        }
+        xml.append("</a>");
+        document = builder.parse(new InputSource(new StringReader(xml.toString())));
+        Element a = document.getDocumentElement();
+        assertEquals(1, a.getChildNodes().getLength());
+        assertEquals(expected.toString(), a.getFirstChild().getNodeValue());
+        assertEquals(expected.toString(), a.getTextContent());
+    }
+
+    public void testCoalescedCdataJoinsParsedText() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setCoalescing(true);
+        document = factory.newDocumentBuilder().parse(new InputSource(new StringReader(
+                "<a>x &amp; <![CDATA[y]]> z<!--c--><![CDATA[w]]></a>")));
+        NodeList children = document.getDocumentElement().getChildNodes();
+        assertEquals(3, children.getLength());
+        assertEquals(Node.TEXT_NODE, children.item(0).getNodeType());
+        assertEquals("x & y z", children.item(0).getNodeValue());
+        assertEquals(Node.CDATA_SECTION_NODE, children.item(2).getNodeType());
+    }
+
+    public void testParsedTextNodesAreStableAcrossThreads() throws Exception {
+        StringBuilder xml = new StringBuilder("<a>");
+        for (int i = 0; i < 1000; i++) {
+            xml.append("text").append(i).append("<b/>");
+        }
+        xml.append("</a>");
+        document = builder.parse(new InputSource(new StringReader(xml.toString())));
+        final Element a = document.getDocumentElement();
+
+        final Node[][] seen = new Node[8][];
+        Thread[] threads = new Thread[seen.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override public void run() {
+                    NodeList children = a.getChildNodes();
+                    seen[thread] = new Node[children.getLength()];
+                    for (int i = 0; i < seen[thread].length; i++) {
+                        seen[thread][i] = children.item(i);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        NodeList children = a.getChildNodes();
+        assertEquals(2000, children.getLength());
+        for (Node[] nodes : seen) {
+            assertEquals(children.getLength(), nodes.length);
+            for (int i = 0; i < nodes.length; i++) {
+                assertSame(children.item(i), nodes[i]);
+            }
+        }
+        assertEquals("text999", children.item(1998).getNodeValue());
+        assertSame(a, children.item(1998).getParentNode());
+    }
+
+    public void testAttributeStorage() throws Exception {
+        Element element = document.createElement("e");
+        assertFalse(element.hasAttributes());
+        for (int i = 0; i < 10; i++) {
+            element.setAttribute("a" + i, "v" + i);
+        }
+        assertEquals(10, element.getAttributes().getLength());
+        element.removeAttribute("a0");
+        element.removeAttributeNode(element.getAttributeNode("a5"));
+        element.getAttributes().removeNamedItem("a9");
+        NamedNodeMap attributes = element.getAttributes();
+        assertEquals(7, attributes.getLength());
+        assertEquals("a1", attributes.item(0).getNodeName());
+        assertEquals("a8", attributes.item(6).getNodeName());
+        assertEquals("v4", element.getAttribute("a4"));
+        assertEquals("", element.getAttribute("a5"));
+    }
+
+    public void testElementIndexMatchesTreeWalk() throws Exception {
+        String walkedAll = names(document.getElementsByTagName("*"));
+        String walkedOptions = names(item.getElementsByTagNameNS("http://addons", "option"));
+        String walkedItemChildren = names(item.getElementsByTagNameNS("*", "*"));
+        Element walkedById = document.getElementById("");
+
+        document.getDomConfig().setParameter(ELEMENT_INDEX, true);
+        assertEquals(Boolean.TRUE, document.getDomConfig().getParameter(ELEMENT_INDEX));
+        useElementIndex();
+        assertEquals(walkedAll, names(document.getElementsByTagName("*")));
+        assertEquals(walkedOptions, names(item.getElementsByTagNameNS("http://addons", "option")));
+        assertEquals(walkedItemChildren, names(item.getElementsByTagNameNS("*", "*")));
+        assertSame(walkedById, document.getElementById(""));
+        assertEquals(option1, item.getElementsByTagName("a:option").item(0));
+        assertEquals(0, name.getElementsByTagName("*").getLength());
+        assertEquals(0, document.getElementsByTagName("missing").getLength());
+    }
+
+    public void testElementIndexTracksMutations() throws Exception {
+        document.getDomConfig().setParameter(ELEMENT_INDEX, true);
+        useElementIndex();
+        assertEquals(1, document.getElementsByTagName("item").getLength());
+        assertNull(document.getElementById("second"));
+
+        Element second = document.createElement("item");
+        second.setAttribute("id", "second");
+        menu.appendChild(second);
+        assertSame(second, document.getElementsByTagName("item").item(1));
+        useElementIndex();
+        NodeList items = document.getElementsByTagName("item");
+        assertEquals(2, items.getLength());
+        assertSame(second, items.item(1));
+        assertSame(second, document.getElementById("second"));
+
+        second.setAttribute("id", "renamed");
+        useElementIndex();
+        assertNull(document.getElementById("second"));
+        assertSame(second, document.getElementById("renamed"));
+
+        Element nested = document.createElement("item");
+        second.appendChild(nested);
+        useElementIndex();
+        assertEquals(1, second.getElementsByTagName("item").getLength());
+        assertEquals(3, document.getElementsByTagName("item").getLength());
+        document.renameNode(nested, null, "other");
+        useElementIndex();
+        assertEquals(0, second.getElementsByTagName("item").getLength());
+        assertSame(nested, second.getElementsByTagName("other").item(0));
+
+        // Detached subtrees are searched by walking them.
+        menu.removeChild(second);
+        useElementIndex();
+        assertEquals(1, document.getElementsByTagName("item").getLength());
+        assertNull(document.getElementById("renamed"));
+        assertSame(nested, second.getElementsByTagName("other").item(0));
+
+        // Lists are snapshots, with or without the index.
+        assertEquals(2, items.getLength());
+    }
+
+    public void testElementIndexTracksIdAttributes() throws Exception {
+        document.getDomConfig().setParameter(ELEMENT_INDEX, true);
+        useElementIndex();
+        assertNull(document.getElementById("Waffles"));
+        name.setAttribute("key", "Waffles");
+        useElementIndex();
+        assertNull(document.getElementById("Waffles"));
+        name.setIdAttribute("key", true);
+        useElementIndex();
+        assertSame(name, document.getElementById("Waffles"));
+        name.getAttributeNode("key").setValue("Pancakes");
+        useElementIndex();
+        assertSame(name, document.getElementById("Pancakes"));
+        name.setIdAttribute("key", false);
+        useElementIndex();
+        assertNull(document.getElementById("Pancakes"));
+    }
+
+    /**
+     * Queries between mutations walk the tree rather than rebuilding the
+     * index, and must see every mutation.
+     */
+    public void testElementIndexMutateThenQuery() throws Exception {
+        document.getDomConfig().setParameter(ELEMENT_INDEX, true);
+        useElementIndex();
+        for (int i = 0; i < 10; i++) {
+            Element added = document.createElement("item");
+            added.setAttribute("id", "added" + i);
+            menu.appendChild(added);
+            assertEquals(2, document.getElementsByTagName("item").getLength());
+            assertSame(added, document.getElementById("added" + i));
+            menu.removeChild(added);
+            assertEquals(1, document.getElementsByTagName("item").getLength());
+            assertNull(document.getElementById("added" + i));
+        }
+    }
+
+    /**
+     * Queries the document enough times in a row for it to build its element
+     * index, which it only does once the elements stop changing.
+     */
+    private void useElementIndex() {
+        for (int i = 0; i < 8; i++) {
+            document.getElementsByTagName("*");
+        }
+    }
+
+    private static final String ELEMENT_INDEX = "http://android.com/dom/element-index";
+
+    private static String names(NodeList nodes) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            result.append(nodes.item(i).getNodeName()).append(' ');
+        }
+        return result.toString();
+    }
+
     private class RecordingHandler implements UserDataHandler {
         final Set<String> calls = new HashSet<String>();
         public void handle(short operation, String key, Object data, Node src, Node dst) {
@@ -493,6 +493,66 @@ public class ExpatSaxParserTest extends TestCase {
         }
     }
 
+    public void testFeed() throws Exception {
+        // Feed one byte at a time so that chunks split the multi-byte character.
+        byte[] bytes = "<a>caf\u00e9</a>".getBytes("UTF-8");
+        ExpatReader reader = new ExpatReader();
+        TestCdataHandler handler = new TestCdataHandler();
+        reader.setContentHandler(handler);
+        reader.startFeeding("UTF-8", null, null);
+        for (int i = 0; i < bytes.length; i++) {
+            reader.feed(bytes, i, 1);
+        }
+        reader.finish();
+        assertEquals("caf\u00e9", handler.buffer.toString());
+
+        // The reader can be fed another document.
+        bytes = SNIPPET.getBytes("UTF-8");
+        TestHandler testHandler = new TestHandler();
+        reader.setContentHandler(testHandler);
+        reader.startFeeding(null, null, null);
+        reader.feed(bytes, 0, 10);
+        reader.feed(bytes, 10, bytes.length - 10);
+        reader.finish();
+        validate(testHandler);
+    }
+
+    public void testFeedDispatchesEventsBeforeFinish() throws Exception {
+        ExpatReader reader = new ExpatReader();
+        TestCdataHandler handler = new TestCdataHandler();
+        reader.setContentHandler(handler);
+        reader.startFeeding("UTF-8", null, null);
+        byte[] bytes = "<a>hello<b/>".getBytes("UTF-8");
+        reader.feed(bytes, 0, bytes.length);
+        assertEquals("hello", handler.buffer.toString());
+    }
+
+    public void testFinishIncompleteDocument() throws Exception {
+        ExpatReader reader = new ExpatReader();
+        reader.startFeeding("UTF-8", null, null);
+        byte[] bytes = "<a>".getBytes("UTF-8");
+        reader.feed(bytes, 0, bytes.length);
+        try {
+            reader.finish();
+            fail();
+        } catch (SAXParseException expected) {
+        }
+        try {
+            reader.finish();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testFeedWithoutStartFeeding() throws Exception {
+        ExpatReader reader = new ExpatReader();
+        try {
+            reader.feed(new byte[1], 0, 1);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
     public void testProcessingInstructions() throws IOException, SAXException {
         Reader in = new StringReader(
             "<?bob lee?><a></a>");
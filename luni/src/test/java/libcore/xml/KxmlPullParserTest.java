@@ -16,6 +16,10 @@
 
 package libcore.xml;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import org.kxml2.io.KXmlParser;
 import org.xmlpull.v1.XmlPullParser;
 
@@ -24,4 +28,141 @@ public class KxmlPullParserTest extends PullParserTest {
     @Override XmlPullParser newPullParser() {
         return new KXmlParser();
     }
+
+    public void testReuseDiscardsPreviousDocument() throws Exception {
+        KXmlParser parser = new KXmlParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_DOCDECL, true);
+        parser.setInput(new StringReader(
+                "<!DOCTYPE foo [<!ATTLIST a b CDATA 'c'>]><foo><a/></foo>"));
+        assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        assertEquals(1, parser.getAttributeCount());
+        assertEquals("foo", parser.getRootElementName());
+
+        parser.setInput(new StringReader("<foo><a/></foo>"));
+        assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        assertEquals("a", parser.getName());
+        assertEquals(0, parser.getAttributeCount());
+        assertNull(parser.getRootElementName());
+        assertTrue(parser.getFeature(XmlPullParser.FEATURE_PROCESS_DOCDECL));
+    }
+
+    public void testReuseAfterAbandoningDocumentInsideEntity() throws Exception {
+        KXmlParser parser = new KXmlParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_DOCDECL, true);
+        parser.setInput(new StringReader(
+                "<!DOCTYPE foo [<!ENTITY e '<b>x</b>'>]><foo>&e;</foo>"));
+        assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        assertEquals("b", parser.getName());
+
+        parser.setInput(new StringReader(
+                "<averyveryverylongelementname>text</averyveryverylongelementname>"));
+        assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        assertEquals("averyveryverylongelementname", parser.getName());
+        assertEquals("text", parser.nextText());
+    }
+
+    public void testSharedNamePool() throws Exception {
+        KXmlParser first = new KXmlParser();
+        first.setFeature(KXmlParser.FEATURE_SHARED_NAME_POOL, true);
+        assertTrue(first.getFeature(KXmlParser.FEATURE_SHARED_NAME_POOL));
+        first.setInput(new StringReader("<sharedNamePoolElement sharedNamePoolAttribute='a'/>"));
+        assertEquals(XmlPullParser.START_TAG, first.next());
+
+        KXmlParser second = new KXmlParser();
+        second.setFeature(KXmlParser.FEATURE_SHARED_NAME_POOL, true);
+        second.setInput(new StringReader("<sharedNamePoolElement sharedNamePoolAttribute='b'/>"));
+        assertEquals(XmlPullParser.START_TAG, second.next());
+
+        assertSame(first.getName(), second.getName());
+        assertSame(first.getAttributeName(0), second.getAttributeName(0));
+    }
+
+    public void testResetTurnsOffFeatures() throws Exception {
+        KXmlParser parser = new KXmlParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_DOCDECL, true);
+        parser.setFeature("http://xmlpull.org/v1/doc/features.html#relaxed", true);
+        parser.setFeature(KXmlParser.FEATURE_SHARED_NAME_POOL, true);
+        parser.setProperty("http://xmlpull.org/v1/doc/properties.html#location", "doc.xml");
+        parser.setInput(new StringReader("<foo/>"));
+        assertEquals(XmlPullParser.START_TAG, parser.next());
+
+        parser.reset();
+        assertFalse(parser.getFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES));
+        assertFalse(parser.getFeature(XmlPullParser.FEATURE_PROCESS_DOCDECL));
+        assertFalse(parser.getFeature("http://xmlpull.org/v1/doc/features.html#relaxed"));
+        assertFalse(parser.getFeature(KXmlParser.FEATURE_SHARED_NAME_POOL));
+        assertEquals("doc.xml",
+                parser.getProperty("http://xmlpull.org/v1/doc/properties.html#location"));
+        assertEquals(XmlPullParser.START_DOCUMENT, parser.getEventType());
+
+        parser.setInput(new StringReader("<bar/>"));
+        assertEquals(XmlPullParser.START_TAG, parser.next());
+        assertEquals("bar", parser.getName());
+    }
+
+    public void testUtf8InputStream() throws Exception {
+        // Long enough to span several buffer fills, with multi-byte sequences at both ends.
+        String text = "a\u00e9\u0800\uffe8\ud83d\ude00"
+                + repeat("0123456789", 2000) + "\ud83d\ude00";
+        byte[] bytes = ("<?xml version='1.0' encoding='UTF-8'?><foo>" + text + "</foo>")
+                .getBytes(StandardCharsets.UTF_8);
+        assertEquals(text, readText(new ByteArrayInputStream(bytes)));
+        assertEquals(text, readText(new OneByteInputStream(bytes)));
+    }
+
+    public void testUtf8InputStreamMalformedSequences() throws Exception {
+        byte[] bytes = {
+            '<', 'f', 'o', 'o', '>',
+            (byte) 0x80, // A lone continuation byte.
+            'a',
+            (byte) 0xe2, (byte) 0x82, // A truncated sequence.
+            'b',
+            (byte) 0xc0, (byte) 0xaf, // An overlong encoding of '/'.
+            (byte) 0xed, (byte) 0xa0, (byte) 0x80, // An encoded surrogate.
+            '<', '/', 'f', 'o', 'o', '>',
+        };
+        String expected = "\ufffda\ufffdb\ufffd\ufffd\ufffd\ufffd\ufffd";
+        assertEquals(expected, readText(new ByteArrayInputStream(bytes)));
+        assertEquals(expected, readText(new OneByteInputStream(bytes)));
+    }
+
+    private static String readText(InputStream in) throws Exception {
+        KXmlParser parser = new KXmlParser();
+        parser.setInput(in, "UTF-8");
+        assertEquals(XmlPullParser.START_TAG, parser.nextTag());
+        return parser.nextText();
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(s);
+        }
+        return result.toString();
+    }
+
+    private static class OneByteInputStream extends InputStream {
+        private final byte[] bytes;
+        private int pos;
+
+        OneByteInputStream(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override public int read() {
+            return pos < bytes.length ? bytes[pos++] & 0xff : -1;
+        }
+
+        @Override public int read(byte[] buffer, int offset, int count) {
+            if (pos == bytes.length) {
+                return -1;
+            }
+            buffer[offset] = bytes[pos++];
+            return 1;
+        }
+    }
 }
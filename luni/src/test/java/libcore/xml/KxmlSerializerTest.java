@@ -217,6 +217,30 @@ public final class KxmlSerializerTest extends TestCase {
         assertEquals("a]]>b", text);
     }
 
+    public void testUtf8OutputStream() throws Exception {
+        // Long enough to fill the output buffer several times over.
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append("caf\u00e9 \u20ac\ud83d\ude00 & ");
+        }
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        XmlSerializer serializer = new KXmlSerializer();
+        serializer.setOutput(bytesOut, "UTF-8");
+        serializer.startDocument("UTF-8", null);
+        serializer.startTag(NAMESPACE, "p");
+        serializer.attribute(NAMESPACE, "a", "\u00e9\"<");
+        serializer.text(text.toString());
+        serializer.comment("\ud83d\ude00 \ud83d");
+        serializer.endTag(NAMESPACE, "p");
+        serializer.endDocument();
+
+        String escapedText = text.toString()
+                .replace("\ud83d\ude00", "&#128512;")
+                .replace("& ", "&amp; ");
+        assertXmlEquals("<p a='\u00e9\"&lt;'>" + escapedText + "<!--\ud83d\ude00 ?--></p>",
+                new String(bytesOut.toByteArray(), "UTF-8"));
+    }
+
     private static boolean isValidXmlCodePoint(int c) {
         // http://www.w3.org/TR/REC-xml/#charsets
         return (c >= 0x20 && c <= 0xd7ff) || (c == 0x9) || (c == 0xa) || (c == 0xd) ||
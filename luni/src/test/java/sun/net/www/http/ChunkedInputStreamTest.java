@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sun.net.www.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import junit.framework.TestCase;
+import sun.net.www.MessageHeader;
+
+public class ChunkedInputStreamTest extends TestCase {
+
+    public void testLowerCaseHexSize() throws Exception {
+        assertEquals(repeat('x', 26), read("1a\r\n" + repeat('x', 26) + "\r\n0\r\n\r\n"));
+    }
+
+    public void testUpperCaseHexSize() throws Exception {
+        assertEquals(repeat('x', 26), read("1A\r\n" + repeat('x', 26) + "\r\n0\r\n\r\n"));
+    }
+
+    public void testSeveralChunks() throws Exception {
+        assertEquals("hello, world", read("5\r\nhello\r\n2\r\n, \r\n5\r\nworld\r\n0\r\n\r\n"));
+    }
+
+    public void testLeadingZeros() throws Exception {
+        assertEquals("hello", read("00000005\r\nhello\r\n0\r\n\r\n"));
+    }
+
+    public void testChunkExtensionsAreIgnored() throws Exception {
+        assertEquals("hello", read("5;name=value\r\nhello\r\n0;last\r\n\r\n"));
+    }
+
+    public void testWhitespaceAfterSizeIsIgnored() throws Exception {
+        assertEquals("hello", read("5 \r\nhello\r\n0\r\n\r\n"));
+    }
+
+    public void testTrailers() throws Exception {
+        MessageHeader trailers = new MessageHeader();
+        assertEquals("hello", read("5\r\nhello\r\n0\r\nName: value\r\n\r\n", trailers));
+        assertEquals("value", trailers.findValue("Name"));
+    }
+
+    public void testLargestSize() throws Exception {
+        // There isn't that much data, but the size itself is valid.
+        InputStream in = newChunkedInputStream("7fffffff\r\nhello");
+        byte[] buffer = new byte[5];
+        assertEquals(5, in.read(buffer));
+    }
+
+    public void testSizeOverflow() throws Exception {
+        assertBogusSize("80000000\r\nhello\r\n0\r\n\r\n");
+        assertBogusSize("ffffffffff\r\nhello\r\n0\r\n\r\n");
+        assertBogusSize("100000000000000005\r\nhello\r\n0\r\n\r\n");
+    }
+
+    public void testMalformedSize() throws Exception {
+        assertBogusSize("zz\r\nhello\r\n0\r\n\r\n");
+        assertBogusSize("-5\r\nhello\r\n0\r\n\r\n");
+        assertBogusSize("+5\r\nhello\r\n0\r\n\r\n");
+        assertBogusSize(";ext\r\nhello\r\n0\r\n\r\n");
+        assertBogusSize("\r\nhello\r\n0\r\n\r\n");
+        assertBogusSize(" 5\r\nhello\r\n0\r\n\r\n");
+    }
+
+    public void testReadAfterClose() throws Exception {
+        InputStream in = newChunkedInputStream("5\r\nhello\r\n0\r\n\r\n");
+        in.close();
+        in.close();
+        try {
+            in.read();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void assertBogusSize(String encoded) throws Exception {
+        try {
+            read(encoded);
+            fail(encoded);
+        } catch (IOException expected) {
+            assertEquals("Bogus chunk size", expected.getMessage());
+        }
+    }
+
+    private static String read(String encoded) throws Exception {
+        return read(encoded, new MessageHeader());
+    }
+
+    private static String read(String encoded, MessageHeader trailers) throws Exception {
+        InputStream in = newChunkedInputStream(encoded, trailers);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static InputStream newChunkedInputStream(String encoded) throws Exception {
+        return newChunkedInputStream(encoded, new MessageHeader());
+    }
+
+    /**
+     * ChunkedInputStream is package-private and on the boot class path, so it
+     * can only be constructed by reflection.
+     */
+    private static InputStream newChunkedInputStream(String encoded, MessageHeader trailers)
+            throws Exception {
+        Constructor<?> constructor = Class.forName("sun.net.www.http.ChunkedInputStream")
+                .getDeclaredConstructor(InputStream.class, HttpClient.class, MessageHeader.class);
+        constructor.setAccessible(true);
+        InputStream in = new ByteArrayInputStream(encoded.getBytes(StandardCharsets.US_ASCII));
+        try {
+            return (InputStream) constructor.newInstance(in, new FakeHttpClient(), trailers);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    /** Stands in for the connection, which is returned or closed at the end of the body. */
+    private static final class FakeHttpClient extends HttpClient {
+        @Override public void finished() {
+        }
+
+        @Override public void closeServer() {
+        }
+    }
+}
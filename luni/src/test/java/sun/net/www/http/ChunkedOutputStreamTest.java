@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sun.net.www.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class ChunkedOutputStreamTest extends TestCase {
+    /**
+     * A 32 byte chunk holds 26 bytes of data, after a two digit size and a
+     * CRLF and before another CRLF.
+     */
+    private static final int CHUNK_SIZE = 32;
+    private static final int DATA_SIZE = 26;
+
+    private ByteArrayOutputStream bytes;
+    private ChunkedOutputStream out;
+
+    @Override protected void setUp() throws Exception {
+        super.setUp();
+        bytes = new ByteArrayOutputStream();
+        out = new ChunkedOutputStream(new PrintStream(bytes), CHUNK_SIZE);
+    }
+
+    public void testWriteLessThanChunkIsBuffered() throws Exception {
+        byte[] data = data(0, 10);
+        out.write(data, 0, data.length);
+        assertEquals(0, bytes.size());
+        out.close();
+        assertChunks(data, 10);
+    }
+
+    public void testWriteExactlyOneChunk() throws Exception {
+        byte[] data = data(0, DATA_SIZE);
+        out.write(data, 0, data.length);
+        assertEquals("1a\r\n", new String(bytes.toByteArray(), 0, 4, StandardCharsets.US_ASCII));
+        out.close();
+        assertChunks(data, DATA_SIZE);
+    }
+
+    public void testWriteSeveralChunksAtOnce() throws Exception {
+        byte[] data = data(0, DATA_SIZE * 2 + 5);
+        out.write(data, 0, data.length);
+        out.close();
+        assertChunks(data, DATA_SIZE, DATA_SIZE, 5);
+    }
+
+    public void testWriteFromOffset() throws Exception {
+        byte[] data = data(0, DATA_SIZE + 10);
+        out.write(data, 3, DATA_SIZE + 4);
+        out.close();
+        assertChunks(Arrays.copyOfRange(data, 3, DATA_SIZE + 7), DATA_SIZE, 4);
+    }
+
+    /**
+     * A write that completes a partly buffered chunk, and then has a whole
+     * chunk left over, sends that one without buffering it.
+     */
+    public void testWriteStraddlingChunkAfterPartialBuffer() throws Exception {
+        byte[] first = data(0, 10);
+        byte[] second = data(10, DATA_SIZE * 2);
+        out.write(first, 0, first.length);
+        out.write(second, 0, second.length);
+        out.close();
+        assertChunks(concat(first, second), DATA_SIZE, DATA_SIZE, 10);
+    }
+
+    public void testWriteExactlyOneChunkAfterPartialBuffer() throws Exception {
+        byte[] first = data(0, 10);
+        byte[] second = data(10, DATA_SIZE);
+        out.write(first, 0, first.length);
+        out.write(second, 0, second.length);
+        out.close();
+        assertChunks(concat(first, second), DATA_SIZE, 10);
+    }
+
+    public void testWriteCompletingPartialBuffer() throws Exception {
+        byte[] first = data(0, 10);
+        byte[] second = data(10, DATA_SIZE - 10);
+        out.write(first, 0, first.length);
+        out.write(second, 0, second.length);
+        out.close();
+        assertChunks(concat(first, second), DATA_SIZE);
+    }
+
+    public void testSingleByteWrites() throws Exception {
+        byte[] data = data(0, DATA_SIZE + 3);
+        for (byte b : data) {
+            out.write(b);
+        }
+        out.close();
+        assertChunks(data, DATA_SIZE, 3);
+    }
+
+    public void testFlushSendsPartialChunk() throws Exception {
+        byte[] data = data(0, 10);
+        out.write(data, 0, data.length);
+        out.flush();
+        assertEquals("a\r\n", new String(bytes.toByteArray(), 0, 3, StandardCharsets.US_ASCII));
+        out.close();
+        assertChunks(data, 10);
+    }
+
+    public void testCloseWithoutData() throws Exception {
+        out.close();
+        assertChunks(new byte[0]);
+    }
+
+    /**
+     * Once closed, the stream's buffer is back in the pool and may belong to
+     * another stream, so writing or closing again must not touch it.
+     */
+    public void testWriteAndCloseAfterClose() throws Exception {
+        out.close();
+        int closedSize = bytes.size();
+
+        ByteArrayOutputStream otherBytes = new ByteArrayOutputStream();
+        ChunkedOutputStream other = new ChunkedOutputStream(new PrintStream(otherBytes));
+        byte[] otherData = data(0, 10);
+        other.write(otherData, 0, otherData.length);
+
+        out.write(data(100, 10), 0, 10);
+        out.write(1);
+        out.flush();
+        out.close();
+        assertEquals(closedSize, bytes.size());
+
+        other.close();
+        assertEquals(Arrays.asList(10), decode(otherBytes.toByteArray(), otherData));
+    }
+
+    /** Returns 'length' bytes counting up from 'start'. */
+    private static byte[] data(int start, int length) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) (start + i);
+        }
+        return result;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * Asserts that the stream wrote 'data' in chunks of 'chunkSizes',
+     * followed by the last, empty chunk.
+     */
+    private void assertChunks(byte[] data, Integer... chunkSizes) {
+        assertEquals(Arrays.asList(chunkSizes), decode(bytes.toByteArray(), data));
+    }
+
+    /**
+     * Decodes chunked 'encoded', asserting that its data is 'data', and
+     * returns the sizes of its non-empty chunks.
+     */
+    private static List<Integer> decode(byte[] encoded, byte[] data) {
+        List<Integer> chunkSizes = new ArrayList<Integer>();
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int pos = 0;
+        while (true) {
+            int lineEnd = indexOfCrlf(encoded, pos);
+            int size = Integer.parseInt(
+                    new String(encoded, pos, lineEnd - pos, StandardCharsets.US_ASCII), 16);
+            pos = lineEnd + 2;
+            if (size == 0) {
+                break;
+            }
+            chunkSizes.add(size);
+            decoded.write(encoded, pos, size);
+            pos += size;
+            assertEquals(pos, indexOfCrlf(encoded, pos));
+            pos += 2;
+        }
+        assertEquals(encoded.length, pos);
+        assertTrue(Arrays.equals(data, decoded.toByteArray()));
+        return chunkSizes;
+    }
+
+    private static int indexOfCrlf(byte[] bytes, int from) {
+        for (int i = from; i + 1 < bytes.length; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                return i;
+            }
+        }
+        fail("No CRLF after " + from);
+        return -1;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sun.net.www.http;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.net.URL;
+import junit.framework.TestCase;
+
+public class KeepAliveCacheTest extends TestCase {
+    private static final int DEFAULT_MAX_CONNECTIONS = 5;
+
+    private URL url;
+    private URL otherUrl;
+    private KeepAliveCache cache;
+
+    @Override protected void setUp() throws Exception {
+        super.setUp();
+        url = new URL("http://example.com/");
+        otherUrl = new URL("http://example.org/");
+        cache = new KeepAliveCache();
+    }
+
+    public void testCheckoutAndCheckin() throws Exception {
+        FakeHttpClient client = new FakeHttpClient(url);
+        assertNull(cache.get(url, null));
+        cache.put(url, null, client);
+        assertEquals(1, cache.getIdleCount());
+        assertSame(client, cache.get(url, null));
+        assertEquals(0, cache.getIdleCount());
+        assertNull(cache.get(url, null));
+        assertFalse(client.closed);
+    }
+
+    public void testMostRecentlyIdleConnectionIsReusedFirst() throws Exception {
+        FakeHttpClient first = new FakeHttpClient(url);
+        FakeHttpClient second = new FakeHttpClient(url);
+        cache.put(url, null, first);
+        cache.put(url, null, second);
+        assertSame(second, cache.get(url, null));
+        assertSame(first, cache.get(url, null));
+    }
+
+    public void testRoutesAreSeparate() throws Exception {
+        FakeHttpClient client = new FakeHttpClient(url);
+        cache.put(url, null, client);
+        assertNull(cache.get(otherUrl, null));
+        assertNull(cache.get(url, new Object()));
+        assertSame(client, cache.get(url, null));
+    }
+
+    public void testRemove() throws Exception {
+        FakeHttpClient client = new FakeHttpClient(url);
+        cache.put(url, null, client);
+        cache.remove(client, null);
+        assertEquals(0, cache.getIdleCount());
+        assertNull(cache.get(url, null));
+    }
+
+    public void testIdleConnectionsPerRouteAreCapped() throws Exception {
+        int max = Integer.getInteger("http.maxConnections", DEFAULT_MAX_CONNECTIONS);
+        if (max <= 0) {
+            max = DEFAULT_MAX_CONNECTIONS;
+        }
+        FakeHttpClient[] clients = new FakeHttpClient[max + 1];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = new FakeHttpClient(url);
+            cache.put(url, null, clients[i]);
+        }
+        // The connection that didn't fit is closed rather than cached.
+        assertTrue(clients[max].closed);
+        assertEquals(max, cache.getIdleCount());
+        assertEquals(1, cache.getEvictionCount());
+
+        // Other routes have their own limit.
+        FakeHttpClient other = new FakeHttpClient(otherUrl);
+        cache.put(otherUrl, null, other);
+        assertFalse(other.closed);
+        assertEquals(max + 1, cache.getIdleCount());
+    }
+
+    public void testStatistics() throws Exception {
+        assertEquals(0.0, cache.getReuseRate());
+        cache.put(url, null, new FakeHttpClient(url));
+        cache.get(url, null);
+        cache.get(url, null);
+        cache.get(otherUrl, null);
+        assertEquals(1, cache.getReuseCount());
+        assertEquals(1.0 / 3, cache.getReuseRate(), 1e-9);
+    }
+
+    public void testReaperClosesExpiredConnections() throws Exception {
+        KeepAliveCache cache = newCache(100);
+        FakeHttpClient client = new FakeHttpClient(url);
+        cache.put(url, null, client);
+        awaitClosed(client);
+        assertEquals(0, cache.getIdleCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(url, null));
+    }
+
+    /**
+     * The reaper stops when there is nothing left to reap, and starts again when
+     * a connection is added.
+     */
+    public void testReaperRestartsForNewIdleConnections() throws Exception {
+        KeepAliveCache cache = newCache(100);
+        FakeHttpClient first = new FakeHttpClient(url);
+        cache.put(url, null, first);
+        awaitClosed(first);
+        // Give the reaper time to find nothing left and stop.
+        Thread.sleep(300);
+
+        FakeHttpClient second = new FakeHttpClient(url);
+        cache.put(url, null, second);
+        awaitClosed(second);
+        assertEquals(0, cache.getIdleCount());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    public void testGetClosesExpiredConnections() throws Exception {
+        // The reaper won't run during this test.
+        KeepAliveCache cache = newCache(60 * 1000);
+        FakeHttpClient client = new FakeHttpClient(url);
+        client.setKeepAliveTimeout(1);
+        cache.put(url, null, client);
+        Thread.sleep(1100);
+        assertNull(cache.get(url, null));
+        assertTrue(client.closed);
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    public void testCloseIdleConnectionIsNotCountedAsReuse() throws Exception {
+        URL url = new URL("http://close-idle-connection.example.com/");
+        FakeHttpClient client = new FakeHttpClient(url);
+        KeepAliveCache cache = FakeHttpClient.sharedCache();
+        cache.put(url, null, client);
+        long reuseCount = cache.getReuseCount();
+        double reuseRate = cache.getReuseRate();
+
+        new FakeHttpClient(url).closeIdleConnection();
+        assertTrue(client.closed);
+        assertEquals(reuseCount, cache.getReuseCount());
+        assertEquals(reuseRate, cache.getReuseRate());
+    }
+
+    private static void awaitClosed(FakeHttpClient client) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!client.closed) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Returns a cache whose connections expire, and whose reaper runs, after
+     * 'lifetime' milliseconds. The cache is on the boot class path, so its
+     * package-private constructor can only be reached by reflection.
+     */
+    private static KeepAliveCache newCache(int lifetime) throws Exception {
+        Constructor<KeepAliveCache> constructor =
+                KeepAliveCache.class.getDeclaredConstructor(int.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(lifetime);
+    }
+
+    private static final class FakeHttpClient extends HttpClient {
+        volatile boolean closed;
+
+        FakeHttpClient(URL url) {
+            this.url = url;
+        }
+
+        static KeepAliveCache sharedCache() {
+            return kac;
+        }
+
+        void setKeepAliveTimeout(int seconds) throws Exception {
+            Field field = HttpClient.class.getDeclaredField("keepAliveTimeout");
+            field.setAccessible(true);
+            field.setInt(this, seconds);
+        }
+
+        @Override public void closeServer() {
+            closed = true;
+        }
+    }
+}
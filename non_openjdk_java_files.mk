@@ -233,6 +233,7 @@ non_openjdk_javadoc_files := \
   json/src/main/java/org/json/JSONArray.java \
   json/src/main/java/org/json/JSONException.java \
   json/src/main/java/org/json/JSONObject.java \
+  json/src/main/java/org/json/JSONReader.java \
   json/src/main/java/org/json/JSONStringer.java \
   json/src/main/java/org/json/JSONTokener.java \
   luni/src/main/java/org/w3c/dom/Attr.java \
@@ -317,6 +318,7 @@ non_openjdk_javadoc_files := \
   xml/src/main/java/org/xmlpull/v1/sax2/Driver.java \
 
 non_openjdk_java_files := \
+  dex/src/main/java/com/android/dex/Adler32s.java \
   dex/src/main/java/com/android/dex/Annotation.java \
   dex/src/main/java/com/android/dex/ClassData.java \
   dex/src/main/java/com/android/dex/ClassDef.java \
@@ -325,6 +327,7 @@ non_openjdk_java_files := \
   dex/src/main/java/com/android/dex/DexException.java \
   dex/src/main/java/com/android/dex/DexFormat.java \
   dex/src/main/java/com/android/dex/DexIndexOverflowException.java \
+  dex/src/main/java/com/android/dex/DexVisitor.java \
   dex/src/main/java/com/android/dex/EncodedValue.java \
   dex/src/main/java/com/android/dex/EncodedValueCodec.java \
   dex/src/main/java/com/android/dex/EncodedValueReader.java \
@@ -364,6 +367,8 @@ non_openjdk_java_files := \
   luni/src/main/java/libcore/icu/NativeConverter.java \
   luni/src/main/java/libcore/icu/RelativeDateTimeFormatter.java \
   luni/src/main/java/libcore/icu/TimeZoneNames.java \
+  luni/src/main/java/libcore/internal/ConcurrentStringPool.java \
+  luni/src/main/java/libcore/internal/KXmlParserPool.java \
   luni/src/main/java/libcore/internal/StringPool.java \
   luni/src/main/java/libcore/io/AsynchronousCloseMonitor.java \
   luni/src/main/java/libcore/io/ClassPathURLStreamHandler.java \
@@ -407,6 +412,7 @@ non_openjdk_java_files := \
   luni/src/main/java/libcore/util/EmptyArray.java \
   luni/src/main/java/libcore/util/BasicLruCache.java \
   luni/src/main/java/libcore/util/CollectionUtils.java \
+  luni/src/main/java/libcore/util/ConcurrentLruCache.java \
   luni/src/main/java/libcore/util/EmptyArray.java \
   luni/src/main/java/libcore/util/NativeAllocationRegistry.java \
   luni/src/main/java/libcore/util/Objects.java \
@@ -442,6 +448,7 @@ non_openjdk_java_files := \
   luni/src/main/java/org/apache/harmony/xml/dom/DocumentImpl.java \
   luni/src/main/java/org/apache/harmony/xml/dom/DocumentTypeImpl.java \
   luni/src/main/java/org/apache/harmony/xml/dom/ElementImpl.java \
+  luni/src/main/java/org/apache/harmony/xml/dom/ElementIndex.java \
   luni/src/main/java/org/apache/harmony/xml/dom/EntityImpl.java \
   luni/src/main/java/org/apache/harmony/xml/dom/EntityReferenceImpl.java \
   luni/src/main/java/org/apache/harmony/xml/dom/InnerNodeImpl.java \
@@ -459,4 +466,5 @@ non_openjdk_java_files := \
   libart/src/main/java/java/lang/StringFactory.java \
   xml/src/main/java/org/kxml2/io/KXmlParser.java \
   xml/src/main/java/org/kxml2/io/KXmlSerializer.java \
+  xml/src/main/java/org/kxml2/io/Utf8Reader.java \
   $(non_openjdk_javadoc_files)
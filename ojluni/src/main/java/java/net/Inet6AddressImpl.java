@@ -31,6 +31,7 @@ import dalvik.system.BlockGuard;
 import libcore.io.Libcore;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static android.system.OsConstants.AF_UNSPEC;
 import static android.system.OsConstants.AI_ADDRCONFIG;
@@ -53,6 +54,11 @@ class Inet6AddressImpl implements InetAddressImpl {
 
     private static final AddressCache addressCache = new AddressCache();
 
+    // Lookups currently being performed, so that concurrent lookups of the same host can share
+    // a single request to the resolver.
+    private static final ConcurrentHashMap<AddressCache.AddressCacheKey, PendingLookup>
+            pendingLookups = new ConcurrentHashMap<>();
+
     @Override
     public InetAddress[] lookupAllHostAddr(String host, int netId) throws UnknownHostException {
         if (host == null || host.isEmpty()) {
@@ -87,14 +93,50 @@ class Inet6AddressImpl implements InetAddressImpl {
         // Do we have a result cached?
         Object cachedResult = addressCache.get(host, netId);
         if (cachedResult != null) {
-            if (cachedResult instanceof InetAddress[]) {
-                // A cached positive result.
-                return (InetAddress[]) cachedResult;
-            } else {
-                // A cached negative result.
-                throw new UnknownHostException((String) cachedResult);
-            }
+            return fromCache(cachedResult);
+        }
+
+        // Is another thread already resolving this host? If so, wait for its answer rather
+        // than issuing an identical request to the resolver.
+        AddressCache.AddressCacheKey key = new AddressCache.AddressCacheKey(host, netId);
+        PendingLookup lookup = new PendingLookup();
+        PendingLookup inFlight = pendingLookups.putIfAbsent(key, lookup);
+        if (inFlight != null) {
+            return inFlight.await();
+        }
+        try {
+            // Another lookup may have completed, and cached its result, between our cache miss
+            // and registering this one.
+            cachedResult = addressCache.peek(host, netId);
+            InetAddress[] addresses = (cachedResult != null)
+                    ? fromCache(cachedResult)
+                    : lookupHostByNameUncached(host, netId);
+            lookup.complete(addresses);
+            return addresses;
+        } catch (UnknownHostException | RuntimeException | Error e) {
+            lookup.complete(e);
+            throw e;
+        } finally {
+            pendingLookups.remove(key, lookup);
         }
+    }
+
+    /**
+     * Returns the addresses in a non-null result from the address cache, or throws if the
+     * host is cached as unknown.
+     */
+    private static InetAddress[] fromCache(Object cachedResult) throws UnknownHostException {
+        if (cachedResult instanceof InetAddress[]) {
+            // A cached positive result.
+            return (InetAddress[]) cachedResult;
+        } else {
+            // A cached negative result.
+            throw new UnknownHostException((String) cachedResult);
+        }
+    }
+
+    private static InetAddress[] lookupHostByNameUncached(String host, int netId)
+            throws UnknownHostException {
         try {
             StructAddrinfo hints = new StructAddrinfo();
             hints.ai_flags = AI_ADDRCONFIG;
@@ -126,6 +168,57 @@ class Inet6AddressImpl implements InetAddressImpl {
         }
     }
 
+    /**
+     * A lookup that one thread is performing on behalf of all threads that want to resolve the
+     * same host on the same network.
+     */
+    private static final class PendingLookup {
+        // Either an InetAddress[] for a successful lookup, or the UnknownHostException,
+        // RuntimeException or Error the lookup failed with.
+        // Guarded by 'this'.
+        private Object result;
+        // Guarded by 'this'.
+        private boolean done;
+
+        synchronized void complete(Object result) {
+            this.result = result;
+            this.done = true;
+            notifyAll();
+        }
+
+        synchronized InetAddress[] await() throws UnknownHostException {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // Name lookups aren't interruptible, so neither is waiting for one.
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (result instanceof InetAddress[]) {
+                return (InetAddress[]) result;
+            }
+            if (result instanceof UnknownHostException) {
+                // Throw a new exception so that its stack trace is this thread's. The
+                // lookup thread's exception is the cause.
+                UnknownHostException cause = (UnknownHostException) result;
+                UnknownHostException e = new UnknownHostException(cause.getMessage());
+                e.initCause(cause);
+                throw e;
+            } else if (result instanceof RuntimeException) {
+                // Rethrow unchanged, so that callers can catch the same type whichever
+                // thread did the lookup.
+                throw (RuntimeException) result;
+            } else {
+                throw (Error) result;
+            }
+        }
+    }
+
     @Override
     public String getHostByAddr(byte[] addr) throws UnknownHostException {
         BlockGuard.getThreadPolicy().onNetwork();
@@ -621,7 +621,7 @@ abstract public class TimeZone implements Serializable, Cloneable {
      * both have GMT-07:00, but differ in daylight saving behavior.
      * @see #getRawOffset()
      */
-    public static synchronized String[] getAvailableIDs(int rawOffset) {
+    public static String[] getAvailableIDs(int rawOffset) {
         return ZoneInfoDB.getInstance().getAvailableIDs(rawOffset);
     }
 
@@ -629,7 +629,7 @@ abstract public class TimeZone implements Serializable, Cloneable {
      * Gets all the available IDs supported.
      * @return an array of IDs.
      */
-    public static synchronized String[] getAvailableIDs() {
+    public static String[] getAvailableIDs() {
         return ZoneInfoDB.getInstance().getAvailableIDs();
     }
 
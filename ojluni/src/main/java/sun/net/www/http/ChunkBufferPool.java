@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sun.net.www.http;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A small process-wide pool of the fixed-size buffers used by
+ * {@link ChunkedInputStream} and {@link ChunkedOutputStream}, so that
+ * streaming many chunked requests and responses doesn't allocate a new
+ * buffer for each one.
+ */
+final class ChunkBufferPool {
+    /** The size of every pooled buffer. */
+    static final int BUFFER_SIZE = 4096;
+
+    /** The most buffers kept idle at once. */
+    private static final int MAX_POOLED = 16;
+
+    private static final ArrayBlockingQueue<byte[]> pool =
+        new ArrayBlockingQueue<byte[]>(MAX_POOLED);
+
+    private ChunkBufferPool() {
+    }
+
+    /**
+     * Returns a buffer of {@link #BUFFER_SIZE} bytes. Its contents are
+     * undefined.
+     */
+    static byte[] take() {
+        byte[] buffer = pool.poll();
+        return (buffer != null) ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Returns {@code buffer} to the pool. Buffers of any other size than
+     * {@link #BUFFER_SIZE} are ignored. The caller must not use
+     * {@code buffer} afterwards.
+     */
+    static void release(byte[] buffer) {
+        if (buffer != null && buffer.length == BUFFER_SIZE) {
+            pool.offer(buffer);
+        }
+    }
+}
@@ -78,7 +78,8 @@ class ChunkedInputStream extends InputStream implements Hurryable {
      * The internal buffer array where chunk data is available for the
      * application to read.
      */
-    private byte chunkData[] = new byte[4096];
+    // Android-changed: Take the buffer from a shared pool and return it on close.
+    private byte chunkData[] = ChunkBufferPool.take();
 
     /**
      * The current position in the buffer. It contains the index
@@ -307,14 +308,20 @@ class ChunkedInputStream extends InputStream implements Hurryable {
                     /*
                      * Extract the chunk size from the header (ignoring extensions).
                      */
-                    String header = new String(rawData, rawPos, pos-rawPos+1, "US-ASCII");
-                    for (i=0; i < header.length(); i++) {
-                        if (Character.digit(header.charAt(i), 16) == -1)
+                    // Android-changed: Parse the hex digits in place rather than
+                    // allocating a String for every chunk header.
+                    chunkSize = 0;
+                    for (i = rawPos; i <= pos; i++) {
+                        int digit = Character.digit((char) (rawData[i] & 0xff), 16);
+                        if (digit == -1)
                             break;
+                        if (chunkSize > (Integer.MAX_VALUE >> 4)) {
+                            error = true;
+                            throw new IOException("Bogus chunk size");
+                        }
+                        chunkSize = (chunkSize << 4) | digit;
                     }
-                    try {
-                        chunkSize = Integer.parseInt(header.substring(0, i), 16);
-                    } catch (NumberFormatException e) {
+                    if (i == rawPos) {
                         error = true;
                         throw new IOException("Bogus chunk size");
                     }
@@ -748,6 +755,8 @@ class ChunkedInputStream extends InputStream implements Hurryable {
         }
         closeUnderlying();
         closed = true;
+        ChunkBufferPool.release(chunkData);
+        chunkData = null;
     }
 
     /**
@@ -125,7 +125,12 @@ public class ChunkedOutputStream extends PrintStream {
         completeHeader = getHeader(preferredChunkDataSize);
 
         /* start with an initial buffer */
-        buf = new byte[preferredChunkDataSize + 32];
+        // Android-changed: Use a pooled buffer when a whole chunk fits in one.
+        if (preferredChunkGrossSize <= ChunkBufferPool.BUFFER_SIZE) {
+            buf = ChunkBufferPool.take();
+        } else {
+            buf = new byte[preferredChunkDataSize + 32];
+        }
         reset();
     }
 
@@ -199,6 +204,10 @@ public class ChunkedOutputStream extends PrintStream {
     @Override
     public synchronized void write(byte b[], int off, int len) {
         ensureOpen();
+        // Android-added: buf has been returned to the pool once we're closed.
+        if (out == null) {
+            return;
+        }
         if ((off < 0) || (off > b.length) || (len < 0) ||
             ((off + len) > b.length) || ((off + len) < 0)) {
             throw new IndexOutOfBoundsException();
@@ -216,8 +225,24 @@ public class ChunkedOutputStream extends PrintStream {
         int inputIndex = off;  /* the index of the byte[] currently being written */
 
         do {
+            /* Android-added: nothing is buffered and b[] holds at least a
+             * whole chunk, so send the chunk straight from b[] rather than
+             * copying it into buf first.
+             */
+            if (size == 0 && bytesToWrite >= preferredChunkDataSize) {
+                out.write(completeHeader, 0, completeHeader.length);
+                out.write(b, inputIndex, preferredChunkDataSize);
+                out.write(FOOTER, 0, FOOTER_SIZE);
+                out.flush();
+                inputIndex += preferredChunkDataSize;
+                bytesToWrite -= preferredChunkDataSize;
+                if (checkError()) {
+                    break;
+                }
+            }
+
             /* enough data to complete a chunk */
-            if (bytesToWrite >= spaceInCurrentChunk) {
+            else if (bytesToWrite >= spaceInCurrentChunk) {
 
                 /* header */
                 for (int i=0; i<completeHeader.length; i++)
@@ -277,6 +302,11 @@ public class ChunkedOutputStream extends PrintStream {
     @Override
     public synchronized void close() {
         ensureOpen();
+        // Android-added: buf has already been returned to the pool, and must
+        // not be returned twice.
+        if (out == null) {
+            return;
+        }
 
         /* if we have buffer a chunked send it */
         if (size > 0) {
@@ -288,6 +318,8 @@ public class ChunkedOutputStream extends PrintStream {
 
         /* don't close the underlying stream */
         out = null;
+        ChunkBufferPool.release(buf);
+        buf = null;
     }
 
     @Override
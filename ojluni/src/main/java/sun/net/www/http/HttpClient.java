@@ -416,7 +416,7 @@ public class HttpClient extends NetworkClient {
      * cache).
      */
     public void closeIdleConnection() {
-        HttpClient http = kac.get(url, null);
+        HttpClient http = kac.take(url, null);
         if (http != null) {
             http.closeServer();
         }
@@ -25,22 +25,31 @@
 
 package sun.net.www.http;
 
-import java.io.IOException;
-import java.io.NotSerializableException;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class that implements a cache of idle Http connections for keep-alive
  *
+ * Android-changed: The cache used to be a synchronized HashMap of Stacks
+ * swept by a dedicated thread, so every request in the process contended on
+ * a single lock. Idle connections are now kept in a lock-free LIFO deque per
+ * destination, and expired connections are closed by a task on a scheduled
+ * executor whose thread exits when there is nothing left to reap.
+ *
  * @author Stephen R. Pietrowicz (NCSA)
  * @author Dave Brown
  */
-public class KeepAliveCache
-    extends HashMap<KeepAliveKey, ClientVector>
-    implements Runnable {
-    private static final long serialVersionUID = -2937172892064557949L;
+public class KeepAliveCache {
 
     /* maximum # keep-alive connections to maintain at once
      * This should be 2 by the HTTP spec, but because we don't support pipe-lining
@@ -64,230 +73,297 @@ public class KeepAliveCache
 
     static final int LIFETIME = 5000;
 
-    private Thread keepAliveTimer = null;
+    /* How long, in milliseconds, a connection may stay idle when its server
+     * didn't say, and how often the reaper looks for such connections.
+     */
+    private final int lifetime;
+
+    private final ConcurrentHashMap<KeepAliveKey, ClientVector> routes =
+        new ConcurrentHashMap<>();
+
+    private final AtomicBoolean reapScheduled = new AtomicBoolean();
+    private ScheduledThreadPoolExecutor reaper; // Guarded by this.
+
+    // Pool statistics.
+    final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicLong reuseCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    final AtomicLong evictionCount = new AtomicLong();
 
     /**
      * Constructor
      */
-    public KeepAliveCache() {}
+    public KeepAliveCache() {
+        this(LIFETIME);
+    }
+
+    KeepAliveCache(int lifetime) {
+        this.lifetime = lifetime;
+    }
 
     /**
      * Register this URL and HttpClient (that supports keep-alive) with the cache
      * @param url  The URL contains info about the host and port
      * @param http The HttpClient to be cached
      */
-    public synchronized void put(final URL url, Object obj, HttpClient http) {
-        boolean startThread = (keepAliveTimer == null);
-        if (!startThread) {
-            if (!keepAliveTimer.isAlive()) {
-                startThread = true;
-            }
-        }
-        if (startThread) {
-            clear();
-            /* Unfortunately, we can't always believe the keep-alive timeout we got
-             * back from the server.  If I'm connected through a Netscape proxy
-             * to a server that sent me a keep-alive
-             * time of 15 sec, the proxy unilaterally terminates my connection
-             * The robustness to get around this is in HttpClient.parseHTTP()
-             */
-            final KeepAliveCache cache = this;
-            java.security.AccessController.doPrivileged(
-                new java.security.PrivilegedAction<Void>() {
-                public Void run() {
-                   // We want to create the Keep-Alive-Timer in the
-                    // system threadgroup
-                    ThreadGroup grp = Thread.currentThread().getThreadGroup();
-                    ThreadGroup parent = null;
-                    while ((parent = grp.getParent()) != null) {
-                        grp = parent;
-                    }
-
-                    keepAliveTimer = new Thread(grp, cache, "Keep-Alive-Timer");
-                    keepAliveTimer.setDaemon(true);
-                    keepAliveTimer.setPriority(Thread.MAX_PRIORITY - 2);
-                    // Set the context class loader to null in order to avoid
-                    // keeping a strong reference to an application classloader.
-                    keepAliveTimer.setContextClassLoader(null);
-                    keepAliveTimer.start();
-                    return null;
-                }
-            });
-        }
-
+    public void put(final URL url, Object obj, HttpClient http) {
         KeepAliveKey key = new KeepAliveKey(url, obj);
-        ClientVector v = super.get(key);
-
-        if (v == null) {
-            int keepAliveTimeout = http.getKeepAliveTimeout();
-            v = new ClientVector(keepAliveTimeout > 0?
-                                 keepAliveTimeout*1000 : LIFETIME);
-            v.put(http);
-            super.put(key, v);
-        } else {
-            v.put(http);
+        while (true) {
+            ClientVector v = routes.get(key);
+            if (v == null) {
+                int keepAliveTimeout = http.getKeepAliveTimeout();
+                ClientVector newVector = new ClientVector(this, keepAliveTimeout > 0?
+                                                          keepAliveTimeout*1000 : lifetime);
+                v = routes.putIfAbsent(key, newVector);
+                if (v == null) {
+                    v = newVector;
+                }
+            }
+            // The reaper may have retired this vector just after we found it.
+            if (v.put(http)) {
+                break;
+            }
+            routes.remove(key, v);
         }
+        scheduleReap();
     }
 
     /* remove an obsolete HttpClient from its VectorCache */
-    public synchronized void remove (HttpClient h, Object obj) {
+    public void remove (HttpClient h, Object obj) {
         KeepAliveKey key = new KeepAliveKey(h.url, obj);
-        ClientVector v = super.get(key);
+        ClientVector v = routes.get(key);
         if (v != null) {
             v.remove(h);
-            if (v.empty()) {
-                removeVector(key);
-            }
         }
     }
 
-    /* called by a clientVector thread when all its connections have timed out
-     * and that vector of connections should be removed.
+    /**
+     * Check to see if this URL has a cached HttpClient
      */
-    synchronized void removeVector(KeepAliveKey k) {
-        super.remove(k);
+    public HttpClient get(URL url, Object obj) {
+        HttpClient hc = take(url, obj);
+        if (hc == null) {
+            missCount.incrementAndGet();
+        } else {
+            reuseCount.incrementAndGet();
+        }
+        return hc;
     }
 
     /**
-     * Check to see if this URL has a cached HttpClient
+     * Removes a cached HttpClient for this URL, like {@link #get}, but without
+     * counting it in the pool statistics. This is for callers that only want
+     * to close the connection.
      */
-    public synchronized HttpClient get(URL url, Object obj) {
-
+    HttpClient take(URL url, Object obj) {
         KeepAliveKey key = new KeepAliveKey(url, obj);
-        ClientVector v = super.get(key);
-        if (v == null) { // nothing in cache yet
-            return null;
-        }
-        return v.get();
+        ClientVector v = routes.get(key);
+        return (v == null) ? null : v.get();
     }
 
-    /* Sleeps for an alloted timeout, then checks for timed out connections.
-     * Errs on the side of caution (leave connections idle for a relatively
-     * short time).
+    /**
+     * Returns the number of idle connections currently in the cache.
      */
-    @Override
-    public void run() {
-        do {
-            try {
-                Thread.sleep(LIFETIME);
-            } catch (InterruptedException e) {}
-            synchronized (this) {
-                /* Remove all unused HttpClients.  Starting from the
-                 * bottom of the stack (the least-recently used first).
-                 * REMIND: It'd be nice to not remove *all* connections
-                 * that aren't presently in use.  One could have been added
-                 * a second ago that's still perfectly valid, and we're
-                 * needlessly axing it.  But it's not clear how to do this
-                 * cleanly, and doing it right may be more trouble than it's
-                 * worth.
-                 */
-
-                long currentTime = System.currentTimeMillis();
-
-                ArrayList<KeepAliveKey> keysToRemove
-                    = new ArrayList<KeepAliveKey>();
-
-                for (KeepAliveKey key : keySet()) {
-                    ClientVector v = get(key);
-                    synchronized (v) {
-                        int i;
-
-                        for (i = 0; i < v.size(); i++) {
-                            KeepAliveEntry e = v.elementAt(i);
-                            if ((currentTime - e.idleStartTime) > v.nap) {
-                                HttpClient h = e.hc;
-                                h.closeServer();
-                            } else {
-                                break;
-                            }
-                        }
-                        v.subList(0, i).clear();
-
-                        if (v.size() == 0) {
-                            keysToRemove.add(key);
-                        }
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned a cached connection.
+     */
+    public long getReuseCount() {
+        return reuseCount.get();
+    }
+
+    /**
+     * Returns the number of idle connections the cache has closed, either because
+     * they timed out or because their destination already had the maximum number
+     * of idle connections.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the fraction of calls to {@link #get} that returned a cached
+     * connection, or 0 if there haven't been any.
+     */
+    public double getReuseRate() {
+        long reused = reuseCount.get();
+        long total = reused + missCount.get();
+        return total == 0 ? 0 : (double) reused / total;
+    }
+
+    private void scheduleReap() {
+        if (!reapScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            if (reaper == null) {
+                reaper = java.security.AccessController.doPrivileged(
+                    new java.security.PrivilegedAction<ScheduledThreadPoolExecutor>() {
+                    public ScheduledThreadPoolExecutor run() {
+                        return newReaper();
                     }
+                });
+            }
+            reaper.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reap();
                 }
+            }, lifetime, TimeUnit.MILLISECONDS);
+        }
+    }
 
-                for (KeepAliveKey key : keysToRemove) {
-                    removeVector(key);
+    private ScheduledThreadPoolExecutor newReaper() {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                // We want to create the Keep-Alive-Timer in the
+                // system threadgroup
+                ThreadGroup grp = Thread.currentThread().getThreadGroup();
+                ThreadGroup parent = null;
+                while ((parent = grp.getParent()) != null) {
+                    grp = parent;
                 }
-            }
-        } while (size() > 0);
 
-        return;
+                Thread keepAliveTimer = new Thread(grp, r, "Keep-Alive-Timer");
+                keepAliveTimer.setDaemon(true);
+                keepAliveTimer.setPriority(Thread.MAX_PRIORITY - 2);
+                // Set the context class loader to null in order to avoid
+                // keeping a strong reference to an application classloader.
+                keepAliveTimer.setContextClassLoader(null);
+                return keepAliveTimer;
+            }
+        };
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        // Let the thread exit while there are no idle connections.
+        executor.setKeepAliveTime(lifetime, TimeUnit.MILLISECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
-    /*
-     * Do not serialize this class!
+    /* Closes timed out connections, least-recently used first, and removes
+     * destinations that no longer have any idle connections. Runs again after
+     * the lifetime while any idle connections remain.
      */
-    private void writeObject(java.io.ObjectOutputStream stream)
-    throws IOException {
-        throw new NotSerializableException();
-    }
+    void reap() {
+        long currentTime = System.currentTimeMillis();
+        Iterator<Map.Entry<KeepAliveKey, ClientVector>> it = routes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<KeepAliveKey, ClientVector> entry = it.next();
+            ClientVector v = entry.getValue();
+            v.closeExpired(currentTime);
+            if (v.retireIfEmpty()) {
+                routes.remove(entry.getKey(), v);
+            }
+        }
 
-    private void readObject(java.io.ObjectInputStream stream)
-    throws IOException, ClassNotFoundException {
-        throw new NotSerializableException();
+        reapScheduled.set(false);
+        // A connection may have been added after we looked at its destination.
+        if (idleCount.get() > 0) {
+            scheduleReap();
+        }
     }
 }
 
-/* FILO order for recycling HttpClients, should run in a thread
- * to time them out.  If > maxConns are in use, block.
+/* LIFO order for recycling HttpClients. Idle connections are pushed on and
+ * popped off the front; the reaper closes timed out ones from the back.
  */
-
-
-class ClientVector extends java.util.Stack<KeepAliveEntry> {
-    private static final long serialVersionUID = -8680532108106489459L;
+class ClientVector {
 
     // sleep time in milliseconds, before cache clear
-    int nap;
+    final int nap;
+
+    private final KeepAliveCache cache;
 
+    private final ConcurrentLinkedDeque<KeepAliveEntry> entries =
+        new ConcurrentLinkedDeque<>();
 
+    /* An upper bound on entries.size(), or -1 once this vector has been
+     * retired and removed from the cache. A slot is reserved here before an
+     * entry is pushed and released after one is removed.
+     */
+    private final AtomicInteger size = new AtomicInteger();
 
-    ClientVector (int nap) {
+    ClientVector (KeepAliveCache cache, int nap) {
+        this.cache = cache;
         this.nap = nap;
     }
 
-    synchronized HttpClient get() {
-        if (empty()) {
-            return null;
-        } else {
-            // Loop until we find a connection that has not timed out
-            HttpClient hc = null;
-            long currentTime = System.currentTimeMillis();
-            do {
-                KeepAliveEntry e = pop();
-                if ((currentTime - e.idleStartTime) > nap) {
-                    e.hc.closeServer();
-                } else {
-                    hc = e.hc;
+    HttpClient get() {
+        // Loop until we find a connection that has not timed out
+        long currentTime = System.currentTimeMillis();
+        KeepAliveEntry e;
+        while ((e = entries.pollFirst()) != null) {
+            release();
+            if ((currentTime - e.idleStartTime) > nap) {
+                cache.evictionCount.incrementAndGet();
+                e.hc.closeServer();
+            } else {
+                return e.hc;
+            }
+        }
+        return null;
+    }
+
+    /* return a still valid, unused HttpClient. Returns false if this vector
+     * has been retired, in which case the caller should use a new one.
+     */
+    boolean put(HttpClient h) {
+        while (true) {
+            int current = size.get();
+            if (current < 0) {
+                return false;
+            }
+            if (current >= KeepAliveCache.getMaxConnections()) {
+                cache.evictionCount.incrementAndGet();
+                h.closeServer(); // otherwise the connection remains in limbo
+                return true;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        cache.idleCount.incrementAndGet();
+        entries.offerFirst(new KeepAliveEntry(h, System.currentTimeMillis()));
+        return true;
+    }
+
+    void remove(HttpClient h) {
+        for (KeepAliveEntry e : entries) {
+            if (e.hc == h) {
+                if (entries.removeFirstOccurrence(e)) {
+                    release();
                 }
-            } while ((hc== null) && (!empty()));
-            return hc;
+                return;
+            }
         }
     }
 
-    /* return a still valid, unused HttpClient */
-    synchronized void put(HttpClient h) {
-        if (size() >= KeepAliveCache.getMaxConnections()) {
-            h.closeServer(); // otherwise the connection remains in limbo
-        } else {
-            push(new KeepAliveEntry(h, System.currentTimeMillis()));
+    void closeExpired(long currentTime) {
+        KeepAliveEntry e;
+        while ((e = entries.peekLast()) != null && (currentTime - e.idleStartTime) > nap) {
+            // Only close it if a concurrent get() didn't take it first.
+            if (entries.removeLastOccurrence(e)) {
+                release();
+                cache.evictionCount.incrementAndGet();
+                e.hc.closeServer();
+            }
         }
     }
 
-    /*
-     * Do not serialize this class!
+    /* Marks this vector as retired if it holds no connections, so that no more
+     * can be added to it. Returns true if it was retired.
      */
-    private void writeObject(java.io.ObjectOutputStream stream)
-    throws IOException {
-        throw new NotSerializableException();
+    boolean retireIfEmpty() {
+        return size.compareAndSet(0, -1);
     }
 
-    private void readObject(java.io.ObjectInputStream stream)
-    throws IOException, ClassNotFoundException {
-        throw new NotSerializableException();
+    private void release() {
+        size.decrementAndGet();
+        cache.idleCount.decrementAndGet();
     }
 }
 
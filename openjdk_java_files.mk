@@ -1129,6 +1129,7 @@ openjdk_java_files := \
     ojluni/src/main/java/sun/net/util/URLUtil.java \
     ojluni/src/main/java/sun/net/www/ApplicationLaunchException.java \
     ojluni/src/main/java/sun/net/www/HeaderParser.java \
+    ojluni/src/main/java/sun/net/www/http/ChunkBufferPool.java \
     ojluni/src/main/java/sun/net/www/http/ChunkedInputStream.java \
     ojluni/src/main/java/sun/net/www/http/ChunkedOutputStream.java \
     ojluni/src/main/java/sun/net/www/http/HttpCaptureInputStream.java \
@@ -29,6 +29,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.HashMap;
 import java.util.Map;
+import libcore.internal.ConcurrentStringPool;
 import libcore.internal.StringPool;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -45,6 +46,15 @@ public class KXmlParser implements XmlPullParser, Closeable {
     private static final String PROPERTY_LOCATION = "http://xmlpull.org/v1/doc/properties.html#location";
     private static final String FEATURE_RELAXED = "http://xmlpull.org/v1/doc/features.html#relaxed";
 
+    /**
+     * Interns element and attribute names in the process-wide {@link
+     * ConcurrentStringPool} rather than in this parser's {@link #stringPool}.
+     * This saves allocating the same names again for each new parser when many
+     * documents share a schema.
+     */
+    public static final String FEATURE_SHARED_NAME_POOL
+            = "http://android.com/kxml2/features/shared-name-pool";
+
     private static final Map<String, String> DEFAULT_ENTITIES = new HashMap<String, String>();
     static {
         DEFAULT_ENTITIES.put("lt", "<");
@@ -181,6 +191,9 @@ public class KXmlParser implements XmlPullParser, Closeable {
 
     public final StringPool stringPool = new StringPool();
 
+    /** The pool for names, or null to use {@link #stringPool}. */
+    private ConcurrentStringPool namePool;
+
     /**
      * Retains namespace attributes like {@code xmlns="http://foo"} or {@code xmlns:foo="http:foo"}
      * in pulled elements. Most applications will only be interested in the effective namespaces of
@@ -1582,7 +1595,9 @@ public class KXmlParser implements XmlPullParser, Closeable {
 
             // we encountered a non-name character. done!
             if (result == null) {
-                return stringPool.get(buffer, start, position - start);
+                return namePool != null
+                        ? namePool.get(buffer, start, position - start)
+                        : stringPool.get(buffer, start, position - start);
             } else {
                 result.append(buffer, start, position - start);
                 return result.toString();
@@ -1602,6 +1617,31 @@ public class KXmlParser implements XmlPullParser, Closeable {
 
     //  public part starts here...
 
+    /**
+     * Prepares this parser to be reused with different features. This
+     * releases the input, like {@code setInput(null)}, and turns off all of
+     * this parser's features. The properties, read buffer and {@link
+     * #stringPool} are kept.
+     */
+    public void reset() throws XmlPullParserException {
+        setInput((Reader) null);
+        processNsp = false;
+        processDocDecl = false;
+        relaxed = false;
+        namePool = null;
+    }
+
+    /**
+     * Starts parsing a new document from {@code reader}. A parser may be
+     * reused for any number of documents: each call discards everything
+     * known about the previous document, including its entities, default
+     * attributes and doctype, but keeps this parser's features, properties,
+     * read buffer and {@link #stringPool}. Parsing many small documents with
+     * one parser therefore avoids most of the cost of creating a parser.
+     *
+     * <p>Passing null releases the previous input without starting a new
+     * document.
+     */
     public void setInput(Reader reader) throws XmlPullParserException {
         this.reader = reader;
 
@@ -1609,14 +1649,26 @@ public class KXmlParser implements XmlPullParser, Closeable {
         parsedTopLevelStartTag = false;
         name = null;
         namespace = null;
+        prefix = null;
+        text = null;
+        isWhitespace = false;
         degenerated = false;
         attributeCount = -1;
         encoding = null;
         version = null;
         standalone = null;
-
-        if (reader == null) {
-            return;
+        rootElementName = null;
+        systemId = null;
+        publicId = null;
+        error = null;
+        unresolved = false;
+        bufferCapture = null;
+
+        // If the previous document was abandoned while reading an entity,
+        // the primary read buffer is at the end of the content source chain.
+        while (nextContentSource != null) {
+            buffer = nextContentSource.buffer;
+            nextContentSource = nextContentSource.next;
         }
 
         position = 0;
@@ -1625,11 +1677,12 @@ public class KXmlParser implements XmlPullParser, Closeable {
         bufferStartColumn = 0;
         depth = 0;
         documentEntities = null;
+        defaultAttributes = null;
     }
 
     public void setInput(InputStream is, String charset) throws XmlPullParserException {
-        position = 0;
-        limit = 0;
+        // Discard the previous document so its read buffer is ours to use.
+        setInput((Reader) null);
         boolean detectCharset = (charset == null);
 
         if (is == null) {
@@ -1734,7 +1787,12 @@ public class KXmlParser implements XmlPullParser, Closeable {
             }
 
             int savedLimit = limit;
-            setInput(new InputStreamReader(is, charset));
+            if (charset.equalsIgnoreCase("UTF-8") || charset.equalsIgnoreCase("UTF8")) {
+                // Most documents are UTF-8; decode them without a CharsetDecoder.
+                setInput(new Utf8Reader(is));
+            } else {
+                setInput(new InputStreamReader(is, charset));
+            }
             encoding = charset;
             limit = savedLimit;
 
@@ -1765,6 +1823,8 @@ public class KXmlParser implements XmlPullParser, Closeable {
             return relaxed;
         } else if (FEATURE_PROCESS_DOCDECL.equals(feature)) {
             return processDocDecl;
+        } else if (FEATURE_SHARED_NAME_POOL.equals(feature)) {
+            return namePool != null;
         } else {
             return false;
         }
@@ -2098,6 +2158,8 @@ public class KXmlParser implements XmlPullParser, Closeable {
             processDocDecl = value;
         } else if (FEATURE_RELAXED.equals(feature)) {
             relaxed = value;
+        } else if (FEATURE_SHARED_NAME_POOL.equals(feature)) {
+            namePool = value ? ConcurrentStringPool.shared() : null;
         } else {
             throw new XmlPullParserException("unsupported feature: " + feature, this, null);
         }
@@ -31,6 +31,16 @@ public class KXmlSerializer implements XmlSerializer {
     private final char[] mText = new char[BUFFER_LEN];
     private int mPos;
 
+    // BEGIN android-added: encode UTF-8 output directly.
+    /**
+     * The stream that UTF-8 output is encoded to, without an intermediate
+     * writer. When this is non-null, output is buffered in {@link #mBytes}
+     * rather than {@link #mText}, and {@link #mPos} indexes that buffer.
+     */
+    private OutputStream utf8Out;
+    private byte[] mBytes;
+    // END android-added
+
     //    static final String UNDEFINED = ":";
 
     private Writer writer;
@@ -49,6 +59,17 @@ public class KXmlSerializer implements XmlSerializer {
     private String encoding;
 
     private void append(char c) throws IOException {
+        if (utf8Out != null) {
+            if (mPos > BUFFER_LEN - 3) {
+                flushBuffer();
+            }
+            if (c < 0x80) {
+                mBytes[mPos++] = (byte) c;
+            } else {
+                appendUtf8(c);
+            }
+            return;
+        }
         if (mPos >= BUFFER_LEN) {
             flushBuffer();
         }
@@ -56,6 +77,10 @@ public class KXmlSerializer implements XmlSerializer {
     }
 
     private void append(String str, int i, int length) throws IOException {
+        if (utf8Out != null) {
+            appendUtf8(str, i, length);
+            return;
+        }
         while (length > 0) {
             if (mPos == BUFFER_LEN) {
                 flushBuffer();
@@ -75,10 +100,67 @@ public class KXmlSerializer implements XmlSerializer {
         append(str, 0, str.length());
     }
 
+    // BEGIN android-added
+    /**
+     * Encodes {@code length} chars of {@code str} into {@link #mBytes}. Runs
+     * of ASCII are copied without per-character buffer checks. Unpaired
+     * surrogates are replaced with '?', as {@link OutputStreamWriter} would.
+     */
+    private void appendUtf8(String str, int i, int length) throws IOException {
+        int end = i + length;
+        while (i < end) {
+            if (mPos > BUFFER_LEN - 4) {
+                flushBuffer();
+            }
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                // Each char of the run needs one byte.
+                int runEnd = Math.min(end, i + (BUFFER_LEN - mPos));
+                do {
+                    mBytes[mPos++] = (byte) c;
+                } while (++i < runEnd && (c = str.charAt(i)) < 0x80);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, str.charAt(i + 1));
+                mBytes[mPos++] = (byte) (0xf0 | (codePoint >> 18));
+                mBytes[mPos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                mBytes[mPos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                mBytes[mPos++] = (byte) (0x80 | (codePoint & 0x3f));
+                i += 2;
+            } else {
+                appendUtf8(c);
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Encodes a non-ASCII char. The caller must ensure that {@link #mBytes}
+     * has room for three bytes.
+     */
+    private void appendUtf8(char c) {
+        if (c < 0x800) {
+            mBytes[mPos++] = (byte) (0xc0 | (c >> 6));
+            mBytes[mPos++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+            mBytes[mPos++] = '?';
+        } else {
+            mBytes[mPos++] = (byte) (0xe0 | (c >> 12));
+            mBytes[mPos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            mBytes[mPos++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+    // END android-added
+
     private final void flushBuffer() throws IOException {
         if(mPos > 0) {
-            writer.write(mText, 0, mPos);
-            writer.flush();
+            if (utf8Out != null) {
+                utf8Out.write(mBytes, 0, mPos);
+                utf8Out.flush();
+            } else {
+                writer.write(mText, 0, mPos);
+                writer.flush();
+            }
             mPos = 0;
         }
     }
@@ -127,8 +209,19 @@ public class KXmlSerializer implements XmlSerializer {
     }
 
     private final void writeEscaped(String s, int quot) throws IOException {
+        // BEGIN android-added: append runs that need no escaping in bulk.
+        int runStart = 0;
         for (int i = 0; i < s.length(); i++) {
             char c = s.charAt(i);
+            if (c >= 0x20 && c != '&' && c != '>' && c != '<' && c != quot
+                    && (c < 127 || (unicode && (c <= 0xd7ff || (c >= 0xe000 && c <= 0xfffd))))) {
+                continue;
+            }
+            if (runStart < i) {
+                append(s, runStart, i - runStart);
+            }
+            runStart = i + 1;
+            // END android-added
             switch (c) {
                 case '\n':
                 case '\r':
@@ -169,12 +262,16 @@ public class KXmlSerializer implements XmlSerializer {
                     } else if (Character.isHighSurrogate(c) && i < s.length() - 1) {
                         writeSurrogate(c, s.charAt(i + 1));
                         ++i;
+                        runStart = i + 1;
                     } else {
                         reportInvalidCharacter(c);
                     }
                     // END android-changed
             }
         }
+        if (runStart < s.length()) {
+            append(s, runStart, s.length() - runStart);
+        }
     }
 
     // BEGIN android-added
@@ -336,6 +433,8 @@ public class KXmlSerializer implements XmlSerializer {
 
     public void setOutput(Writer writer) {
         this.writer = writer;
+        this.utf8Out = null;
+        mPos = 0;
 
         // elementStack = new String[12]; //nsp/prefix/name
         //nspCounts = new int[4];
@@ -359,10 +458,21 @@ public class KXmlSerializer implements XmlSerializer {
         throws IOException {
         if (os == null)
             throw new IllegalArgumentException("os == null");
-        setOutput(
-            encoding == null
-                ? new OutputStreamWriter(os)
-                : new OutputStreamWriter(os, encoding));
+        // BEGIN android-changed: encode UTF-8 directly rather than through a writer.
+        if (encoding != null
+                && (encoding.equalsIgnoreCase("UTF-8") || encoding.equalsIgnoreCase("UTF8"))) {
+            setOutput((Writer) null);
+            if (mBytes == null) {
+                mBytes = new byte[BUFFER_LEN];
+            }
+            utf8Out = os;
+        } else {
+            setOutput(
+                encoding == null
+                    ? new OutputStreamWriter(os)
+                    : new OutputStreamWriter(os, encoding));
+        }
+        // END android-changed
         this.encoding = encoding;
         if (encoding != null && encoding.toLowerCase(Locale.US).startsWith("utf")) {
             unicode = true;
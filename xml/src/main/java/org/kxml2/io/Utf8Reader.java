@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kxml2.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Decodes UTF-8 bytes straight into the caller's char array. This avoids the
+ * charset decoder and the intermediate char buffer of {@link
+ * java.io.InputStreamReader}, which dominate the cost of parsing documents
+ * that are mostly ASCII markup. Runs of ASCII bytes are copied by a tight
+ * loop; other sequences are validated and decoded one at a time.
+ *
+ * <p>Like {@code InputStreamReader}, malformed input is replaced with
+ * U+FFFD: one for each maximal subpart of an ill-formed sequence, as
+ * recommended by the Unicode standard. Unlike it, this doesn't block for more
+ * input once some characters have been decoded.
+ */
+final class Utf8Reader extends Reader {
+
+    private static final char REPLACEMENT_CHARACTER = '\ufffd';
+
+    private final InputStream in;
+    private final byte[] bytes = new byte[8192];
+    private int pos;
+    private int limit;
+
+    /**
+     * The low surrogate of a supplementary character whose high surrogate
+     * filled the caller's array, or -1.
+     */
+    private int pendingLowSurrogate = -1;
+
+    Utf8Reader(InputStream in) {
+        this.in = in;
+    }
+
+    @Override public int read(char[] chars, int offset, int count) throws IOException {
+        if ((offset | count) < 0 || offset > chars.length - count) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        int out = offset;
+        int end = offset + count;
+        if (pendingLowSurrogate != -1) {
+            chars[out++] = (char) pendingLowSurrogate;
+            pendingLowSurrogate = -1;
+        }
+
+        while (out < end) {
+            if (pos == limit && (out > offset || !fill(1))) {
+                break;
+            }
+
+            int b = bytes[pos];
+            if (b >= 0) {
+                // Copy a run of ASCII.
+                int runEnd = Math.min(limit, pos + (end - out));
+                do {
+                    chars[out++] = (char) b;
+                    pos++;
+                } while (pos < runEnd && (b = bytes[pos]) >= 0);
+                continue;
+            }
+
+            int lead = b & 0xff;
+            if (lead < 0xc2 || lead > 0xf4) {
+                // A continuation byte, an overlong 2-byte lead or out of range.
+                chars[out++] = REPLACEMENT_CHARACTER;
+                pos++;
+                continue;
+            }
+
+            int length = lead < 0xe0 ? 2 : lead < 0xf0 ? 3 : 4;
+            if (limit - pos < length) {
+                if (out > offset) {
+                    break; // Finish this sequence in the next call.
+                }
+                fill(length); // At the end of the input, this sequence is truncated.
+            }
+
+            // The second byte's range also excludes overlong forms, surrogates and
+            // code points above U+10FFFF.
+            int min = (lead == 0xe0) ? 0xa0 : (lead == 0xf0) ? 0x90 : 0x80;
+            int max = (lead == 0xed) ? 0x9f : (lead == 0xf4) ? 0x8f : 0xbf;
+            int available = Math.min(length, limit - pos);
+            int codePoint = lead & (0x7f >> length);
+            int i = 1;
+            for (; i < available; i++) {
+                int c = bytes[pos + i] & 0xff;
+                if (i == 1 ? (c < min || c > max) : (c & 0xc0) != 0x80) {
+                    break;
+                }
+                codePoint = (codePoint << 6) | (c & 0x3f);
+            }
+            if (i < length) {
+                // Replace the malformed prefix; the byte that ended it is decoded next.
+                chars[out++] = REPLACEMENT_CHARACTER;
+                pos += i;
+                continue;
+            }
+
+            pos += length;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[out++] = (char) codePoint;
+            } else {
+                chars[out++] = Character.highSurrogate(codePoint);
+                if (out < end) {
+                    chars[out++] = Character.lowSurrogate(codePoint);
+                } else {
+                    pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                }
+            }
+        }
+
+        return out == offset ? -1 : out - offset;
+    }
+
+    /**
+     * Reads until at least {@code minimum} bytes follow {@code pos}, moving
+     * any unread bytes to the start of the buffer first. Returns false if the
+     * input ends first.
+     */
+    private boolean fill(int minimum) throws IOException {
+        if (pos > 0) {
+            System.arraycopy(bytes, pos, bytes, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < minimum) {
+            int count = in.read(bytes, limit, bytes.length - limit);
+            if (count == -1) {
+                return false;
+            }
+            limit += count;
+        }
+        return true;
+    }
+
+    @Override public void close() throws IOException {
+        in.close();
+    }
+}